@@ -12,6 +12,8 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 
+import client.thread.requestSender.ResponseDemultiplexer;
+
 /**
  * Classe astratta per il controllo di una finestra
  * @author Gionatha Sturba
@@ -132,8 +134,10 @@ public abstract class Controller
 	{
 		//chiudiamo la connessione e gli stream
 		try {
-			if(connection != null)
+			if(connection != null) {
+				ResponseDemultiplexer.release(connection);
 				connection.close();
+			}
 			
 			if(in != null)
 				in.close();
@@ -38,6 +38,7 @@ import client.view.HubWindow;
 import communication.RMI.RMIClientNotifyEvent;
 import communication.RMI.RMIServerInterface;
 import server.model.ChatRoom;
+import server.model.exception.UserAlreadyRegistered;
 import server.model.User;
 import server.model.exception.UserNotFindException;
 import server.model.exception.UserStatusException;
@@ -565,6 +566,14 @@ public class HubController extends Controller
 				}
 			}
 		}
+		
+		@Override
+		public void updateFriendsStatus(List<User> friends) throws RemoteException 
+		{
+			for (User friend : friends) {
+				updateFriendStatus(friend);
+			}
+		}
 
 		@Override
 		public void newFriend(User newFriend) throws RemoteException 
@@ -615,6 +624,35 @@ public class HubController extends Controller
 
 			}
 		}
+		
+		@Override
+		public void newChatRoomSubscriber(String chatroomName,User subscriber) throws RemoteException 
+		{
+			DefaultListModel<ChatRoom> list = hubView.getModelChatRoomList();
+			
+			synchronized (list) 
+			{
+				for (int i = 0; i < list.size(); i++) 
+				{
+					ChatRoom currentRoom = list.getElementAt(i);
+					
+					//se ho trovato la chatroom,aggiungo l'iscritto e aggiorno la lista
+					if(currentRoom.getName().equalsIgnoreCase(chatroomName)) 
+					{
+						try {
+							currentRoom.addNewSubscriber(subscriber);
+						} 
+						catch (UserAlreadyRegistered e) {
+							break;
+						}
+						
+						list.removeElementAt(i);
+						list.insertElementAt(currentRoom,i);
+						break;
+					}
+				}
+			}
+		}
 
 
 	@Override
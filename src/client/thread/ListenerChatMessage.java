@@ -25,7 +25,6 @@ import communication.TCPMessages.response.ResponseMessage;
 import communication.TCPMessages.response.fail.ResponseFailedMessage;
 import communication.TCPMessages.response.success.AcceptedFileReceive;
 import server.model.User;
-import utils.PortScanner;
 
 /**
  * Thread che ascolta i messaggi che arrivano da altri utenti
@@ -227,19 +226,31 @@ public class ListenerChatMessage extends Thread
 								//preparo un socket per ricevere il file,e poi avvio il thread che si occupera' della ricezione del file
 								
 								ServerSocketChannel server= ServerSocketChannel.open();
-								int port = PortScanner.freePort();
+								int port = -1;
+								
+								//creo il socket server,sulla porta che sceglie il sistema operativo
+								try {
+									server.socket().bind(new InetSocketAddress(0));
+									port = server.socket().getLocalPort();
+								} 
+								catch (IOException e) {
+									server.close();
+								}
 								
 								ResponseMessage response;
 								
+								//id dell'offerta da riportare nella risposta,assente se il server non lo usa
+								Long offerId = MessageAnalyzer.getFileOfferId(notificationMessage);
+								
 								//se il server per ricevere il file e' stato creato correttamente
 								if(port != -1)
 								{
-									//creo il socket server
-									server.socket().bind(new InetSocketAddress(port));
-
 									//invio messaggio di successo con ip e porta su cui si e' in ascolto
 									response = new AcceptedFileReceive("localhost",port);
 									
+									if(offerId != null)
+										response.setFileOfferId(offerId);
+									
 									//invio risposta
 									try {
 										out.writeUTF(response.getJsonMessage());
@@ -278,6 +289,9 @@ public class ListenerChatMessage extends Thread
 								else {
 									response = new ResponseFailedMessage(ResponseFailedMessage.Errors.CANNOT_RECEIVE_FILE);
 									
+									if(offerId != null)
+										response.setFileOfferId(offerId);
+									
 									//invio risposta
 									try {
 										out.writeUTF(response.getJsonMessage());
@@ -4,6 +4,10 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.ParseException;
@@ -14,6 +18,9 @@ import communication.TCPMessages.MessageAnalyzer;
 import communication.TCPMessages.request.RequestMessage;
 import communication.TCPMessages.response.ResponseMessage;
 import communication.TCPMessages.response.fail.ResponseFailedMessage;
+import server.model.ChatRoom;
+import server.model.User;
+import server.model.exception.UserAlreadyRegistered;
 
 /**
  * Modello astratto che rappresenta un Thread che invia una richiesta al server tramite connessione TCP
@@ -25,14 +32,16 @@ public abstract class RequestSenderThread extends Thread
 	protected Socket connection; //connessione TCP con il server
 	protected DataInputStream in; //input stream della connessione
 	protected DataOutputStream out; //output stream della connessione
+	protected ResponseDemultiplexer demultiplexer; //smista le risposte alle richieste inviate sulla connessione
 	
 	protected final String serverName = "localhost";
 	protected final int port = 5000;
+	protected static final int PAGE_SIZE = 256; //elementi massimi delle pagine in cui ricevere amici e chatroom
 	
 	protected Controller controller; //controller della finestra dove viene richiamato il thread
 	protected RequestMessage request; //messaggio di richiesta da inviare al server
-	protected String JsonResponse; //risposta in formato Json che invia il server
 	protected JSONObject response; //risposta parsata in formato Json
+	protected Iterator<JSONObject> pages; //pagine ricevute dopo la risposta
 	protected boolean init; //per gestire corretta inizializzazione del thread
 	
 	/**
@@ -54,11 +63,12 @@ public abstract class RequestSenderThread extends Thread
 		this.connection = connection;
 		this.in = in;
 		this.out = out;
+		this.demultiplexer = ResponseDemultiplexer.of(connection,in,out);
 		
 		//parametri non inizializati
 		request = null;
-		JsonResponse = null;
 		response = null;
+		pages = Collections.emptyIterator();
 		init = false;
 	}
 	
@@ -79,85 +89,151 @@ public abstract class RequestSenderThread extends Thread
 				//se la richiesta e' stata creata,invio il messaggio
 				if(request != null)
 				{
-					//invio richiesta al server
-					out.writeUTF(request.getJsonMessage());
-					
-					//non appena arriva la risposta la leggo
-					JsonResponse = in.readUTF();
+					//invio richiesta al server e attendo la sua risposta,le altre richieste sulla connessione non attendono questa
+					List<JSONObject> frames = demultiplexer.send(request).get();
+					pages = frames.subList(1,frames.size()).iterator();
 					
 					//analizzo risposta e mando una risposta la server
-					analyzeResponse(JsonResponse);
+					analyzeResponse(frames.get(0));
 				}
 			} catch (IOException e) {
 				IOErrorHandler();
 				e.printStackTrace();
 			}
+			catch (ExecutionException e) 
+			{
+				//risposta non valida
+				if(e.getCause() instanceof ParseException)
+					parseErrorHandler();
+				//connessione chiusa prima della risposta
+				else
+					IOErrorHandler();
+				
+				e.printStackTrace();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
 
 		}		
 	}
 	
 	/**
 	 * Analizza la risposta alla richiesta inviata al server.
-	 * @param JsonResponse
+	 * @param response risposta del server,gia' parsata
 	 */
-	protected void analyzeResponse(String JsonResponse)
+	protected void analyzeResponse(JSONObject response)
 	{
-		try 
+		System.out.println(response.toJSONString()); //TODO DEBUG
+		this.response = response;
+		
+		//se non e' un messaggio di risposta
+		if(MessageAnalyzer.getMessageType(response) != Message.Type.RESPONSE) 
+		{
+			unexpectedMessageHandler();
+			return;
+		}
+		
+		//analizzo il tipo del messaggio di risposta
+		ResponseMessage.Type outcome = MessageAnalyzer.getResponseType(response);
+		
+		//tipo risposta non trovato
+		if(outcome == null)
 		{
-			//parso messaggio Json rappresentate risposta del server
-			System.out.println(JsonResponse); //TODO DEBUG
-			response = MessageAnalyzer.parse(JsonResponse);
+			invalidResponseHandler();
+			return;
+		}
+		
+		//controllo esito della risposta ricevuta
+		switch(outcome) 
+		{
+			//logout avvenuto
+			case SUCCESS:
+				successResponseHandler();
+				break;
 			
-			//se non e' un messaggio di risposta
-			if(MessageAnalyzer.getMessageType(response) != Message.Type.RESPONSE) 
+			case FAIL:
+				//analizzo l'errore riscontrato
+				ResponseFailedMessage.Errors error = MessageAnalyzer.getResponseFailedErrorType(response);
+				
+				//errore non trovato
+				if(error == null) 
+				{
+					invalidResponseErrorTypeHandler();
+					return;
+				}
+				
+				failedResponseHandler(error);
+				
+				break;
+				
+			default:
+				invalidResponseHandler();
+				break;
+		}
+	}
+	
+	/**
+	 * Legge le pagine che seguono una risposta di login o di registrazione a pagine,gia' ricevute dal demultiplexer.
+	 * Gli iscritti di una chatroom che continuano nella pagina successiva vengono uniti alla chatroom.
+	 * @param amici lista a cui aggiungere gli amici ricevuti
+	 * @param chatrooms lista a cui aggiungere le chatroom ricevute
+	 * @return true se tutte le pagine sono state lette,false se c'e' stato un errore,gia' gestito
+	 */
+	protected boolean readPages(List<User> amici,List<ChatRoom> chatrooms)
+	{
+		if(amici == null || chatrooms == null)
+			throw new NullPointerException();
+		
+		JSONObject page;
+		
+		do
+		{
+			//pagine terminate prima dell'ultima
+			if(!pages.hasNext())
 			{
-				unexpectedMessageHandler();
-				return;
+				invalidResponseHandler();
+				return false;
 			}
 			
-			//analizzo il tipo del messaggio di risposta
-			ResponseMessage.Type outcome = MessageAnalyzer.getResponseType(response);
+			page = pages.next();
+			
+			List<User> pageAmici = MessageAnalyzer.getListaAmici(page);
+			List<ChatRoom> pageChatrooms = MessageAnalyzer.getListaChatRoom(page);
 			
-			//tipo risposta non trovato
-			if(outcome == null)
+			//pagina non valida
+			if(pageAmici == null || pageChatrooms == null)
 			{
 				invalidResponseHandler();
-				return;
+				return false;
 			}
 			
-			//controllo esito della risposta ricevuta
-			switch(outcome) 
+			amici.addAll(pageAmici);
+			
+			for (ChatRoom cr : pageChatrooms) 
 			{
-				//logout avvenuto
-				case SUCCESS:
-					successResponseHandler();
-					break;
+				ChatRoom last = chatrooms.isEmpty() ? null : chatrooms.get(chatrooms.size() - 1);
 				
-				case FAIL:
-					//analizzo l'errore riscontrato
-					ResponseFailedMessage.Errors error = MessageAnalyzer.getResponseFailedErrorType(response);
-					
-					//errore non trovato
-					if(error == null) 
-					{
-						invalidResponseErrorTypeHandler();
-						return;
+				//nuova chatroom
+				if(last == null || !last.getName().equals(cr.getName())) {
+					chatrooms.add(cr);
+					continue;
+				}
+				
+				//continuazione degli iscritti della chatroom precedente
+				for (User sub : cr.getSubscribers()) 
+				{
+					try {
+						last.addNewSubscriber(sub);
 					}
-					
-					failedResponseHandler(error);
-					
-					break;
-					
-				default:
-					invalidResponseHandler();
-					break;
+					//iscritto gia' ricevuto,la chatroom e' cambiata durante l'invio
+					catch (UserAlreadyRegistered e) {}
+				}
 			}
-		} 
-		catch (ParseException e) 
-		{
-			parseErrorHandler();
-			e.printStackTrace();
 		}
+		while(!MessageAnalyzer.isLastPage(page));
+		
+		return true;
 	}
 	
 	/**
@@ -0,0 +1,267 @@
+package client.thread.requestSender;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import communication.TCPMessages.MessageAnalyzer;
+import communication.TCPMessages.request.RequestMessage;
+
+/**
+ * Smista le risposte del server alle richieste inviate sulla stessa connessione TCP.
+ * Ogni richiesta riceve un id,che il server riporta nelle risposte: le richieste possono essere inviate
+ * una dopo l'altra senza attendere le risposte,e ogni risposta completa il future della propria richiesta,
+ * anche se arriva fuori ordine.
+ * Una risposta senza id (server che non riporta gli id,o richiesta non decodificabile) completa la richiesta
+ * in attesa da piu' tempo.
+ * Le risposte vengono lette da un solo thread per connessione,che e' l'unico a leggere dallo stream di input.
+ * @author Gionatha Sturba
+ *
+ */
+public class ResponseDemultiplexer
+{
+	//demultiplexer di ogni connessione aperta
+	private static final Map<Socket,ResponseDemultiplexer> demultiplexers = new ConcurrentHashMap<Socket,ResponseDemultiplexer>();
+
+	private Socket connection; //connessione TCP con il server
+	private DataInputStream in; //input stream della connessione,letto solo dal thread delle risposte
+	private DataOutputStream out; //output stream della connessione
+
+	private final AtomicLong nextRequestId = new AtomicLong(); //id della prossima richiesta
+	private final LinkedHashMap<Long,PendingRequest> pending = new LinkedHashMap<Long,PendingRequest>(); //richieste in attesa,in ordine di invio
+	private PendingRequest paging = null; //richiesta di cui si stanno ricevendo le pagine
+	private IOException closed = null; //errore che ha chiuso la connessione
+
+	/**
+	 * Richiesta in attesa della risposta
+	 */
+	private static class PendingRequest
+	{
+		private final long requestId; //id assegnato alla richiesta
+		private final List<JSONObject> frames = new ArrayList<JSONObject>(1); //risposta e pagine ricevute
+		private final CompletableFuture<List<JSONObject>> response = new CompletableFuture<List<JSONObject>>();
+
+		private PendingRequest(long requestId) {
+			this.requestId = requestId;
+		}
+	}
+
+	private ResponseDemultiplexer(Socket connection,DataInputStream in,DataOutputStream out)
+	{
+		this.connection = connection;
+		this.in = in;
+		this.out = out;
+	}
+
+	/**
+	 * Restituisce il demultiplexer di una connessione,creandolo alla prima richiesta
+	 * @param connection connessione TCP con il server
+	 * @param in input stream della connessione
+	 * @param out output stream della connessione
+	 * @return demultiplexer della connessione
+	 */
+	public static ResponseDemultiplexer of(Socket connection,DataInputStream in,DataOutputStream out)
+	{
+		if(connection == null || in == null || out == null)
+			throw new NullPointerException();
+
+		return demultiplexers.computeIfAbsent(connection,socket -> {
+			ResponseDemultiplexer demultiplexer = new ResponseDemultiplexer(socket,in,out);
+
+			Thread reader = new Thread(demultiplexer::readResponses,"response-demultiplexer");
+			reader.setDaemon(true);
+			reader.start();
+
+			return demultiplexer;
+		});
+	}
+
+	/**
+	 * Rimuove il demultiplexer di una connessione che il client sta chiudendo.
+	 * Il thread delle risposte termina alla chiusura della connessione,facendo fallire le richieste in attesa.
+	 * @param connection connessione TCP con il server
+	 */
+	public static void release(Socket connection)
+	{
+		if(connection == null)
+			throw new NullPointerException();
+
+		demultiplexers.remove(connection);
+	}
+
+	/**
+	 * Invia una richiesta,senza attendere la risposta
+	 * @param request richiesta da inviare,a cui viene assegnato un id
+	 * @return future completato con la risposta,seguita dalle eventuali pagine;
+	 * completato con una IOException se la connessione si chiude,o con una ParseException se la risposta non e' valida
+	 * @throws IOException se non e' possibile inviare la richiesta
+	 */
+	public CompletableFuture<List<JSONObject>> send(RequestMessage request) throws IOException
+	{
+		if(request == null)
+			throw new NullPointerException();
+
+		long requestId = nextRequestId.getAndIncrement();
+		request.setRequestId(requestId);
+
+		PendingRequest pendingRequest = new PendingRequest(requestId);
+
+		//registro la richiesta prima di inviarla,la risposta puo' arrivare subito
+		synchronized (this)
+		{
+			if(closed != null)
+				throw closed;
+
+			pending.put(requestId,pendingRequest);
+		}
+
+		try {
+			//altri thread possono inviare richieste sulla stessa connessione
+			synchronized (out) {
+				out.writeUTF(request.getJsonMessage());
+			}
+		}
+		catch (IOException e)
+		{
+			synchronized (this) {
+				pending.remove(requestId);
+			}
+
+			throw e;
+		}
+
+		return pendingRequest.response;
+	}
+
+	/**
+	 * Ciclo di vita del thread che legge le risposte
+	 */
+	private void readResponses()
+	{
+		try
+		{
+			while(true)
+			{
+				String frame = in.readUTF();
+
+				try {
+					route(MessageAnalyzer.parse(frame));
+				}
+				//risposta non valida,senza un id leggibile
+				catch (ParseException e)
+				{
+					PendingRequest request = complete(null);
+
+					if(request != null)
+						request.response.completeExceptionally(e);
+				}
+			}
+		}
+		catch (IOException e) {
+			close(e);
+		}
+	}
+
+	/**
+	 * Assegna una risposta alla richiesta a cui risponde
+	 * @param frame risposta ricevuta
+	 */
+	private void route(JSONObject frame)
+	{
+		PendingRequest request;
+		boolean complete;
+
+		synchronized (this)
+		{
+			Long requestId = MessageAnalyzer.getRequestId(frame);
+
+			if(requestId != null)
+				request = pending.get(requestId);
+			else
+				request = paging != null ? paging : oldest();
+
+			//risposta ad una richiesta non inviata da questo client,viene scartata
+			if(request == null)
+				return;
+
+			request.frames.add(frame);
+
+			//la prima risposta indica se seguono delle pagine,che terminano con l'ultima pagina
+			if(request.frames.size() == 1)
+				complete = !MessageAnalyzer.isPaged(frame);
+			else
+				complete = MessageAnalyzer.isLastPage(frame);
+
+			if(complete)
+				complete(request);
+			else
+				paging = request;
+		}
+
+		if(complete)
+			request.response.complete(request.frames);
+	}
+
+	/**
+	 * Rimuove una richiesta da quelle in attesa
+	 * @param request richiesta completata,null per la richiesta in attesa da piu' tempo
+	 * @return richiesta rimossa,null se non ci sono richieste in attesa
+	 */
+	private synchronized PendingRequest complete(PendingRequest request)
+	{
+		if(request == null)
+			request = paging != null ? paging : oldest();
+
+		if(request == null)
+			return null;
+
+		pending.remove(request.requestId);
+
+		if(paging == request)
+			paging = null;
+
+		return request;
+	}
+
+	private PendingRequest oldest()
+	{
+		Iterator<PendingRequest> iterator = pending.values().iterator();
+
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	/**
+	 * Chiude il demultiplexer,facendo fallire le richieste in attesa
+	 * @param e errore che ha chiuso la connessione
+	 */
+	private void close(IOException e)
+	{
+		List<PendingRequest> failed;
+
+		synchronized (this)
+		{
+			closed = e;
+			failed = new ArrayList<PendingRequest>(pending.values());
+			pending.clear();
+			paging = null;
+		}
+
+		demultiplexers.remove(connection,this);
+
+		for (PendingRequest request : failed) {
+			request.response.completeExceptionally(e);
+		}
+	}
+}
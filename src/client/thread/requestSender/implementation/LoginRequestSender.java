@@ -3,6 +3,7 @@ package client.thread.requestSender.implementation;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.net.Socket;
+import java.util.LinkedList;
 import java.util.List;
 
 import client.controller.Controller;
@@ -64,7 +65,11 @@ public class LoginRequestSender extends RequestSenderThread
 	 */
 	protected void createRequest() 
 	{
-		request = new LoginRequest(nickname,new String(password));
+		LoginRequest login = new LoginRequest(nickname,new String(password));
+		
+		//amici e chatroom arrivano a pagine,dopo la risposta
+		login.setPageSize(PAGE_SIZE);
+		request = login;
 	}
 
 	@Override
@@ -126,6 +131,18 @@ public class LoginRequestSender extends RequestSenderThread
 	@Override
 	protected void successResponseHandler() 
 	{
+		//liste inviate a pagine
+		if(MessageAnalyzer.isPaged(response)) 
+		{
+			List<User> amiciList = new LinkedList<User>();
+			List<ChatRoom> chatroomList = new LinkedList<ChatRoom>();
+			
+			if(readPages(amiciList,chatroomList))
+				startHubView(nickname,amiciList,chatroomList);
+			
+			return;
+		}
+		
 		List<User> amiciList = MessageAnalyzer.getListaAmici(response);
 		
 		//lista degli amici dell'utente loggato, non trovata
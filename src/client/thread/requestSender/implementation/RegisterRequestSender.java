@@ -3,6 +3,7 @@ package client.thread.requestSender.implementation;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.net.Socket;
+import java.util.LinkedList;
 import java.util.List;
 
 import client.controller.Controller;
@@ -13,6 +14,7 @@ import communication.TCPMessages.MessageAnalyzer;
 import communication.TCPMessages.request.access.RegisterRequest;
 import communication.TCPMessages.response.fail.ResponseFailedMessage.Errors;
 import server.model.ChatRoom;
+import server.model.User;
 
 /**
  * Thread che gestisce l'invio una richiesta di registrazione
@@ -63,7 +65,11 @@ public class RegisterRequestSender extends RequestSenderThread
 	@Override
 	protected void createRequest() 
 	{
-		request = new RegisterRequest(nickname,new String(password),language);
+		RegisterRequest register = new RegisterRequest(nickname,new String(password),language);
+		
+		//le chatroom arrivano a pagine,dopo la risposta
+		register.setPageSize(PAGE_SIZE);
+		request = register;
 	}
 
 	@Override
@@ -116,12 +122,25 @@ public class RegisterRequestSender extends RequestSenderThread
 	@Override
 	protected void successResponseHandler() {
 		
-		List<ChatRoom> chatroomList = MessageAnalyzer.getListaChatRoom(response);
+		List<ChatRoom> chatroomList;
 		
-		//lista delle chatroom dell'utente loggato, non trovata
-		if(chatroomList == null) {
-			controller.showErrorMessage("Errore nel messaggio di risposta del server","Errore");
-			return;
+		//chatroom inviate a pagine
+		if(MessageAnalyzer.isPaged(response)) 
+		{
+			chatroomList = new LinkedList<ChatRoom>();
+			
+			if(!readPages(new LinkedList<User>(),chatroomList))
+				return;
+		}
+		else 
+		{
+			chatroomList = MessageAnalyzer.getListaChatRoom(response);
+			
+			//lista delle chatroom dell'utente loggato, non trovata
+			if(chatroomList == null) {
+				controller.showErrorMessage("Errore nel messaggio di risposta del server","Errore");
+				return;
+			}
 		}
 		
 		controller.showInfoMessage("Registrazione Avvenuta","Benvenuto",true);
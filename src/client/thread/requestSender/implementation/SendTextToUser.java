@@ -40,6 +40,11 @@ public class SendTextToUser extends TextSender
 			case RECEIVER_USER_NOT_FOUND:
 				controller.showErrorMessage("Utente non trovato","Messaggio non inviato");
 				break;
+			
+			//utente che non riesce a ricevere i messaggi abbastanza velocemente
+			case RECEIVER_USER_BUSY:
+				controller.showErrorMessage("Utente occupato,riprova piu' tardi","Messaggio non inviato");
+				break;
 				
 			default:
 				controller.showErrorMessage("Errore nell'invio del messaggio","Messaggio non inviato");
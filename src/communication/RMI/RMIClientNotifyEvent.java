@@ -2,6 +2,7 @@ package communication.RMI;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 import server.model.ChatRoom;
 import server.model.User;
@@ -20,6 +21,13 @@ public interface RMIClientNotifyEvent extends Remote
 	 */
 	public void updateFriendStatus(User friend)throws RemoteException;
 	
+	/**
+	 * Notifica per aggiornare lo stato di piu' amici con una sola chiamata
+	 * @param friends utenti che hanno cambiato stato,con il loro ultimo stato
+	 * @throws RemoteException se c'e' un errore nel protocollo RMI
+	 */
+	public void updateFriendsStatus(List<User> friends)throws RemoteException;
+	
 	/**
 	 * Notifica nuova amicizia
 	 * @param newFriend l'utente che rappresenta il nuovo amico
@@ -41,6 +49,14 @@ public interface RMIClientNotifyEvent extends Remote
 	 */
 	public void updateChatRoom(ChatRoom chatroom)throws RemoteException;
 	
+	/**
+	 * Notifica l'iscrizione di un nuovo utente ad una chatroom esistente
+	 * @param chatroomName nome della chatroom
+	 * @param subscriber nuovo iscritto
+	 * @throws RemoteException se c'e' un errore nel protocollo RMI
+	 */
+	public void newChatRoomSubscriber(String chatroomName,User subscriber)throws RemoteException;
+	
 	/**
 	 * Rimuove una chatroom esistente
 	 * @param chatroom chatroom da rimuovere
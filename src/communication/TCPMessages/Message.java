@@ -32,4 +32,11 @@ public class Message
 	public String getJsonMessage() {
 		return jsonMessage.toJSONString();
 	}
+	
+	/**
+	 * @return campi del messaggio,da codificare nel formato della connessione su cui viene inviato
+	 */
+	public JSONObject getJsonObject() {
+		return jsonMessage;
+	}
 }
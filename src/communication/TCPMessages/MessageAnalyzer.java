@@ -23,6 +23,7 @@ import communication.TCPMessages.request.interaction.SendMessageRequest;
 import communication.TCPMessages.response.ResponseMessage;
 import communication.TCPMessages.response.fail.ResponseFailedMessage;
 import communication.TCPMessages.response.success.AcceptedFileReceive;
+import communication.TCPMessages.response.success.ListPage;
 import communication.TCPMessages.response.success.SuccessFriendship;
 import communication.TCPMessages.response.success.SuccessfulLogin;
 import server.model.*;
@@ -139,6 +140,25 @@ public class MessageAnalyzer
 		return (String) JsonMessage.get(NewIncomingFile.FIELD_INCOMING_FILE_FILENAME);
 	}
 	
+	/**
+	 * 
+	 * @param JsonMessage oggetto Json rappresentante la notifica di un file,o la risposta ad essa
+	 * @return id dell'offerta del file,null se non e' stato trovato
+	 */
+	public static Long getFileOfferId(JSONObject JsonMessage)
+	{
+		if(JsonMessage == null)
+			throw new NullPointerException();
+		
+		Object offerId = JsonMessage.get(NewIncomingFile.FIELD_FILE_OFFER_ID);
+		
+		//campo non trovato,o non numerico
+		if(!(offerId instanceof Number))
+			return null;
+		
+		return ((Number) offerId).longValue();
+	}
+	
 	/**
 	 * 
 	 * @param JsonMessage oggetto Json rappresentante il messaggio
@@ -372,6 +392,11 @@ public class MessageAnalyzer
 		{
 			return ResponseFailedMessage.Errors.OPERATION_NOT_PERMITTED;
 		}
+		//errore destinatario troppo lento nel ricevere i messaggi
+		else if(type.equals(ResponseFailedMessage.Errors.RECEIVER_USER_BUSY.name()))
+		{
+			return ResponseFailedMessage.Errors.RECEIVER_USER_BUSY;
+		}
 		else {
 			return null;
 		}
@@ -630,6 +655,70 @@ public class MessageAnalyzer
 		return (String) JsonMessage.get(RegisterRequest.FIELD_REGISTER_REQUEST_LANGUAGE);
 	}
 	
+	/**
+	 * 
+	 * @param JsonMessage messaggio di richiesta di accesso
+	 * @return elementi massimi di ogni pagina della risposta,0 se il client vuole le liste nella risposta
+	 */
+	public static int getPageSize(JSONObject JsonMessage)
+	{
+		if(JsonMessage == null)
+			throw new NullPointerException();
+		
+		Object pageSize = JsonMessage.get(RequestAccessMessage.FIELD_PAGE_SIZE);
+		
+		//campo non trovato,o non valido
+		if(!(pageSize instanceof Number) || ((Number) pageSize).longValue() <= 0)
+			return 0;
+		
+		return (int) Math.min(((Number) pageSize).longValue(),Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * 
+	 * @param JsonMessage richiesta,o risposta ad una richiesta
+	 * @return id della richiesta,null se non e' stato trovato
+	 */
+	public static Long getRequestId(JSONObject JsonMessage)
+	{
+		if(JsonMessage == null)
+			throw new NullPointerException();
+		
+		Object requestId = JsonMessage.get(RequestMessage.FIELD_REQUEST_ID);
+		
+		//campo non trovato,o non valido
+		if(!(requestId instanceof Number) || ((Number) requestId).longValue() < 0)
+			return null;
+		
+		return ((Number) requestId).longValue();
+	}
+	
+	/**
+	 * 
+	 * @param JsonMessage risposta di login o di registrazione
+	 * @return true se le liste seguono la risposta in una serie di ListPage
+	 */
+	public static boolean isPaged(JSONObject JsonMessage)
+	{
+		if(JsonMessage == null)
+			throw new NullPointerException();
+		
+		return Boolean.TRUE.equals(JsonMessage.get(SuccessfulLogin.FIELD_PAGED));
+	}
+	
+	/**
+	 * 
+	 * @param JsonMessage pagina della lista degli amici e delle chatroom
+	 * @return true se e' l'ultima pagina
+	 */
+	public static boolean isLastPage(JSONObject JsonMessage)
+	{
+		if(JsonMessage == null)
+			throw new NullPointerException();
+		
+		return Boolean.TRUE.equals(JsonMessage.get(ListPage.FIELD_LAST_PAGE));
+	}
+	
 	/**
 	 * 
 	 * @param JsonMessage messaggio di richiesta di accesso
@@ -0,0 +1,219 @@
+package communication.TCPMessages;
+
+import org.json.simple.JSONObject;
+
+import communication.TCPMessages.request.RequestMessage;
+import communication.TCPMessages.request.access.RegisterRequest;
+import communication.TCPMessages.request.access.RequestAccessMessage;
+import communication.TCPMessages.request.chatroom.ChatRoomRequest;
+import communication.TCPMessages.request.interaction.InteractionRequest;
+import communication.TCPMessages.request.interaction.SendFileRequest;
+import communication.TCPMessages.request.interaction.SendMessageRequest;
+
+/**
+ * Richiesta di un client gia' decodificata: contiene solo i campi usati dal server per gestire le richieste,
+ * con i tipi gia' convertiti nelle rispettive enum.
+ * Un campo mancante,o di tipo diverso da quello atteso,vale null (0 per la dimensione delle pagine),
+ * come per i metodi di MessageAnalyzer.
+ * @author Gionatha Sturba
+ *
+ */
+public class ParsedRequest
+{
+	public static final long NO_REQUEST_ID = -1; //richiesta senza id
+
+	long requestId = NO_REQUEST_ID;
+	Message.Type messageType;
+	RequestMessage.Type requestType;
+	String nicknameSender;
+
+	//richieste di accesso
+	RequestAccessMessage.Type requestAccessType;
+	String password;
+	String language;
+	int pageSize;
+
+	//richieste di interazione
+	InteractionRequest.Type interactionType;
+	String nicknameReceiver;
+	String text;
+	String sendFileFilename;
+
+	//richieste sulle chatroom
+	ChatRoomRequest.ChatroomRequests chatRoomRequestType;
+	String chatRoomName;
+
+	ParsedRequest() {}
+
+	/**
+	 * Estrae i campi di una richiesta gia' decodificata in un oggetto Json
+	 * @param JsonMessage oggetto Json rappresentante la richiesta
+	 * @return richiesta decodificata
+	 */
+	public static ParsedRequest fromJson(JSONObject JsonMessage)
+	{
+		if(JsonMessage == null)
+			throw new NullPointerException();
+
+		ParsedRequest request = new ParsedRequest();
+
+		Long requestId = MessageAnalyzer.getRequestId(JsonMessage);
+
+		if(requestId != null)
+			request.requestId = requestId;
+
+		request.messageType = toEnum(Message.Type.values(),JsonMessage.get(Message.FIELD_MESSAGE_TYPE));
+		request.requestType = toEnum(RequestMessage.Type.values(),JsonMessage.get(RequestMessage.FIELD_REQUEST_TYPE));
+		request.nicknameSender = toString(JsonMessage.get(RequestMessage.FIELD_REQUEST_NICKNAME_SENDER));
+
+		request.requestAccessType = toEnum(RequestAccessMessage.Type.values(),JsonMessage.get(RequestAccessMessage.FIELD_REQUEST_ACCESS_TYPE));
+		request.password = toString(JsonMessage.get(RequestAccessMessage.FIELD_REQUEST_ACCESS_PASSWORD));
+		request.language = toString(JsonMessage.get(RegisterRequest.FIELD_REGISTER_REQUEST_LANGUAGE));
+		request.pageSize = MessageAnalyzer.getPageSize(JsonMessage);
+
+		request.interactionType = toEnum(InteractionRequest.Type.values(),JsonMessage.get(InteractionRequest.FIELD_INTERACTION_REQUEST_TYPE));
+		request.nicknameReceiver = toString(JsonMessage.get(InteractionRequest.FIELD_NICKNAME_RECEIVER));
+		request.text = toString(JsonMessage.get(SendMessageRequest.FIELD_TEXT_MESSAGE));
+		request.sendFileFilename = toString(JsonMessage.get(SendFileRequest.FIELD_SEND_FILE_REQUEST_FILENAME));
+
+		request.chatRoomRequestType = toEnum(ChatRoomRequest.ChatroomRequests.values(),JsonMessage.get(ChatRoomRequest.FIELD_CHATROOM_REQUEST_TYPE));
+		request.chatRoomName = toString(JsonMessage.get(ChatRoomRequest.FIELD_CHATROOM_REQUEST_NAME));
+
+		return request;
+	}
+
+	private static String toString(Object value) {
+		return value instanceof String ? (String) value : null;
+	}
+
+	private static <E extends Enum<E>> E toEnum(E[] values,Object value)
+	{
+		if(!(value instanceof String))
+			return null;
+
+		String name = (String) value;
+
+		return toEnum(values,name,0,name.length());
+	}
+
+	/**
+	 * Cerca la costante di un'enum con il nome contenuto in una parte di una stringa,senza copiarla
+	 * @param values costanti dell'enum
+	 * @param source stringa che contiene il nome
+	 * @param start inizio del nome
+	 * @param end fine del nome,esclusa
+	 * @return costante con quel nome,null se non esiste
+	 */
+	static <E extends Enum<E>> E toEnum(E[] values,String source,int start,int end)
+	{
+		int length = end - start;
+
+		for (E value : values)
+		{
+			String name = value.name();
+
+			if(name.length() == length && source.regionMatches(start,name,0,length))
+				return value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return id della richiesta,da riportare nelle risposte,NO_REQUEST_ID se il client non lo ha indicato
+	 */
+	public long getRequestId() {
+		return requestId;
+	}
+
+	/**
+	 * @return tipo del messaggio
+	 */
+	public Message.Type getMessageType() {
+		return messageType;
+	}
+
+	/**
+	 * @return tipo della richiesta
+	 */
+	public RequestMessage.Type getRequestType() {
+		return requestType;
+	}
+
+	/**
+	 * @return nickname dell'utente che ha inviato la richiesta
+	 */
+	public String getNicknameSender() {
+		return nicknameSender;
+	}
+
+	/**
+	 * @return tipo della richiesta di accesso
+	 */
+	public RequestAccessMessage.Type getRequestAccessType() {
+		return requestAccessType;
+	}
+
+	/**
+	 * @return password della richiesta di accesso
+	 */
+	public String getPassword() {
+		return password;
+	}
+
+	/**
+	 * @return lingua scelta nella richiesta di registrazione
+	 */
+	public String getLanguage() {
+		return language;
+	}
+
+	/**
+	 * @return elementi massimi di ogni pagina della risposta,0 se il client vuole le liste nella risposta
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * @return tipo della richiesta di interazione
+	 */
+	public InteractionRequest.Type getInteractionType() {
+		return interactionType;
+	}
+
+	/**
+	 * @return nickname dell'utente destinatario dell'interazione
+	 */
+	public String getNicknameReceiver() {
+		return nicknameReceiver;
+	}
+
+	/**
+	 * @return testo del messaggio da inviare
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return nome del file da inviare
+	 */
+	public String getSendFileFilename() {
+		return sendFileFilename;
+	}
+
+	/**
+	 * @return tipo della richiesta sulla chatroom
+	 */
+	public ChatRoomRequest.ChatroomRequests getChatRoomRequestType() {
+		return chatRoomRequestType;
+	}
+
+	/**
+	 * @return nome della chatroom
+	 */
+	public String getChatRoomName() {
+		return chatRoomName;
+	}
+}
@@ -0,0 +1,557 @@
+package communication.TCPMessages;
+
+import org.json.simple.parser.ParseException;
+
+import communication.TCPMessages.request.RequestMessage;
+import communication.TCPMessages.request.access.RegisterRequest;
+import communication.TCPMessages.request.access.RequestAccessMessage;
+import communication.TCPMessages.request.chatroom.ChatRoomRequest;
+import communication.TCPMessages.request.interaction.InteractionRequest;
+import communication.TCPMessages.request.interaction.SendFileRequest;
+import communication.TCPMessages.request.interaction.SendMessageRequest;
+
+/**
+ * Decodifica una richiesta in formato Json direttamente in una ParsedRequest,in una sola passata sulla stringa.
+ * A differenza di MessageAnalyzer.parse non costruisce l'oggetto Json: i nomi dei campi e delle enum vengono
+ * confrontati sulla stringa senza copiarli,i campi che il server non usa vengono saltati,
+ * e vengono create solo le stringhe dei campi letti.
+ * Il messaggio deve essere un oggetto Json valido,altrimenti viene lanciata una ParseException come per MessageAnalyzer.parse.
+ * @author Gionatha Sturba
+ *
+ */
+public class RequestDecoder
+{
+	private static final int MAX_DEPTH = 32; //annidamento massimo dei valori saltati
+
+	//campi letti,nell'ordine degli id
+	private static final int MESSAGE_TYPE = 0;
+	private static final int REQUEST_TYPE = 1;
+	private static final int NICKNAME_SENDER = 2;
+	private static final int REQUEST_ACCESS_TYPE = 3;
+	private static final int PASSWORD = 4;
+	private static final int LANGUAGE = 5;
+	private static final int PAGE_SIZE = 6;
+	private static final int INTERACTION_TYPE = 7;
+	private static final int NICKNAME_RECEIVER = 8;
+	private static final int TEXT = 9;
+	private static final int SEND_FILE_FILENAME = 10;
+	private static final int CHATROOM_REQUEST_TYPE = 11;
+	private static final int CHATROOM_NAME = 12;
+	private static final int REQUEST_ID = 13;
+	private static final int UNKNOWN = -1;
+
+	private static final String[] FIELDS = {
+			Message.FIELD_MESSAGE_TYPE,
+			RequestMessage.FIELD_REQUEST_TYPE,
+			RequestMessage.FIELD_REQUEST_NICKNAME_SENDER,
+			RequestAccessMessage.FIELD_REQUEST_ACCESS_TYPE,
+			RequestAccessMessage.FIELD_REQUEST_ACCESS_PASSWORD,
+			RegisterRequest.FIELD_REGISTER_REQUEST_LANGUAGE,
+			RequestAccessMessage.FIELD_PAGE_SIZE,
+			InteractionRequest.FIELD_INTERACTION_REQUEST_TYPE,
+			InteractionRequest.FIELD_NICKNAME_RECEIVER,
+			SendMessageRequest.FIELD_TEXT_MESSAGE,
+			SendFileRequest.FIELD_SEND_FILE_REQUEST_FILENAME,
+			ChatRoomRequest.FIELD_CHATROOM_REQUEST_TYPE,
+			ChatRoomRequest.FIELD_CHATROOM_REQUEST_NAME,
+			RequestMessage.FIELD_REQUEST_ID
+	};
+
+	//costanti delle enum,copiate una sola volta
+	private static final Message.Type[] MESSAGE_TYPES = Message.Type.values();
+	private static final RequestMessage.Type[] REQUEST_TYPES = RequestMessage.Type.values();
+	private static final RequestAccessMessage.Type[] REQUEST_ACCESS_TYPES = RequestAccessMessage.Type.values();
+	private static final InteractionRequest.Type[] INTERACTION_TYPES = InteractionRequest.Type.values();
+	private static final ChatRoomRequest.ChatroomRequests[] CHATROOM_REQUEST_TYPES = ChatRoomRequest.ChatroomRequests.values();
+
+	private final String json; //messaggio da decodificare
+	private int pos; //posizione corrente nel messaggio
+
+	//estremi dell'ultima stringa letta,senza virgolette
+	private int start;
+	private int end;
+	private boolean escaped; //true se l'ultima stringa letta contiene sequenze di escape
+
+	private RequestDecoder(String json)
+	{
+		this.json = json;
+		this.pos = 0;
+	}
+
+	/**
+	 * Decodifica una richiesta
+	 * @param JsonStringMessage stringa in formato Json da decodificare
+	 * @return richiesta decodificata
+	 * @throws ParseException se la stringa non e' un oggetto Json valido
+	 */
+	public static ParsedRequest decode(String JsonStringMessage) throws ParseException
+	{
+		if(JsonStringMessage == null)
+			throw new NullPointerException();
+
+		RequestDecoder decoder = new RequestDecoder(JsonStringMessage);
+		ParsedRequest request = new ParsedRequest();
+
+		decoder.readRequest(request);
+
+		return request;
+	}
+
+	private void readRequest(ParsedRequest request) throws ParseException
+	{
+		skipWhitespace();
+		expect('{');
+		skipWhitespace();
+
+		if(peek() == '}') {
+			pos++;
+		}
+		else
+		{
+			while(true)
+			{
+				expect('"');
+				readString();
+				int field = fieldId();
+
+				skipWhitespace();
+				expect(':');
+				skipWhitespace();
+
+				readField(request,field);
+
+				skipWhitespace();
+
+				char c = next();
+
+				if(c == '}')
+					break;
+
+				if(c != ',')
+					throw unexpected(pos - 1);
+
+				skipWhitespace();
+			}
+		}
+
+		skipWhitespace();
+
+		//dati dopo la fine dell'oggetto
+		if(pos < json.length())
+			throw unexpected(pos);
+	}
+
+	/**
+	 * Legge il valore di un campo,dalla posizione corrente
+	 */
+	private void readField(ParsedRequest request,int field) throws ParseException
+	{
+		switch (field)
+		{
+			case MESSAGE_TYPE:
+				request.messageType = readEnum(MESSAGE_TYPES);
+				break;
+
+			case REQUEST_TYPE:
+				request.requestType = readEnum(REQUEST_TYPES);
+				break;
+
+			case REQUEST_ACCESS_TYPE:
+				request.requestAccessType = readEnum(REQUEST_ACCESS_TYPES);
+				break;
+
+			case INTERACTION_TYPE:
+				request.interactionType = readEnum(INTERACTION_TYPES);
+				break;
+
+			case CHATROOM_REQUEST_TYPE:
+				request.chatRoomRequestType = readEnum(CHATROOM_REQUEST_TYPES);
+				break;
+
+			case NICKNAME_SENDER:
+				request.nicknameSender = readStringValue();
+				break;
+
+			case PASSWORD:
+				request.password = readStringValue();
+				break;
+
+			case LANGUAGE:
+				request.language = readStringValue();
+				break;
+
+			case NICKNAME_RECEIVER:
+				request.nicknameReceiver = readStringValue();
+				break;
+
+			case TEXT:
+				request.text = readStringValue();
+				break;
+
+			case SEND_FILE_FILENAME:
+				request.sendFileFilename = readStringValue();
+				break;
+
+			case CHATROOM_NAME:
+				request.chatRoomName = readStringValue();
+				break;
+
+			case PAGE_SIZE:
+				long pageSize = readLong();
+				request.pageSize = pageSize <= 0 ? 0 : (int) Math.min(pageSize,Integer.MAX_VALUE);
+				break;
+
+			case REQUEST_ID:
+				long requestId = readLong();
+				request.requestId = requestId < 0 ? ParsedRequest.NO_REQUEST_ID : requestId;
+				break;
+
+			//campo non usato dal server
+			default:
+				skipValue(0);
+				break;
+		}
+	}
+
+	/**
+	 * @return id del campo con il nome dell'ultima stringa letta,UNKNOWN se il server non lo usa
+	 */
+	private int fieldId()
+	{
+		String name = escaped ? unescape() : null;
+
+		for (int i = 0; i < FIELDS.length; i++)
+		{
+			String field = FIELDS[i];
+
+			if(name != null ? name.equals(field) : field.length() == end - start && json.regionMatches(start,field,0,end - start))
+				return i;
+		}
+
+		return UNKNOWN;
+	}
+
+	/**
+	 * @return valore stringa nella posizione corrente,null se il valore e' di un altro tipo
+	 */
+	private String readStringValue() throws ParseException
+	{
+		if(peek() != '"') {
+			skipValue(0);
+			return null;
+		}
+
+		pos++;
+		readString();
+
+		return escaped ? unescape() : json.substring(start,end);
+	}
+
+	/**
+	 * @return costante dell'enum con il nome nella posizione corrente,null se non esiste o il valore non e' una stringa
+	 */
+	private <E extends Enum<E>> E readEnum(E[] values) throws ParseException
+	{
+		if(peek() != '"') {
+			skipValue(0);
+			return null;
+		}
+
+		pos++;
+		readString();
+
+		if(escaped) {
+			String name = unescape();
+			return ParsedRequest.toEnum(values,name,0,name.length());
+		}
+
+		return ParsedRequest.toEnum(values,json,start,end);
+	}
+
+	/**
+	 * @return numero nella posizione corrente,troncato ad intero,Long.MIN_VALUE se il valore non e' un numero
+	 */
+	private long readLong() throws ParseException
+	{
+		char c = peek();
+
+		if(c != '-' && (c < '0' || c > '9')) {
+			skipValue(0);
+			return Long.MIN_VALUE;
+		}
+
+		int numberStart = pos;
+		boolean integer = skipNumber();
+
+		long value;
+
+		if(integer && pos - numberStart <= 18) {
+			value = Long.parseLong(json,numberStart,pos,10);
+		}
+		else {
+			value = (long) Double.parseDouble(json.substring(numberStart,pos));
+		}
+
+		return value;
+	}
+
+	/**
+	 * Legge una stringa,dopo le virgolette di apertura,fino alle virgolette di chiusura comprese.
+	 * Imposta start,end ed escaped.
+	 */
+	private void readString() throws ParseException
+	{
+		start = pos;
+		escaped = false;
+
+		while(true)
+		{
+			if(pos >= json.length())
+				throw unexpected(pos);
+
+			char c = json.charAt(pos++);
+
+			if(c == '"')
+				break;
+
+			if(c == '\\')
+			{
+				escaped = true;
+
+				if(pos >= json.length())
+					throw unexpected(pos);
+
+				//la sequenza viene controllata da unescape
+				pos += json.charAt(pos) == 'u' ? 5 : 1;
+			}
+		}
+
+		end = pos - 1;
+	}
+
+	/**
+	 * @return ultima stringa letta,con le sequenze di escape sostituite
+	 */
+	private String unescape()
+	{
+		StringBuilder builder = new StringBuilder(end - start);
+
+		for (int i = start; i < end; i++)
+		{
+			char c = json.charAt(i);
+
+			if(c != '\\') {
+				builder.append(c);
+				continue;
+			}
+
+			c = json.charAt(++i);
+
+			switch (c)
+			{
+				case 'b': builder.append('\b'); break;
+				case 'f': builder.append('\f'); break;
+				case 'n': builder.append('\n'); break;
+				case 'r': builder.append('\r'); break;
+				case 't': builder.append('\t'); break;
+
+				case 'u':
+					try {
+						builder.append((char) Integer.parseInt(json,i + 1,i + 5,16));
+					}
+					//sequenza non valida,la lascio com'e'
+					catch (NumberFormatException | IndexOutOfBoundsException e) {
+						builder.append('\\').append('u');
+						break;
+					}
+
+					i += 4;
+					break;
+
+				//anche \" \\ e \/
+				default: builder.append(c); break;
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Salta il valore nella posizione corrente
+	 * @param depth annidamento del valore
+	 */
+	private void skipValue(int depth) throws ParseException
+	{
+		if(depth > MAX_DEPTH)
+			throw new ParseException(pos,ParseException.ERROR_UNEXPECTED_EXCEPTION,"annidamento eccessivo");
+
+		char c = peek();
+
+		switch (c)
+		{
+			case '"':
+				pos++;
+				readString();
+				return;
+
+			case '{':
+			case '[':
+				pos++;
+				skipContainer(c == '{' ? '}' : ']',depth);
+				return;
+
+			case 't':
+				skipLiteral("true");
+				return;
+
+			case 'f':
+				skipLiteral("false");
+				return;
+
+			case 'n':
+				skipLiteral("null");
+				return;
+
+			default:
+				if(c != '-' && (c < '0' || c > '9'))
+					throw unexpected(pos);
+
+				skipNumber();
+				return;
+		}
+	}
+
+	/**
+	 * Salta un oggetto o un array,dopo la parentesi di apertura
+	 */
+	private void skipContainer(char close,int depth) throws ParseException
+	{
+		skipWhitespace();
+
+		if(peek() == close) {
+			pos++;
+			return;
+		}
+
+		while(true)
+		{
+			if(close == '}')
+			{
+				expect('"');
+				readString();
+				skipWhitespace();
+				expect(':');
+				skipWhitespace();
+			}
+
+			skipValue(depth + 1);
+			skipWhitespace();
+
+			char c = next();
+
+			if(c == close)
+				return;
+
+			if(c != ',')
+				throw unexpected(pos - 1);
+
+			skipWhitespace();
+		}
+	}
+
+	/**
+	 * Salta un numero
+	 * @return true se il numero e' intero
+	 */
+	private boolean skipNumber() throws ParseException
+	{
+		boolean integer = true;
+
+		if(peek() == '-')
+			pos++;
+
+		skipDigits();
+
+		if(pos < json.length() && json.charAt(pos) == '.') {
+			pos++;
+			integer = false;
+			skipDigits();
+		}
+
+		if(pos < json.length() && (json.charAt(pos) == 'e' || json.charAt(pos) == 'E'))
+		{
+			pos++;
+			integer = false;
+
+			if(pos < json.length() && (json.charAt(pos) == '+' || json.charAt(pos) == '-'))
+				pos++;
+
+			skipDigits();
+		}
+
+		return integer;
+	}
+
+	private void skipDigits() throws ParseException
+	{
+		int digitsStart = pos;
+
+		while(pos < json.length() && json.charAt(pos) >= '0' && json.charAt(pos) <= '9')
+			pos++;
+
+		if(pos == digitsStart)
+			throw unexpected(pos);
+	}
+
+	private void skipLiteral(String literal) throws ParseException
+	{
+		if(!json.startsWith(literal,pos))
+			throw unexpected(pos);
+
+		pos += literal.length();
+	}
+
+	private void skipWhitespace()
+	{
+		while(pos < json.length())
+		{
+			char c = json.charAt(pos);
+
+			if(c != ' ' && c != '\t' && c != '\n' && c != '\r')
+				return;
+
+			pos++;
+		}
+	}
+
+	private char peek() throws ParseException
+	{
+		if(pos >= json.length())
+			throw unexpected(pos);
+
+		return json.charAt(pos);
+	}
+
+	private char next() throws ParseException
+	{
+		char c = peek();
+		pos++;
+
+		return c;
+	}
+
+	private void expect(char expected) throws ParseException
+	{
+		if(next() != expected)
+			throw unexpected(pos - 1);
+	}
+
+	private ParseException unexpected(int position)
+	{
+		//fine del messaggio
+		if(position >= json.length())
+			return new ParseException(position,ParseException.ERROR_UNEXPECTED_TOKEN,null);
+
+		return new ParseException(position,ParseException.ERROR_UNEXPECTED_CHAR,json.charAt(position));
+	}
+}
@@ -8,6 +8,7 @@ package communication.TCPMessages.notification;
 public class NewIncomingFile extends NotificationMessage
 {
 	public static final String FIELD_INCOMING_FILE_FILENAME = "incoming-file-name";
+	public static final String FIELD_FILE_OFFER_ID = "file-offer-id"; //id dell'offerta,da riportare nella risposta
 	
 	public NewIncomingFile(String senderNickname,String filename) 
 	{
@@ -16,5 +17,19 @@ public class NewIncomingFile extends NotificationMessage
 		//inserisco nome del file che si sta per ricevere
 		jsonMessage.put(FIELD_INCOMING_FILE_FILENAME,filename);
 	}
+	
+	/**
+	 * Crea la notifica di un file,con l'id che il destinatario deve riportare nella risposta
+	 * @param senderNickname mittente del file
+	 * @param filename nome del file
+	 * @param offerId id dell'offerta del file
+	 */
+	@SuppressWarnings("unchecked")
+	public NewIncomingFile(String senderNickname,String filename,long offerId) 
+	{
+		this(senderNickname,filename);
+		
+		jsonMessage.put(FIELD_FILE_OFFER_ID,offerId);
+	}
 
 }
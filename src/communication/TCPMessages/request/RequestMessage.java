@@ -13,6 +13,7 @@ public class RequestMessage extends Message
 	public enum Type {ACCESS,LOGOUT,INTERACTION,CHAT_NOTIFICATION_CHAN,CHATROOM_REQUEST} //tipi possibili di un messaggio di richiesta
 	public static String FIELD_REQUEST_TYPE = "request-type";
 	public static String FIELD_REQUEST_NICKNAME_SENDER= "nickname";
+	public static final String FIELD_REQUEST_ID = "request-id";
 	
 	//stato interno
 	protected RequestMessage.Type requestType;
@@ -31,4 +32,18 @@ public class RequestMessage extends Message
 		jsonMessage.put(this.FIELD_REQUEST_NICKNAME_SENDER,nickname);
 
 	}
+	
+	/**
+	 * Assegna un id alla richiesta: il server lo riporta nelle risposte,
+	 * cosi' piu' richieste possono essere in attesa di risposta sulla stessa connessione
+	 * @param requestId id della richiesta,non negativo
+	 */
+	@SuppressWarnings("unchecked")
+	public void setRequestId(long requestId)
+	{
+		if(requestId < 0)
+			throw new IllegalArgumentException();
+		
+		jsonMessage.put(FIELD_REQUEST_ID,requestId);
+	}
 }
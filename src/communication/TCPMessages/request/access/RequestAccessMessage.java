@@ -12,6 +12,7 @@ public class RequestAccessMessage extends RequestMessage
 	public enum Type {LOGIN,REGISTER}; // tipo di richiesta accesso al sistema
 	public static final String FIELD_REQUEST_ACCESS_TYPE = "request-access-type";
 	public static final String FIELD_REQUEST_ACCESS_PASSWORD = "password";
+	public static final String FIELD_PAGE_SIZE = "page-size";
 	
 	//stato interno
 	protected RequestAccessMessage.Type requestAccessType;
@@ -25,4 +26,18 @@ public class RequestAccessMessage extends RequestMessage
 		jsonMessage.put(FIELD_REQUEST_ACCESS_TYPE,requestAccessType.name());
 		jsonMessage.put(this.FIELD_REQUEST_ACCESS_PASSWORD,password);
 	}
+	
+	/**
+	 * Chiede di ricevere la lista degli amici e delle chatroom in piu' messaggi (vedi ListPage),
+	 * invece che tutta nella risposta
+	 * @param pageSize elementi massimi di ogni messaggio
+	 */
+	@SuppressWarnings("unchecked")
+	public void setPageSize(int pageSize) 
+	{
+		if(pageSize <= 0)
+			throw new IllegalArgumentException();
+		
+		jsonMessage.put(FIELD_PAGE_SIZE,pageSize);
+	}
 }
@@ -2,6 +2,8 @@ package communication.TCPMessages.response;
 
 import communication.TCPMessages.Message;
 import communication.TCPMessages.Message.Type;
+import communication.TCPMessages.notification.NewIncomingFile;
+import communication.TCPMessages.request.RequestMessage;
 
 /**
  * Rappresenta in generico messaggio di rispostas
@@ -23,4 +25,22 @@ public class ResponseMessage extends Message
 		//inserisco formato della risposta nel messaggio json
 		jsonMessage.put(FIELD_RESPONSE_TYPE,responseType.name());
 	}
+	
+	/**
+	 * Indica a quale offerta di un file risponde questo messaggio
+	 * @param offerId id riportato nella notifica del file
+	 */
+	@SuppressWarnings("unchecked")
+	public void setFileOfferId(long offerId) {
+		jsonMessage.put(NewIncomingFile.FIELD_FILE_OFFER_ID,offerId);
+	}
+	
+	/**
+	 * Indica a quale richiesta risponde questo messaggio
+	 * @param requestId id riportato nella richiesta
+	 */
+	@SuppressWarnings("unchecked")
+	public void setRequestId(long requestId) {
+		jsonMessage.put(RequestMessage.FIELD_REQUEST_ID,requestId);
+	}
 }
@@ -19,7 +19,7 @@ public class ResponseFailedMessage extends ResponseMessage
 		INVALID_REQUEST,SENDER_USER_NOT_FOUND,RECEIVER_USER_NOT_FOUND,SENDER_USER_INVALID_STATUS,
 		RECEIVER_USER_INVALID_STATUS,USER_ALREADY_REGISTERED,PASSWORD_MISMATCH,ALREADY_FRIEND,
 		SAME_USERS,CANNOT_RECEIVE_FILE,CHATROOM_ALREADY_REGISTERED,CHATROOM_NOT_FOUND,CANNOT_CREATE_CHATROOM,
-		OPERATION_NOT_PERMITTED
+		OPERATION_NOT_PERMITTED,RECEIVER_USER_BUSY
 	} 	
 	
 	public static final String FIELD_FAIL_MESSAGE = "Error"; //nome del campo che riporta l'errore
@@ -0,0 +1,50 @@
+package communication.TCPMessages.response.success;
+
+import java.util.List;
+
+import org.json.simple.JSONArray;
+
+import server.model.ChatRoom;
+import server.model.User;
+
+/**
+ * Una pagina della lista degli amici e delle chatroom,inviata dopo una risposta di login o di registrazione
+ * quando il client ha chiesto di riceverle in piu' messaggi.
+ * Gli iscritti di una chatroom possono continuare nella pagina successiva: in quel caso la chatroom
+ * compare di nuovo,con lo stesso nome e i restanti iscritti.
+ * @author Gionatha Sturba
+ *
+ */
+public class ListPage extends ResponseSuccessMessage
+{
+	public static final String FIELD_LAST_PAGE = "last-page";
+	
+	/**
+	 * @param amici amici della pagina
+	 * @param chatrooms chatroom della pagina,con i rispettivi iscritti della pagina
+	 * @param last true se e' l'ultima pagina
+	 */
+	@SuppressWarnings("unchecked")
+	public ListPage(List<User> amici,List<ChatRoom> chatrooms,boolean last)
+	{
+		super();
+		
+		if(amici == null || chatrooms == null)
+			throw new NullPointerException();
+		
+		JSONArray listaAmici = new JSONArray();
+		JSONArray listaChatroom = new JSONArray();
+		
+		for (User user : amici) {
+			listaAmici.add(User.toJsonObject(user));
+		}
+		
+		for (ChatRoom cr : chatrooms) {
+			listaChatroom.add(ChatRoom.toJsonObject(cr));
+		}
+		
+		jsonMessage.put(SuccessfulLogin.FIELD_FRIEND_LIST,listaAmici);
+		jsonMessage.put(SuccessfulLogin.FIELD_CHATROOM_LIST,listaChatroom);
+		jsonMessage.put(FIELD_LAST_PAGE,last);
+	}
+}
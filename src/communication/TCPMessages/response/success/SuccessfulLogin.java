@@ -16,6 +16,18 @@ public class SuccessfulLogin extends ResponseSuccessMessage
 {
 	public static final String FIELD_FRIEND_LIST = "friend-list";
 	public static final String FIELD_CHATROOM_LIST = "chatroom-list";
+	public static final String FIELD_PAGED = "paged";
+	
+	/**
+	 * Risposta senza liste: amici e chatroom seguono in una serie di ListPage
+	 */
+	@SuppressWarnings("unchecked")
+	public SuccessfulLogin()
+	{
+		super();
+		
+		jsonMessage.put(FIELD_PAGED,true);
+	}
 	
 	public SuccessfulLogin(List<User>amici,List<ChatRoom> chatrooms)
 	{
@@ -15,6 +15,17 @@ public class SuccessfulRegistration extends ResponseSuccessMessage
 {
 	public static final String FIELD_CHATROOM_LIST = "chatroom-list";
 	
+	/**
+	 * Risposta senza lista: le chatroom seguono in una serie di ListPage
+	 */
+	@SuppressWarnings("unchecked")
+	public SuccessfulRegistration()
+	{
+		super();
+		
+		jsonMessage.put(SuccessfulLogin.FIELD_PAGED,true);
+	}
+	
 	public SuccessfulRegistration(List<ChatRoom> chatrooms)
 	{
 		super();
@@ -0,0 +1,471 @@
+package communication.TCPMessages.wire;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import communication.TCPMessages.request.RequestMessage;
+
+/**
+ * Formato binario (versione 1 del protocollo).
+ * Ogni frame ha un header di 4 byte con la lunghezza del messaggio (big endian),quindi non c'e' il limite di 64 KB di writeUTF.
+ * Il messaggio e' codificato come valore con tag: un byte indica il tipo del valore,seguito dal suo contenuto.
+ * I nomi dei campi e i valori delle enum dei messaggi sono nella tabella dei simboli,e occupano un solo byte.
+ * I messaggi vengono decodificati direttamente dal ByteBuffer che contiene il frame,senza copiarlo.
+ * @author Gionatha Sturba
+ *
+ */
+public class BinaryWireFormat implements WireFormat
+{
+	private static final int HEADER_LEN = 4;
+	public static final int MAX_PAYLOAD_LENGTH = 16 * 1024 * 1024; //byte massimi di un messaggio
+	private static final int MAX_DEPTH = 32; //annidamento massimo di oggetti e array
+
+	//tag dei valori
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_FALSE = 1;
+	private static final byte TAG_TRUE = 2;
+	private static final byte TAG_LONG = 3; //varint zigzag
+	private static final byte TAG_DOUBLE = 4; //8 byte IEEE 754
+	private static final byte TAG_STRING = 5; //lunghezza varint e byte UTF-8
+	private static final byte TAG_SYMBOL = 6; //indice nella tabella dei simboli
+	private static final byte TAG_ARRAY = 7; //numero di elementi varint e valori
+	private static final byte TAG_OBJECT = 8; //numero di campi varint e coppie nome,valore
+
+	/**
+	 * Tabella dei simboli della versione 1.I simboli possono solo essere aggiunti in fondo:
+	 * cambiare l'ordine o toglierne uno richiede una nuova versione del protocollo.
+	 */
+	private static final List<String> SYMBOLS = Arrays.asList(
+			//campi dei messaggi
+			"message-type","request-type","nickname","response-type","notification-type","Error",
+			"request-access-type","password","language","interaction-type","nickname-receiver","text",
+			"send-file-filename","chatroom-request-type","chatroom-name","incoming-message-sender-nickname",
+			"message-text","incoming-file-name","file-offer-id","friend-list","chatroom-list","status-new-friend",
+			"hostname","port",
+			//campi di utenti e chatroom
+			"name","online","ms-address","ms-port","message-address","message-port","list-subscriber",
+			//Message.Type
+			"REQUEST","RESPONSE","NOTIFICATION",
+			//RequestMessage.Type
+			"ACCESS","LOGOUT","INTERACTION","CHAT_NOTIFICATION_CHAN","CHATROOM_REQUEST",
+			//RequestAccessMessage.Type
+			"LOGIN","REGISTER",
+			//InteractionRequest.Type
+			"FIND_USER_REQUEST","FRIENDSHIP_REQUEST","MESSAGE_SEND_REQUEST","FILE_SEND_REQUEST",
+			//ChatRoomRequest.ChatroomRequests
+			"NEW_CHATROOM","JOIN_CHATROOM","CLOSE_CHATROOM",
+			//ResponseMessage.Type
+			"FAIL","SUCCESS",
+			//NotificationMessage.EventType
+			"NEW_MESSAGE","NEW_FILE",
+			//ResponseFailedMessage.Errors
+			"INVALID_REQUEST","SENDER_USER_NOT_FOUND","RECEIVER_USER_NOT_FOUND","SENDER_USER_INVALID_STATUS",
+			"RECEIVER_USER_INVALID_STATUS","USER_ALREADY_REGISTERED","PASSWORD_MISMATCH","ALREADY_FRIEND",
+			"SAME_USERS","CANNOT_RECEIVE_FILE","CHATROOM_ALREADY_REGISTERED","CHATROOM_NOT_FOUND","CANNOT_CREATE_CHATROOM",
+			"OPERATION_NOT_PERMITTED","RECEIVER_USER_BUSY"
+	);
+
+	private static final String[] symbols = SYMBOLS.toArray(new String[0]);
+	private static final Map<String,Integer> symbolIndex = new HashMap<String,Integer>();
+	private static final byte[] REQUEST_ID_KEY; //nome del campo dell'id della richiesta,gia' codificato
+
+	static
+	{
+		for (int i = 0; i < symbols.length; i++) {
+			symbolIndex.put(symbols[i],i);
+		}
+
+		Encoder encoder = new Encoder();
+		encoder.writeString(RequestMessage.FIELD_REQUEST_ID);
+		REQUEST_ID_KEY = Arrays.copyOf(encoder.buffer,encoder.length);
+	}
+
+	@Override
+	public int getVersion() {
+		return WireProtocol.BINARY_VERSION;
+	}
+
+	@Override
+	public void write(JSONObject message,DataOutputStream out) throws IOException
+	{
+		if(message == null || out == null)
+			throw new NullPointerException();
+
+		Encoder encoder = new Encoder();
+		encoder.writeValue(message,0);
+
+		out.writeInt(encoder.length);
+		out.write(encoder.buffer,0,encoder.length);
+	}
+
+	@Override
+	public JSONObject read(DataInputStream in) throws IOException,ParseException
+	{
+		if(in == null)
+			throw new NullPointerException();
+
+		int length = checkLength(in.readInt());
+		byte[] payload = new byte[length];
+
+		in.readFully(payload);
+
+		return decodePayload(ByteBuffer.wrap(payload));
+	}
+
+	@Override
+	public int getHeaderLength() {
+		return HEADER_LEN;
+	}
+
+	@Override
+	public int getPayloadLength(ByteBuffer buffer) throws IOException {
+		return checkLength(buffer.getInt(buffer.position()));
+	}
+
+	@Override
+	public int addRequestId(byte[] frame,long requestId,byte[] dest)
+	{
+		if(frame == null || dest == null)
+			throw new NullPointerException();
+
+		if(requestId < 0 || frame.length <= HEADER_LEN || frame[HEADER_LEN] != TAG_OBJECT)
+			throw new IllegalArgumentException();
+
+		//numero di campi dell'oggetto
+		int src = HEADER_LEN + 1;
+		long count = 0;
+		byte b;
+
+		for (int shift = 0; ; shift += 7)
+		{
+			b = frame[src++];
+			count |= (long) (b & 0x7F) << shift;
+
+			if((b & 0x80) == 0)
+				break;
+		}
+
+		//il campo dell'id diventa il primo dell'oggetto
+		int pos = HEADER_LEN;
+		dest[pos++] = TAG_OBJECT;
+		pos = writeVarLong(count + 1,dest,pos);
+
+		System.arraycopy(REQUEST_ID_KEY,0,dest,pos,REQUEST_ID_KEY.length);
+		pos += REQUEST_ID_KEY.length;
+
+		dest[pos++] = TAG_LONG;
+		pos = writeVarLong(requestId << 1,dest,pos);
+
+		System.arraycopy(frame,src,dest,pos,frame.length - src);
+		pos += frame.length - src;
+
+		int length = pos - HEADER_LEN;
+
+		for (int i = 0; i < HEADER_LEN; i++) {
+			dest[i] = (byte) (length >>> (8 * (HEADER_LEN - 1 - i)));
+		}
+
+		return pos;
+	}
+
+	/**
+	 * Scrive un varint in un array
+	 * @return posizione dopo il varint
+	 */
+	private static int writeVarLong(long value,byte[] dest,int pos)
+	{
+		while((value & ~0x7FL) != 0) {
+			dest[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		dest[pos++] = (byte) value;
+
+		return pos;
+	}
+
+	@Override
+	public JSONObject decode(ByteBuffer frame) throws IOException,ParseException
+	{
+		ByteBuffer payload = frame.duplicate();
+		int length = checkLength(payload.getInt());
+
+		if(payload.remaining() != length)
+			throw new ProtocolException("Lunghezza del frame non valida");
+
+		return decodePayload(payload);
+	}
+
+	/**
+	 * Decodifica un messaggio,dalla posizione al limite del buffer
+	 */
+	private static JSONObject decodePayload(ByteBuffer payload) throws IOException,ParseException
+	{
+		try
+		{
+			Object message = readValue(payload,0);
+
+			if(!(message instanceof JSONObject) || payload.hasRemaining())
+				throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+
+			return (JSONObject) message;
+		}
+		//messaggio troncato
+		catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new ParseException(ParseException.ERROR_UNEXPECTED_EXCEPTION,e);
+		}
+	}
+
+	private static int checkLength(int length) throws ProtocolException
+	{
+		if(length < 0 || length > MAX_PAYLOAD_LENGTH)
+			throw new ProtocolException("Lunghezza del messaggio non valida: "+length);
+
+		return length;
+	}
+
+	/**
+	 * Decodifica un valore,spostando la posizione del buffer dopo il valore
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object readValue(ByteBuffer buffer,int depth) throws ParseException
+	{
+		if(depth > MAX_DEPTH)
+			throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+
+		byte tag = buffer.get();
+
+		switch (tag)
+		{
+			case TAG_NULL:
+				return null;
+
+			case TAG_FALSE:
+				return Boolean.FALSE;
+
+			case TAG_TRUE:
+				return Boolean.TRUE;
+
+			case TAG_LONG:
+				long zigzag = readVarLong(buffer);
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+
+			case TAG_DOUBLE:
+				return buffer.getDouble();
+
+			case TAG_STRING:
+				return readString(buffer);
+
+			case TAG_SYMBOL:
+				int index = buffer.get() & 0xFF;
+
+				if(index >= symbols.length)
+					throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+
+				return symbols[index];
+
+			case TAG_ARRAY:
+			{
+				int size = readCount(buffer);
+				JSONArray array = new JSONArray();
+
+				for (int i = 0; i < size; i++) {
+					array.add(readValue(buffer,depth + 1));
+				}
+
+				return array;
+			}
+
+			case TAG_OBJECT:
+			{
+				int size = readCount(buffer);
+				JSONObject object = new JSONObject();
+
+				for (int i = 0; i < size; i++)
+				{
+					Object key = readValue(buffer,depth + 1);
+
+					if(!(key instanceof String))
+						throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+
+					object.put(key,readValue(buffer,depth + 1));
+				}
+
+				return object;
+			}
+
+			default:
+				throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+		}
+	}
+
+	/**
+	 * Decodifica una stringa UTF-8 direttamente dall'array del buffer
+	 */
+	private static String readString(ByteBuffer buffer) throws ParseException
+	{
+		int length = readCount(buffer);
+		String value;
+
+		if(buffer.hasArray()) {
+			value = new String(buffer.array(),buffer.arrayOffset() + buffer.position(),length,StandardCharsets.UTF_8);
+		}
+		else {
+			byte[] bytes = new byte[length];
+			buffer.duplicate().get(bytes);
+			value = new String(bytes,StandardCharsets.UTF_8);
+		}
+
+		buffer.position(buffer.position() + length);
+
+		return value;
+	}
+
+	/**
+	 * Legge un numero di elementi,controllando che non superi i byte rimasti nel buffer
+	 */
+	private static int readCount(ByteBuffer buffer) throws ParseException
+	{
+		long count = readVarLong(buffer);
+
+		if(count < 0 || count > buffer.remaining())
+			throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+
+		return (int) count;
+	}
+
+	private static long readVarLong(ByteBuffer buffer) throws ParseException
+	{
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+
+			if((b & 0x80) == 0)
+				return value;
+		}
+
+		throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+	}
+
+	/**
+	 * Codifica un messaggio in un array che cresce secondo necessita'
+	 */
+	private static class Encoder
+	{
+		private byte[] buffer = new byte[256];
+		private int length = 0;
+
+		private void writeValue(Object value,int depth) throws IOException
+		{
+			if(depth > MAX_DEPTH)
+				throw new ProtocolException("Messaggio troppo annidato");
+
+			if(value == null)
+				writeByte(TAG_NULL);
+			else if(value instanceof Boolean)
+				writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+			else if(value instanceof Double || value instanceof Float) {
+				writeByte(TAG_DOUBLE);
+				writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+			}
+			else if(value instanceof Number) {
+				long number = ((Number) value).longValue();
+				writeByte(TAG_LONG);
+				writeVarLong((number << 1) ^ (number >> 63));
+			}
+			else if(value instanceof Map)
+			{
+				Map<?,?> map = (Map<?,?>) value;
+
+				writeByte(TAG_OBJECT);
+				writeVarLong(map.size());
+
+				for (Map.Entry<?,?> entry : map.entrySet()) {
+					writeString(String.valueOf(entry.getKey()));
+					writeValue(entry.getValue(),depth + 1);
+				}
+			}
+			else if(value instanceof List)
+			{
+				List<?> list = (List<?>) value;
+
+				writeByte(TAG_ARRAY);
+				writeVarLong(list.size());
+
+				for (Object element : list) {
+					writeValue(element,depth + 1);
+				}
+			}
+			else
+				writeString(value.toString());
+
+			if(length > MAX_PAYLOAD_LENGTH)
+				throw new ProtocolException("Messaggio troppo grande: "+length+" byte");
+		}
+
+		private void writeString(String value)
+		{
+			Integer symbol = symbolIndex.get(value);
+
+			//stringa nota,un solo byte
+			if(symbol != null) {
+				writeByte(TAG_SYMBOL);
+				writeByte(symbol.byteValue());
+				return;
+			}
+
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+			writeByte(TAG_STRING);
+			writeVarLong(bytes.length);
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes,0,buffer,length,bytes.length);
+			length += bytes.length;
+		}
+
+		private void writeVarLong(long value)
+		{
+			while((value & ~0x7FL) != 0) {
+				writeByte((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+
+			writeByte((byte) value);
+		}
+
+		private void writeLong(long value)
+		{
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				writeByte((byte) (value >>> shift));
+			}
+		}
+
+		private void writeByte(byte value)
+		{
+			ensureCapacity(1);
+			buffer[length++] = value;
+		}
+
+		private void ensureCapacity(int bytes)
+		{
+			if(length + bytes > buffer.length)
+				buffer = Arrays.copyOf(buffer,Math.max(buffer.length * 2,length + bytes));
+		}
+	}
+}
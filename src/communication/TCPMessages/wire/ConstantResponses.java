@@ -0,0 +1,116 @@
+package communication.TCPMessages.wire;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import communication.TCPMessages.Message;
+import communication.TCPMessages.response.fail.ResponseFailedMessage;
+import communication.TCPMessages.response.success.ResponseSuccessMessage;
+
+/**
+ * Frame gia' codificati delle risposte che non cambiano mai: la risposta di successo senza altri campi,
+ * e una risposta di errore per ogni ResponseFailedMessage.Errors.
+ * I frame vengono codificati una sola volta,per ogni versione del protocollo,al caricamento della classe:
+ * inviare una di queste risposte non crea oggetti Json e non alloca memoria.
+ * Se la richiesta ha un id,l'id viene aggiunto al frame gia' codificato (vedi WireFormat.addRequestId),
+ * in un buffer riusato da ogni thread.
+ * @author Gionatha Sturba
+ *
+ */
+public class ConstantResponses
+{
+	private static final byte[][] SUCCESS = new byte[WireProtocol.CURRENT_VERSION + 1][]; //per versione
+	private static final byte[][][] FAILED = new byte[WireProtocol.CURRENT_VERSION + 1][][]; //per versione e per errore
+	private static final ThreadLocal<byte[]> buffers; //buffer in cui aggiungere l'id della richiesta ai frame
+
+	static
+	{
+		ResponseFailedMessage.Errors[] errors = ResponseFailedMessage.Errors.values();
+
+		for (int version = 0; version <= WireProtocol.CURRENT_VERSION; version++)
+		{
+			WireFormat format = WireProtocol.getFormat(version);
+
+			SUCCESS[version] = encode(format,new ResponseSuccessMessage());
+			FAILED[version] = new byte[errors.length][];
+
+			for (ResponseFailedMessage.Errors error : errors) {
+				FAILED[version][error.ordinal()] = encode(format,new ResponseFailedMessage(error));
+			}
+		}
+
+		int maxLength = 0;
+
+		for (int version = 0; version <= WireProtocol.CURRENT_VERSION; version++)
+		{
+			maxLength = Math.max(maxLength,SUCCESS[version].length);
+
+			for (byte[] frame : FAILED[version]) {
+				maxLength = Math.max(maxLength,frame.length);
+			}
+		}
+
+		int bufferLength = maxLength + WireFormat.REQUEST_ID_MAX_LENGTH;
+		buffers = ThreadLocal.withInitial(() -> new byte[bufferLength]);
+	}
+
+	private static byte[] encode(WireFormat format,Message message)
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		try {
+			format.write(message.getJsonObject(),new DataOutputStream(buffer));
+		}
+		//scrittura in memoria
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Scrive la risposta di successo
+	 * @param format formato dei messaggi della connessione
+	 * @param requestId id della richiesta a cui si risponde,negativo se la richiesta non ha un id
+	 * @param out stream su cui scrivere
+	 * @throws IOException se ci sono errori nella scrittura
+	 */
+	public static void writeSuccess(WireFormat format,long requestId,DataOutputStream out) throws IOException
+	{
+		if(format == null || out == null)
+			throw new NullPointerException();
+
+		write(format,SUCCESS[format.getVersion()],requestId,out);
+	}
+
+	/**
+	 * Scrive una risposta di errore
+	 * @param format formato dei messaggi della connessione
+	 * @param error errore da inviare
+	 * @param requestId id della richiesta a cui si risponde,negativo se la richiesta non ha un id
+	 * @param out stream su cui scrivere
+	 * @throws IOException se ci sono errori nella scrittura
+	 */
+	public static void writeFailed(WireFormat format,ResponseFailedMessage.Errors error,long requestId,DataOutputStream out) throws IOException
+	{
+		if(format == null || error == null || out == null)
+			throw new NullPointerException();
+
+		write(format,FAILED[format.getVersion()][error.ordinal()],requestId,out);
+	}
+
+	private static void write(WireFormat format,byte[] frame,long requestId,DataOutputStream out) throws IOException
+	{
+		if(requestId < 0) {
+			out.write(frame);
+			return;
+		}
+
+		byte[] buffer = buffers.get();
+
+		out.write(buffer,0,format.addRequestId(frame,requestId,buffer));
+	}
+}
@@ -0,0 +1,154 @@
+package communication.TCPMessages.wire;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import communication.TCPMessages.MessageAnalyzer;
+import communication.TCPMessages.ParsedRequest;
+import communication.TCPMessages.RequestDecoder;
+import communication.TCPMessages.request.RequestMessage;
+
+/**
+ * Formato originale: messaggi in Json,scritti con DataOutputStream.writeUTF.
+ * L'header e' di 2 byte,quindi un messaggio non puo' superare i 64 KB codificato.
+ * Resta il formato dei client che non negoziano il protocollo.
+ * Le richieste vengono decodificate con RequestDecoder,senza costruire l'oggetto Json.
+ * @author Gionatha Sturba
+ *
+ */
+public class JsonWireFormat implements WireFormat
+{
+	private static final int HEADER_LEN = 2; //lunghezza dell'header di writeUTF
+	private static final int MAX_PAYLOAD_LENGTH = 0xFFFF; //byte massimi di un messaggio scritto con writeUTF
+	private static final byte[] REQUEST_ID_FIELD = ("\""+RequestMessage.FIELD_REQUEST_ID+"\":").getBytes(StandardCharsets.US_ASCII);
+
+	@Override
+	public int getVersion() {
+		return WireProtocol.JSON_VERSION;
+	}
+
+	@Override
+	public void write(JSONObject message,DataOutputStream out) throws IOException
+	{
+		if(message == null || out == null)
+			throw new NullPointerException();
+
+		out.writeUTF(message.toJSONString());
+	}
+
+	@Override
+	public JSONObject read(DataInputStream in) throws IOException,ParseException
+	{
+		if(in == null)
+			throw new NullPointerException();
+
+		return MessageAnalyzer.parse(in.readUTF());
+	}
+
+	@Override
+	public int getHeaderLength() {
+		return HEADER_LEN;
+	}
+
+	@Override
+	public int getPayloadLength(ByteBuffer buffer) {
+		return buffer.getShort(buffer.position()) & 0xFFFF;
+	}
+
+	@Override
+	public JSONObject decode(ByteBuffer frame) throws IOException,ParseException {
+		return MessageAnalyzer.parse(readUTF(frame));
+	}
+
+	@Override
+	public int addRequestId(byte[] frame,long requestId,byte[] dest)
+	{
+		if(frame == null || dest == null)
+			throw new NullPointerException();
+
+		if(requestId < 0 || frame.length < HEADER_LEN + 2 || frame[HEADER_LEN] != '{')
+			throw new IllegalArgumentException();
+
+		//il campo dell'id diventa il primo dell'oggetto
+		int pos = HEADER_LEN;
+		dest[pos++] = '{';
+
+		System.arraycopy(REQUEST_ID_FIELD,0,dest,pos,REQUEST_ID_FIELD.length);
+		pos += REQUEST_ID_FIELD.length;
+
+		int digits = 1;
+
+		for (long value = requestId; value >= 10; value /= 10) {
+			digits++;
+		}
+
+		for (int i = pos + digits - 1; i >= pos; i--) {
+			dest[i] = (byte) ('0' + requestId % 10);
+			requestId /= 10;
+		}
+
+		pos += digits;
+
+		//oggetto non vuoto
+		if(frame[HEADER_LEN + 1] != '}')
+			dest[pos++] = ',';
+
+		System.arraycopy(frame,HEADER_LEN + 1,dest,pos,frame.length - HEADER_LEN - 1);
+		pos += frame.length - HEADER_LEN - 1;
+
+		int length = pos - HEADER_LEN;
+
+		if(length > MAX_PAYLOAD_LENGTH)
+			throw new IllegalArgumentException("Messaggio troppo grande: "+length+" byte");
+
+		dest[0] = (byte) (length >>> 8);
+		dest[1] = (byte) length;
+
+		return pos;
+	}
+
+	@Override
+	public ParsedRequest readRequest(DataInputStream in) throws IOException,ParseException
+	{
+		if(in == null)
+			throw new NullPointerException();
+
+		return RequestDecoder.decode(in.readUTF());
+	}
+
+	@Override
+	public ParsedRequest decodeRequest(ByteBuffer frame) throws IOException,ParseException {
+		return RequestDecoder.decode(readUTF(frame));
+	}
+
+	/**
+	 * @param frame frame completo,dalla posizione al limite del buffer
+	 * @return stringa contenuta nel frame
+	 * @throws IOException se il frame non e' valido
+	 */
+	private static String readUTF(ByteBuffer frame) throws IOException
+	{
+		byte[] data;
+		int offset;
+
+		//leggo direttamente dall'array del buffer,se c'e'
+		if(frame.hasArray()) {
+			data = frame.array();
+			offset = frame.arrayOffset() + frame.position();
+		}
+		else {
+			data = new byte[frame.remaining()];
+			frame.duplicate().get(data);
+			offset = 0;
+		}
+
+		return new DataInputStream(new ByteArrayInputStream(data,offset,frame.remaining())).readUTF();
+	}
+}
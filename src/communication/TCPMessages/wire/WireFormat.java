@@ -0,0 +1,99 @@
+package communication.TCPMessages.wire;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import communication.TCPMessages.ParsedRequest;
+
+/**
+ * Formato con cui i messaggi vengono scritti sulle connessioni TCP.
+ * Ogni messaggio viaggia in un frame,composto da un header con la lunghezza del messaggio seguito dal messaggio codificato.
+ * Il formato viene scelto all'apertura della connessione (vedi WireProtocol) e resta lo stesso per tutta la connessione.
+ * @author Gionatha Sturba
+ *
+ */
+public interface WireFormat
+{
+	public static final int REQUEST_ID_MAX_LENGTH = 40; //byte massimi aggiunti ad un frame da addRequestId
+
+	/**
+	 * @return versione del protocollo che usa questo formato
+	 */
+	public int getVersion();
+
+	/**
+	 * Scrive un messaggio in un frame
+	 * @param message messaggio da scrivere
+	 * @param out stream su cui scrivere
+	 * @throws IOException se ci sono errori nella scrittura,o il messaggio e' troppo grande per un frame
+	 */
+	public void write(JSONObject message,DataOutputStream out) throws IOException;
+
+	/**
+	 * Legge il prossimo frame da uno stream
+	 * @param in stream da cui leggere
+	 * @return messaggio letto
+	 * @throws IOException se ci sono errori nella lettura (java.net.ProtocolException se il frame non e' valido)
+	 * @throws ParseException se il messaggio non e' valido
+	 */
+	public JSONObject read(DataInputStream in) throws IOException,ParseException;
+
+	/**
+	 * @return byte dell'header di un frame
+	 */
+	public int getHeaderLength();
+
+	/**
+	 * Legge la lunghezza del messaggio dall'header di un frame,senza spostare la posizione del buffer
+	 * @param buffer buffer con almeno getHeaderLength() byte dalla posizione corrente
+	 * @return byte del messaggio che seguono l'header
+	 * @throws IOException se la lunghezza non e' valida
+	 */
+	public int getPayloadLength(ByteBuffer buffer) throws IOException;
+
+	/**
+	 * Decodifica un frame completo,dalla posizione al limite del buffer
+	 * @param frame header e messaggio
+	 * @return messaggio decodificato
+	 * @throws IOException se il frame non e' valido
+	 * @throws ParseException se il messaggio non e' valido
+	 */
+	public JSONObject decode(ByteBuffer frame) throws IOException,ParseException;
+
+	/**
+	 * Copia il frame di una risposta gia' codificata,aggiungendo il campo con l'id della richiesta a cui risponde.
+	 * Permette di riusare i frame delle risposte costanti (vedi ConstantResponses) senza codificarle di nuovo.
+	 * @param frame frame di un oggetto,codificato con write
+	 * @param requestId id della richiesta,non negativo
+	 * @param dest array in cui scrivere il nuovo frame,con almeno frame.length + REQUEST_ID_MAX_LENGTH byte
+	 * @return byte scritti in dest
+	 */
+	public int addRequestId(byte[] frame,long requestId,byte[] dest);
+
+	/**
+	 * Legge il prossimo frame da uno stream,come richiesta di un client
+	 * @param in stream da cui leggere
+	 * @return richiesta letta
+	 * @throws IOException se ci sono errori nella lettura (java.net.ProtocolException se il frame non e' valido)
+	 * @throws ParseException se il messaggio non e' valido
+	 */
+	public default ParsedRequest readRequest(DataInputStream in) throws IOException,ParseException {
+		return ParsedRequest.fromJson(read(in));
+	}
+
+	/**
+	 * Decodifica un frame completo come richiesta di un client,dalla posizione al limite del buffer
+	 * @param frame header e messaggio
+	 * @return richiesta decodificata
+	 * @throws IOException se il frame non e' valido
+	 * @throws ParseException se il messaggio non e' valido
+	 */
+	public default ParsedRequest decodeRequest(ByteBuffer frame) throws IOException,ParseException {
+		return ParsedRequest.fromJson(decode(frame));
+	}
+}
@@ -0,0 +1,142 @@
+package communication.TCPMessages.wire;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Negoziazione del formato dei messaggi all'apertura di una connessione TCP.
+ * Un client che vuole un formato diverso da quello originale,come primi byte della connessione,invia un handshake:
+ * i 3 byte "SGP" seguiti dalla versione del protocollo richiesta.Il server risponde con lo stesso handshake,
+ * con la versione che usera',cioe' la piu' alta che conoscono entrambi.
+ * Il terzo byte di un frame Json e' sempre '{',quindi i client che non negoziano vengono riconosciuti
+ * e continuano ad usare il formato Json.
+ * @author Gionatha Sturba
+ *
+ */
+public class WireProtocol
+{
+	public static final int JSON_VERSION = 0; //Json con writeUTF
+	public static final int BINARY_VERSION = 1; //frame con lunghezza a 4 byte e codifica binaria
+	public static final int CURRENT_VERSION = BINARY_VERSION; //versione piu' alta conosciuta
+
+	public static final int HANDSHAKE_LEN = 4;
+	private static final byte[] MAGIC = {'S','G','P'};
+
+	public static final WireFormat JSON = new JsonWireFormat();
+	public static final WireFormat BINARY = new BinaryWireFormat();
+
+	/**
+	 * @param version versione del protocollo
+	 * @return formato dei messaggi della versione
+	 */
+	public static WireFormat getFormat(int version)
+	{
+		switch (version)
+		{
+			case JSON_VERSION:
+				return JSON;
+
+			case BINARY_VERSION:
+				return BINARY;
+
+			default:
+				throw new IllegalArgumentException("Versione del protocollo non valida: "+version);
+		}
+	}
+
+	/**
+	 * @param version versione del protocollo
+	 * @return handshake che richiede o conferma la versione
+	 */
+	public static byte[] handshake(int version)
+	{
+		if(version < 0 || version > 0xFF)
+			throw new IllegalArgumentException();
+
+		return new byte[] {MAGIC[0],MAGIC[1],MAGIC[2],(byte) version};
+	}
+
+	/**
+	 * Controlla se i primi byte di una connessione sono un handshake
+	 * @param buffer buffer con almeno HANDSHAKE_LEN - 1 byte dalla posizione corrente,che non viene spostata
+	 * @return true se la connessione inizia con un handshake,false se inizia con un frame Json
+	 */
+	public static boolean isHandshake(ByteBuffer buffer)
+	{
+		int position = buffer.position();
+
+		return buffer.get(position) == MAGIC[0] && buffer.get(position + 1) == MAGIC[1] && buffer.get(position + 2) == MAGIC[2];
+	}
+
+	/**
+	 * @param requested versione richiesta dal client
+	 * @return versione che usera' il server
+	 */
+	public static int negotiate(int requested) {
+		return Math.min(requested,CURRENT_VERSION);
+	}
+
+	/**
+	 * Lato server: riconosce se il client ha inviato un handshake e risponde.
+	 * Lo stream di input deve supportare mark e reset (ad esempio un BufferedInputStream).
+	 * @param in stream di input della connessione
+	 * @param out stream di output della connessione
+	 * @return formato dei messaggi della connessione
+	 * @throws IOException se ci sono errori nella lettura o nella risposta
+	 */
+	public static WireFormat accept(DataInputStream in,DataOutputStream out) throws IOException
+	{
+		if(!in.markSupported())
+			throw new IllegalArgumentException("Lo stream deve supportare mark e reset");
+
+		byte[] start = new byte[MAGIC.length];
+
+		in.mark(HANDSHAKE_LEN);
+		in.readFully(start);
+
+		//client che non negozia,i byte letti sono l'inizio del primo frame Json
+		if(!isHandshake(ByteBuffer.wrap(start))) {
+			in.reset();
+			return JSON;
+		}
+
+		int version = negotiate(in.readUnsignedByte());
+
+		out.write(handshake(version));
+		out.flush();
+
+		return getFormat(version);
+	}
+
+	/**
+	 * Lato client: richiede una versione del protocollo,come prima operazione sulla connessione
+	 * @param in stream di input della connessione
+	 * @param out stream di output della connessione
+	 * @param version versione richiesta
+	 * @return formato dei messaggi scelto dal server
+	 * @throws IOException se ci sono errori nella negoziazione
+	 */
+	public static WireFormat connect(DataInputStream in,DataOutputStream out,int version) throws IOException
+	{
+		out.write(handshake(version));
+		out.flush();
+
+		byte[] reply = new byte[HANDSHAKE_LEN];
+		in.readFully(reply);
+
+		ByteBuffer buffer = ByteBuffer.wrap(reply);
+
+		if(!isHandshake(buffer))
+			throw new ProtocolException("Risposta all'handshake non valida");
+
+		int accepted = reply[HANDSHAKE_LEN - 1] & 0xFF;
+
+		if(accepted > version)
+			throw new ProtocolException("Versione del protocollo non richiesta: "+accepted);
+
+		return getFormat(accepted);
+	}
+}
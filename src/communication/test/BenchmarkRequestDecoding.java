@@ -0,0 +1,123 @@
+package communication.test;
+
+import java.lang.management.ManagementFactory;
+
+import org.json.simple.parser.ParseException;
+
+import communication.TCPMessages.MessageAnalyzer;
+import communication.TCPMessages.ParsedRequest;
+import communication.TCPMessages.RequestDecoder;
+import communication.TCPMessages.request.access.LoginRequest;
+import communication.TCPMessages.request.chatroom.JoinChatRoom;
+import communication.TCPMessages.request.interaction.SendMessageRequest;
+
+/**
+ * Confronta la decodifica delle richieste con json-simple (MessageAnalyzer.parse e i suoi metodi)
+ * e con RequestDecoder,per le richieste di login,di invio di un messaggio e di partecipazione ad una chatroom.
+ * Per ogni richiesta controlla che le due decodifiche diano lo stesso risultato,poi misura,dopo un riscaldamento,
+ * il tempo e i byte allocati per ogni decodifica.
+ * Esempio: java communication.test.BenchmarkRequestDecoding 2000000
+ * @author Gionatha Sturba
+ *
+ */
+public class BenchmarkRequestDecoding
+{
+	private static final int ROUNDS = 5;
+
+	private static volatile Object sink; //impedisce che la decodifica venga eliminata dal compilatore
+
+	public static void main(String[] args) throws Exception
+	{
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+		String[] names = {"login","invio messaggio","chatroom"};
+		String[] requests = {
+				new LoginRequest("gionatha","password").getJsonMessage(),
+				new SendMessageRequest("gionatha","mario","ciao mario, ci vediamo domani alle \"otto\"?\nfammi sapere").getJsonMessage(),
+				new JoinChatRoom("gionatha","stanza").getJsonMessage()
+		};
+
+		for (int i = 0; i < requests.length; i++)
+		{
+			check(requests[i]);
+
+			System.out.println(names[i]+" ("+requests[i].length()+" caratteri)");
+			run("\tjson-simple",requests[i],iterations,false);
+			run("\tRequestDecoder",requests[i],iterations,true);
+		}
+	}
+
+	/**
+	 * Esegue una misura,e ne stampa il tempo e i byte allocati per ogni decodifica
+	 */
+	private static void run(String name,String request,int iterations,boolean streaming) throws ParseException
+	{
+		//riscaldamento
+		for (int round = 0; round < ROUNDS; round++) {
+			decode(request,iterations / ROUNDS,streaming);
+		}
+
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+
+		decode(request,iterations,streaming);
+
+		long elapsed = System.nanoTime() - start;
+		allocated = allocatedBytes() - allocated;
+
+		System.out.println(name+":\t"+(elapsed / iterations)+" ns\t"+(allocated / iterations)+" byte");
+	}
+
+	private static void decode(String request,int iterations,boolean streaming) throws ParseException
+	{
+		for (int i = 0; i < iterations; i++) {
+			sink = streaming ? RequestDecoder.decode(request) : simple(request);
+		}
+	}
+
+	/**
+	 * Decodifica con json-simple,leggendo i campi usati dal server per ogni tipo di richiesta
+	 */
+	private static Object simple(String request) throws ParseException {
+		return ParsedRequest.fromJson(MessageAnalyzer.parse(request));
+	}
+
+	/**
+	 * Controlla che le due decodifiche di una richiesta diano lo stesso risultato
+	 */
+	private static void check(String request) throws ParseException
+	{
+		ParsedRequest expected = ParsedRequest.fromJson(MessageAnalyzer.parse(request));
+		ParsedRequest actual = RequestDecoder.decode(request);
+
+		Object[][] fields = {
+				{expected.getRequestId(),actual.getRequestId()},
+				{expected.getMessageType(),actual.getMessageType()},
+				{expected.getRequestType(),actual.getRequestType()},
+				{expected.getNicknameSender(),actual.getNicknameSender()},
+				{expected.getRequestAccessType(),actual.getRequestAccessType()},
+				{expected.getPassword(),actual.getPassword()},
+				{expected.getLanguage(),actual.getLanguage()},
+				{expected.getPageSize(),actual.getPageSize()},
+				{expected.getInteractionType(),actual.getInteractionType()},
+				{expected.getNicknameReceiver(),actual.getNicknameReceiver()},
+				{expected.getText(),actual.getText()},
+				{expected.getSendFileFilename(),actual.getSendFileFilename()},
+				{expected.getChatRoomRequestType(),actual.getChatRoomRequestType()},
+				{expected.getChatRoomName(),actual.getChatRoomName()}
+		};
+
+		for (Object[] field : fields)
+		{
+			if(field[0] == null ? field[1] != null : !field[0].equals(field[1]))
+				throw new AssertionError("Decodifica diversa di "+request+": "+field[0]+" invece di "+field[1]);
+		}
+	}
+
+	/**
+	 * @return byte allocati finora dal thread corrente
+	 */
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
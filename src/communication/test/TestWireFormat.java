@@ -0,0 +1,127 @@
+package communication.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.json.simple.JSONObject;
+
+import communication.TCPMessages.Message;
+import communication.TCPMessages.notification.NewIncomingFile;
+import communication.TCPMessages.request.access.LoginRequest;
+import communication.TCPMessages.request.chatroom.NewChatRoom;
+import communication.TCPMessages.request.interaction.SendMessageRequest;
+import communication.TCPMessages.response.fail.ResponseFailedMessage;
+import communication.TCPMessages.response.success.AcceptedFileReceive;
+import communication.TCPMessages.response.success.ResponseSuccessMessage;
+import communication.TCPMessages.wire.ConstantResponses;
+import communication.TCPMessages.wire.WireFormat;
+import communication.TCPMessages.wire.WireProtocol;
+
+/**
+ * Test dei formati dei messaggi: ogni messaggio codificato e decodificato deve restare uguale.
+ * Stampa la dimensione dei frame nei due formati,e controlla che il formato binario superi il limite di 64 KB di writeUTF.
+ * Controlla anche che le risposte gia' codificate di ConstantResponses siano uguali a quelle codificate ad ogni invio,
+ * con e senza l'id della richiesta.
+ * @author Gionatha Sturba
+ *
+ */
+public class TestWireFormat
+{
+	public static void main(String[] args) throws Exception
+	{
+		Message[] messages = {
+				new LoginRequest("gionatha","password"),
+				new SendMessageRequest("gionatha","mario","ciao, come stai? e' tutto ok"),
+				new NewChatRoom("gionatha","stanza"),
+				new ResponseSuccessMessage(),
+				new ResponseFailedMessage(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS),
+				new NewIncomingFile("mario","foto.png",42),
+				new AcceptedFileReceive("localhost",5555)
+		};
+
+		for (Message message : messages)
+		{
+			System.out.println(message.getClass().getSimpleName()+"\tjson: "+check(WireProtocol.JSON,message.getJsonObject())
+					+" byte\tbinario: "+check(WireProtocol.BINARY,message.getJsonObject())+" byte");
+		}
+
+		//messaggio oltre il limite di writeUTF
+		JSONObject big = new SendMessageRequest("gionatha","mario",new String(new char[200000]).replace('\0','x')).getJsonObject();
+
+		try {
+			check(WireProtocol.JSON,big);
+			System.out.println("ERRORE: messaggio di 200 KB accettato dal formato json");
+		}
+		catch (IOException e) {
+			System.out.println("json,messaggio di 200 KB: "+e.getClass().getSimpleName());
+		}
+
+		System.out.println("binario,messaggio di 200 KB: "+check(WireProtocol.BINARY,big)+" byte");
+
+		for (WireFormat format : new WireFormat[] {WireProtocol.JSON,WireProtocol.BINARY})
+		{
+			for (long requestId : new long[] {-1,0,7,1234567890123L,Long.MAX_VALUE})
+			{
+				ByteArrayOutputStream constant = new ByteArrayOutputStream();
+				ResponseSuccessMessage success = new ResponseSuccessMessage();
+
+				if(requestId >= 0)
+					success.setRequestId(requestId);
+
+				ConstantResponses.writeSuccess(format,requestId,new DataOutputStream(constant));
+				compare(format,success,constant.toByteArray());
+
+				for (ResponseFailedMessage.Errors error : ResponseFailedMessage.Errors.values())
+				{
+					ResponseFailedMessage failed = new ResponseFailedMessage(error);
+
+					if(requestId >= 0)
+						failed.setRequestId(requestId);
+
+					constant.reset();
+					ConstantResponses.writeFailed(format,error,requestId,new DataOutputStream(constant));
+					compare(format,failed,constant.toByteArray());
+				}
+			}
+		}
+
+		System.out.println("risposte costanti: ok");
+	}
+
+	/**
+	 * Controlla che il frame di una risposta costante sia uguale a quello del messaggio
+	 */
+	private static void compare(WireFormat format,Message message,byte[] constant) throws Exception
+	{
+		JSONObject expected = message.getJsonObject();
+		JSONObject decoded = format.decode(ByteBuffer.wrap(constant));
+
+		if(!decoded.equals(expected))
+			throw new AssertionError("Risposta costante diversa: "+decoded+" invece di "+expected);
+	}
+
+	/**
+	 * Codifica e decodifica un messaggio,controllando che non cambi
+	 * @return byte del frame
+	 */
+	private static int check(WireFormat format,JSONObject message) throws Exception
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		format.write(message,new DataOutputStream(buffer));
+
+		ByteBuffer frame = ByteBuffer.wrap(buffer.toByteArray());
+
+		if(format.getHeaderLength() + format.getPayloadLength(frame) != frame.remaining())
+			throw new AssertionError("Lunghezza del frame errata");
+
+		JSONObject decoded = format.decode(frame);
+
+		//i numeri vengono decodificati come Long,come fa il parser json
+		if(!decoded.toJSONString().equals(message.toJSONString()) && !decoded.equals(message))
+			throw new AssertionError("Messaggio diverso dopo la decodifica: "+decoded);
+
+		return frame.remaining();
+	}
+}
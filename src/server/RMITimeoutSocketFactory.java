@@ -0,0 +1,53 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMISocketFactory;
+
+/**
+ * Socket factory RMI che limita l'attesa della connessione verso un host remoto.
+ * Usata per le callback verso i client: un client irraggiungibile non deve trattenere un thread di notifica
+ * per tutto il timeout di connessione del sistema operativo.
+ * @author Gionatha Sturba
+ *
+ */
+public class RMITimeoutSocketFactory extends RMISocketFactory
+{
+	private int connectTimeout; //millisecondi massimi di attesa della connessione
+
+	/**
+	 * Crea una nuova socket factory
+	 * @param connectTimeout millisecondi massimi di attesa della connessione
+	 */
+	public RMITimeoutSocketFactory(int connectTimeout)
+	{
+		if(connectTimeout <= 0)
+			throw new IllegalArgumentException();
+
+		this.connectTimeout = connectTimeout;
+	}
+
+	@Override
+	public Socket createSocket(String host,int port) throws IOException
+	{
+		Socket socket = new Socket();
+
+		try {
+			socket.connect(new InetSocketAddress(host,port),connectTimeout);
+		}
+		catch (IOException e)
+		{
+			socket.close();
+			throw e;
+		}
+
+		return socket;
+	}
+
+	@Override
+	public ServerSocket createServerSocket(int port) throws IOException {
+		return new ServerSocket(port);
+	}
+}
@@ -7,16 +7,27 @@ import java.net.Socket;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.RMISocketFactory;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import communication.RMI.RMIServerInterface;
 import server.model.*;
+import server.nio.NIOServerEngine;
+import server.thread.ChatRoomEventBus;
+import server.thread.ChatRoomMessageDispatcher;
+import server.thread.NotificationDispatcher;
+import server.thread.PresenceAggregator;
+import server.thread.TranslationService;
 import server.thread.UserRequestHandler;
+import utils.CircuitBreaker;
 import utils.Config;
+import utils.MulticastAddressPool;
+import utils.PortAllocator;
 
 /**
  * Rappresenta la struttura del server di Social Gossip.
@@ -26,18 +37,97 @@ import utils.Config;
  */
 public class SocialGossipServer implements Runnable
 {
+	/**
+	 * Motori di rete selezionabili all'avvio del server
+	 */
+	public enum Engine {THREAD_POOL,VIRTUAL_THREADS,NIO};
+	
 	private Network reteSG; //rappresenta la struttura della rete degli utenti di social gossip
-	private List<ChatRoom> chatrooms; //lista delle chatroom attive
+	private ChatRoomRegistry chatrooms; //chatroom attive
+	private NotificationDispatcher notifier; //consegna in background le notifiche RMI agli utenti
+	private PresenceAggregator presence; //raggruppa i cambi di stato notificati agli amici
+	private TranslationService translations; //traduce in background i messaggi tra utenti
+	private ChatRoomEventBus chatroomEvents; //notifica ai client gli eventi delle chatroom
+	private ThreadPoolExecutor mailboxWriters; //scrive sui canali di notifica degli utenti e ne legge le risposte
 	
 	private ServerSocket listenerSocket = null; //socket in cui e' in ascolto il server
-	private ThreadPoolExecutor executor = null; //pool di thread per gestire i vari client che arrivano
+	private ExecutorService executor = null; //pool di thread per gestire i vari client che arrivano
+	private NIOServerEngine nioEngine = null; //motore di rete basato su selettori
 	
 	public SocialGossipServer(int port) throws IOException 
+	{
+		this(port,Engine.THREAD_POOL);
+	}
+	
+	public SocialGossipServer(int port,Engine engine) throws IOException 
 	{		
+		if(engine == null)
+			throw new NullPointerException();
+		
 		reteSG = new Network();
-		listenerSocket = new ServerSocket(port);
-		executor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
-		chatrooms = new LinkedList<ChatRoom>();
+		notifier = new NotificationDispatcher(Config.NOTIFICATION_WORKERS,Config.NOTIFICATION_QUEUE_CAPACITY,
+				Config.NOTIFICATION_MAX_RETRIES,Config.NOTIFICATION_RETRY_DELAY);
+		presence = new PresenceAggregator(reteSG,notifier,Config.PRESENCE_COALESCING_WINDOW);
+		translations = new TranslationService(Config.TRANSLATION_THREADS,Config.TRANSLATION_QUEUE_CAPACITY,Config.TRANSLATION_TIMEOUT,
+				Config.TRANSLATION_BATCH_SIZE,Config.TRANSLATION_BATCH_WINDOW,
+				new CircuitBreaker(Config.TRANSLATION_BREAKER_FAILURES,Config.TRANSLATION_BREAKER_OPEN_TIME));
+		chatroomEvents = new ChatRoomEventBus(notifier);
+		mailboxWriters = newMailboxExecutor();
+		chatrooms = new ChatRoomRegistry(new ChatRoomMessageDispatcher(Config.CHATROOM_DISPATCHER_THREADS,new PortAllocator()),
+				new MulticastAddressPool(Config.MULTICAST_ADDRESS_RANGE),chatroomEvents,translations);
+		
+		switch (engine) 
+		{
+			case NIO:
+				nioEngine = new NIOServerEngine(port,reteSG,chatrooms,notifier,presence,translations,mailboxWriters);
+				break;
+	
+			case VIRTUAL_THREADS:
+				listenerSocket = new ServerSocket(port);
+				executor = newVirtualThreadExecutor();
+				break;
+				
+			default:
+				listenerSocket = new ServerSocket(port);
+				executor = Executors.newCachedThreadPool();
+				break;
+		}
+	}
+	
+	/**
+	 * Crea il pool che scrive sui canali di notifica e ne legge le risposte.
+	 * Ogni coda dei messaggi usa al piu' un writer e un reader alla volta: il pool ha un numero massimo di thread
+	 * e una coda limitata,e i thread inattivi terminano.
+	 * @return pool dei canali di notifica
+	 */
+	private static ThreadPoolExecutor newMailboxExecutor()
+	{
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(Config.MAILBOX_THREADS,Config.MAILBOX_THREADS,60L,TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(Config.MAILBOX_TASK_QUEUE_CAPACITY),runnable -> {
+			Thread thread = new Thread(runnable,"mailbox-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		pool.allowCoreThreadTimeOut(true);
+		
+		return pool;
+	}
+	
+	/**
+	 * Crea un executor che esegue ogni task su un nuovo thread virtuale.
+	 * Viene cercato a runtime,per poter compilare ed eseguire il server anche su JDK precedenti al 21.
+	 * @return executor a thread virtuali
+	 * @throws UnsupportedOperationException se la JVM non supporta i thread virtuali
+	 */
+	private static ExecutorService newVirtualThreadExecutor()
+	{
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} 
+		catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Thread virtuali non supportati da questa JVM",e);
+		}
 	}
 	
 	//ciclo di vita del server di social gossip
@@ -49,12 +139,18 @@ public class SocialGossipServer implements Runnable
 			//inizializzo protocollo RMI
 			initRMI();
 			
+			//le connessioni vengono gestite dal motore NIO
+			if(nioEngine != null) {
+				nioEngine.run();
+				return;
+			}
+			
 			while(true)
 			{
 				Socket newClient = listenerSocket.accept();
 				
 				//sottometto la gestione del client arrivato ad un thread del pool
-				executor.submit(new UserRequestHandler(newClient,reteSG,chatrooms));
+				executor.submit(new UserRequestHandler(newClient,reteSG,chatrooms,notifier,presence,translations,mailboxWriters));
 				
 			}
 		} 
@@ -74,6 +170,11 @@ public class SocialGossipServer implements Runnable
 				//chiudo il pool di thread
 				if(executor != null)
 					executor.shutdownNow();
+				
+				mailboxWriters.shutdownNow();
+				presence.shutdown();
+				translations.shutdown();
+				notifier.shutdown();
 			} 
 			catch (IOException e) {
 				// TODO Auto-generated catch block
@@ -88,8 +189,21 @@ public class SocialGossipServer implements Runnable
 	 */
 	private void initRMI() throws RemoteException
 	{
+		//limito l'attesa delle notifiche verso i client: un client bloccato non deve trattenere i thread di notifica
+		String timeout = String.valueOf(Config.RMI_CALLBACK_TIMEOUT);
+		System.setProperty("sun.rmi.transport.tcp.responseTimeout",timeout);
+		System.setProperty("sun.rmi.transport.tcp.handshakeTimeout",timeout);
+		
+		//anche la connessione verso un client irraggiungibile ha un'attesa massima
+		try {
+			RMISocketFactory.setSocketFactory(new RMITimeoutSocketFactory(Config.RMI_CALLBACK_TIMEOUT));
+		}
+		catch (IOException e) {
+			throw new RemoteException("Socket factory RMI gia' impostata",e);
+		}
+		
 		//oggetto che gestisce i canali RMI degli utenti
-		RMIChannelManager RMIUserChannelManager = new RMIChannelManager(reteSG);
+		RMIChannelManager RMIUserChannelManager = new RMIChannelManager(reteSG,chatroomEvents);
 		
 		//creo lo stub dell'oggetto allocato precedentemente
 		RMIServerInterface stub = (RMIServerInterface) UnicastRemoteObject.exportObject(RMIUserChannelManager,3900);
@@ -106,14 +220,25 @@ public class SocialGossipServer implements Runnable
 	
 	/**
 	 * Bootstrapper del server
-	 * @param args
+	 * @param args motore di rete da utilizzare (THREAD_POOL,VIRTUAL_THREADS oppure NIO),di default THREAD_POOL,
+	 * e opzionalmente motore di traduzione (MYMEMORY oppure LOCAL),di default quello indicato in Config
 	 */
 	public static void main(String[] args) 
 	{
 		try 
 		{
+			Engine engine = Engine.THREAD_POOL;
+			
+			//motore di rete scelto all'avvio
+			if(args.length > 0)
+				engine = Engine.valueOf(args[0].toUpperCase());
+			
+			//motore di traduzione scelto all'avvio,es. LOCAL per le prove senza rete
+			if(args.length > 1)
+				Translator.setEngine(Translator.createEngine(Translator.Engine.valueOf(args[1].toUpperCase())));
+			
 			//creo istanza del server di social gossip
-			SocialGossipServer server = new SocialGossipServer(Config.SERVER_TCP_PORT);
+			SocialGossipServer server = new SocialGossipServer(Config.SERVER_TCP_PORT,engine);
 			
 			//faccio partire il server
 			server.run();
@@ -1,15 +1,13 @@
 package server.model;
 
-import java.rmi.RemoteException;
-import java.util.LinkedList;
 import java.util.List;
 
 
-import communication.RMI.RMIClientNotifyEvent;
 import server.model.exception.PasswordMismatchingException;
 import server.model.exception.UserAlreadyRegistered;
 import server.model.exception.UserNotFindException;
 import server.model.exception.UserStatusException;
+import server.thread.PresenceAggregator;
 import utils.graph.exception.VertexAlreadyExist;
 
 /**
@@ -20,13 +18,15 @@ import utils.graph.exception.VertexAlreadyExist;
 public class AccessSystem
 {
 	private Network rete; //rete degli utenti
+	private PresenceAggregator presence; //notifica agli amici i cambi di stato
 	
-	public AccessSystem(Network rete)
+	public AccessSystem(Network rete,PresenceAggregator presence)
 	{
-		if(rete == null)
+		if(rete == null || presence == null)
 			throw new NullPointerException();
 		
 		this.rete = rete;
+		this.presence = presence;
 	}
 	
 	/**
@@ -36,10 +36,9 @@ public class AccessSystem
 	 * @throws UserNotFindException se l'utente non risulta essere registrato
 	 * @throws PasswordMismatchingException se le password non corrispondono
 	 * @throws UserStatusException se l'utente risulta gia' essere online
-	 * @throws RemoteException se c'e' stato un errore relativo alle notifiche agli amici
 	 * @return lista degli amici dell'utente loggato
 	 */
-	public List<User> logIn(String nickname,String password)throws UserNotFindException, PasswordMismatchingException, UserStatusException, RemoteException
+	public List<User> logIn(String nickname,String password)throws UserNotFindException, PasswordMismatchingException, UserStatusException
 	{
 		if(nickname == null || password == null)
 			throw new NullPointerException();
@@ -63,26 +62,12 @@ public class AccessSystem
 		//se tutti i controlli sono superati,metto online l'utente
 		registeredUser.setOnline(true);
 		
-		List<User> amiciList = new LinkedList<User>();
+		//amici letti dal grafo degli utenti
+		List<User> amiciList = rete.amiciDi(registeredUser);
 		
-		//aggiorno gli amici
-		for (User friend : registeredUser.getAmici()) 
-		{
-			//aggiungo l'amico alla lista amici
-			amiciList.add(friend);
-			
-			//invio una notifica agli utenti amici, per segnalare che l'utente ora e' online
-			RMIClientNotifyEvent RMIChannelFiend = friend.getRMIchannel();
-			
-			//se l'amico da notificare non e' offline,invio la notifica
-			if(RMIChannelFiend != null)
-			{
-				//invio notifica
-				RMIChannelFiend.updateFriendStatus(registeredUser);
-			}
-				
-			
-		};
+		//notifico agli amici che l'utente ora e' online.
+		//La notifica viene consegnata in background,il login non attende i client degli amici
+		presence.statusChanged(registeredUser);
 		
 		return amiciList;
 		
@@ -112,9 +97,8 @@ public class AccessSystem
 	 * @param nickname 
 	 * @throws UserNotFindException se l'utente non e' stato trovato
 	 * @throws UserStatusException se l'utente non risulta essere online
-	 * @throws RemoteException se viene riscontrato un errore nel notificare gli amici tramite RMI
 	 */
-	public void logOut(String nickname) throws UserNotFindException, UserStatusException, RemoteException
+	public void logOut(String nickname) throws UserNotFindException, UserStatusException
 	{
 		if(nickname == null)
 			throw new NullPointerException();
@@ -135,23 +119,10 @@ public class AccessSystem
 			//metto l'utente offline
 			registeredUser.setOnline(false);
 			//tolgo il canale TCP per le notifiche
-			registeredUser.setNotificationMessageChannel(null);
-			
-			//aggiorno gli amici dell'utente che e' andato offline
-			for (User friend : registeredUser.getAmici()) 
-			{	
+			registeredUser.setNotificationMailbox(null);
 			
-				//canale RMI per notificare l'amico
-				RMIClientNotifyEvent RMIChannelFiend = friend.getRMIchannel();
-				
-				//se l'amico da notificare non e' offline,invio la notifica
-				if(RMIChannelFiend != null)
-				{
-					//invio notifica
-					RMIChannelFiend.updateFriendStatus(registeredUser);
-				}
-		
-			};
+			//notifico agli amici che l'utente e' andato offline,in background
+			presence.statusChanged(registeredUser);
 		}
 	}
 }
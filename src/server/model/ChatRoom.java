@@ -1,19 +1,27 @@
 package server.model;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
 
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 import server.model.exception.UserAlreadyRegistered;
-import server.thread.DispatcherChatRoomMessage;
-import utils.PortScanner;
+import server.thread.ChatRoomMessageDispatcher;
+import server.thread.LanguageFanout;
+import server.thread.TranslationService;
 
 /**
  * Rappresenta un gruppo di utenti in social Gossip
@@ -36,10 +44,19 @@ public class ChatRoom implements Serializable
 	
 	private transient MulticastSocket ms;
 	
-	//thread dispatcher dei messaggi della chatroom
-	private transient DispatcherChatRoomMessage dispatcherMessage;
+	//dispatcher che inoltra i messaggi della chatroom
+	private transient ChatRoomMessageDispatcher dispatcher;
 	
 	private List<User> subscribers; //lista utenti iscritti
+	
+	//traduzione dei messaggi nelle lingue degli iscritti,null se i messaggi vengono inoltrati senza traduzione
+	private transient LanguageFanout fanout;
+	private transient ConcurrentHashMap<String,String> subscriberLanguage; //lingua degli iscritti,per nickname normalizzato
+	private transient volatile Set<String> languages; //lingue distinte degli iscritti
+	private transient CompletableFuture<Void> closing = null; //chiusura della chatroom,null se e' ancora attiva
+	
+	//messaggio inviato agli iscritti alla chiusura della chatroom
+	private static final byte[] CLOSE_MESSAGE = "CHATROOM CLOSED".getBytes();
 		
 	//serializzazione
 	public static final String FIELD_NAME = "name";
@@ -50,14 +67,32 @@ public class ChatRoom implements Serializable
 	public static final String FIELD_LIST_SUBS = "list-subscriber";
 
 	/**
-	 * Crea una nuova chatroom vuota,con un nome e un indirizzo assegnato
+	 * Crea una nuova chatroom vuota,con un nome e un indirizzo assegnato.
+	 * I messaggi vengono inoltrati agli iscritti senza traduzione.
+	 * @param name
+	 * @param address
+	 * @param messageAddress indirizzo su cui i client inviano i messaggi
+	 * @param dispatcher dispatcher che inoltra i messaggi della chatroom
+	 * @throws Exception 
+	 */
+	public ChatRoom(String name,InetAddress msAddress,InetAddress messageAddress,ChatRoomMessageDispatcher dispatcher) throws Exception
+	{
+		this(name,msAddress,messageAddress,dispatcher,null);
+	}
+	
+	/**
+	 * Crea una nuova chatroom vuota,con un nome e un indirizzo assegnato.
+	 * I messaggi vengono tradotti nelle lingue degli iscritti,una volta per lingua.
 	 * @param name
 	 * @param address
+	 * @param messageAddress indirizzo su cui i client inviano i messaggi
+	 * @param dispatcher dispatcher che inoltra i messaggi della chatroom
+	 * @param translations servizio che traduce i messaggi,null per inoltrarli senza traduzione
 	 * @throws Exception 
 	 */
-	public ChatRoom(String name,InetAddress msAddress,InetAddress messageAddress) throws Exception
+	public ChatRoom(String name,InetAddress msAddress,InetAddress messageAddress,ChatRoomMessageDispatcher dispatcher,TranslationService translations) throws Exception
 	{
-		if(name == null || msAddress == null)
+		if(name == null || msAddress == null || dispatcher == null)
 			throw new NullPointerException();
 		
 		if(name.isEmpty() || !msAddress.isMulticastAddress())
@@ -65,26 +100,33 @@ public class ChatRoom implements Serializable
 		
 		this.name = name;
 		subscribers = new LinkedList<User>();
-
+		subscriberLanguage = new ConcurrentHashMap<String,String>();
+		languages = Collections.emptySet();
 		
 		//inizializzo multicast
 		this.msAddress = msAddress;
-		this.msPort = PortScanner.freePort();
-		
-		//porta non trovata
-		if(msPort == -1)
-			throw new Exception();
-
-		MulticastSocket ms = new MulticastSocket(msPort);
-		this.ms = ms;
+		this.ms = dispatcher.getPortAllocator().openMulticastSocket();
+		this.msPort = ms.getLocalPort();
 		
 		//inizializzo indirizzo thread listener messaggi
 		this.messageAddress = messageAddress;
 	
-		//faccio partire il thread che si occupa di gestire i messaggi della chatroom
-		dispatcherMessage = new DispatcherChatRoomMessage(ms,msAddress);
-		this.messagePort = dispatcherMessage.getListeningPort();
-		dispatcherMessage.start();
+		//registro la chatroom sul dispatcher che ne inoltra i messaggi
+		this.dispatcher = dispatcher;
+		
+		try {
+			if(translations == null)
+				this.messagePort = dispatcher.register(msAddress,msPort);
+			else {
+				this.fanout = new LanguageFanout(this,msAddress,dispatcher.getPortAllocator(),translations);
+				this.messagePort = dispatcher.register(fanout);
+			}
+		}
+		catch(Exception e) {
+			ms.close();
+			dispatcher.getPortAllocator().release(msPort);
+			throw e;
+		}
 	}
 	
 	/**
@@ -128,14 +170,140 @@ public class ChatRoom implements Serializable
 	}
 	
 	/**
-	 * Chiude la chatroom
+	 * Chiude la chatroom: avvisa gli iscritti,e rilascia i socket e le porte.
+	 * Il metodo non e' bloccante: il canale dei messaggi viene chiuso in background dal dispatcher,
+	 * e le porte vengono rilasciate solo quando la chiusura e' completata.
+	 * @return future completato quando la chiusura della chatroom e' terminata
+	 */
+	public synchronized CompletableFuture<Void> close() 
+	{
+		//chiusura gia' avviata
+		if(closing != null)
+			return closing;
+		
+		
+		//mando un messaggio di chiusura agli iscritti,via UDP
+		try {
+			ms.send(new DatagramPacket(CLOSE_MESSAGE,CLOSE_MESSAGE.length,msAddress,msPort));
+		} 
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		ms.close();
+		
+		closing = dispatcher.unregister(messagePort).thenRun(() -> dispatcher.getPortAllocator().release(msPort));
+		
+		//avviso anche gli iscritti in ascolto sulle porte delle lingue,dopo i messaggi ancora in traduzione
+		if(fanout != null)
+			closing = CompletableFuture.allOf(closing,fanout.close(CLOSE_MESSAGE));
+		
+		return closing;
+	}
+	
+	/**
+	 * @return true se la chiusura della chatroom e' stata avviata
+	 */
+	public synchronized boolean isClosed() {
+		return closing != null;
+	}
+	
+	/**
+	 * @return copia della chatroom da inviare ai client,in cui gli iscritti hanno solo nickname e stato
+	 */
+	public synchronized ChatRoom snapshot()
+	{
+		return snapshot(0,Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Copia della chatroom con solo una parte degli iscritti,per inviare chatroom molto grandi a pagine
+	 * @param from posizione del primo iscritto da copiare
+	 * @param count iscritti massimi da copiare
+	 * @return copia della chatroom,in cui gli iscritti hanno solo nickname e stato
+	 */
+	public synchronized ChatRoom snapshot(int from,int count)
+	{
+		if(from < 0 || count < 0)
+			throw new IllegalArgumentException();
+		
+		List<User> subs = new LinkedList<User>();
+		
+		//gli iscritti possono essere cambiati dalla pagina precedente
+		if(from < subscribers.size())
+		{
+			Iterator<User> iterator = subscribers.listIterator(from);
+			
+			while(subs.size() < count && iterator.hasNext())
+			{
+				User sub = iterator.next();
+				subs.add(new User(sub.getNickname(),sub.isOnline()));
+			}
+		}
+		
+		return new ChatRoom(name,msAddress,msPort,messageAddress,messagePort,subs);
+	}
+	
+	/**
+	 * Copia della chatroom da inviare ad un utente.Se i messaggi vengono tradotti,
+	 * la porta multicast della copia e' quella su cui arrivano i messaggi nella lingua dell'utente.
+	 * @param viewer utente a cui inviare la copia
+	 * @return copia della chatroom per l'utente
+	 */
+	public synchronized ChatRoom snapshotFor(User viewer)
+	{
+		return snapshotFor(viewer,0,Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Copia della chatroom da inviare ad un utente,con solo una parte degli iscritti (vedi snapshot(int,int))
+	 * @param viewer utente a cui inviare la copia
+	 * @param from posizione del primo iscritto da copiare
+	 * @param count iscritti massimi da copiare
+	 * @return copia della chatroom per l'utente
 	 */
-	public synchronized void close() {
-		dispatcherMessage.interrupt();
+	public synchronized ChatRoom snapshotFor(User viewer,int from,int count)
+	{
+		if(viewer == null)
+			throw new NullPointerException();
+		
+		ChatRoom snapshot = snapshot(from,count);
+		String lang = viewer.getLingua();
 		
-		while(dispatcherMessage.isAlive()) {
-			//aspetto che il thread termini
+		if(fanout != null && lang != null)
+		{
+			try {
+				snapshot.msPort = fanout.getPort(lang);
+			}
+			//porta non disponibile,l'utente ricevera' solo i messaggi di servizio della chatroom
+			catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
+		
+		return snapshot;
+	}
+	
+	/**
+	 * @param nickname nickname di un iscritto
+	 * @return lingua dell'iscritto,null se l'utente non e' iscritto alla chatroom
+	 */
+	public String getSubscriberLanguage(String nickname)
+	{
+		if(nickname == null)
+			throw new NullPointerException();
+		
+		if(subscriberLanguage == null)
+			return null;
+		
+		return subscriberLanguage.get(User.normalizeNickname(nickname));
+	}
+	
+	/**
+	 * @return lingue distinte degli iscritti alla chatroom
+	 */
+	public Set<String> getSubscriberLanguages() {
+		return languages == null ? Collections.<String>emptySet() : languages;
 	}
 	
 	/**
@@ -179,6 +347,22 @@ public class ChatRoom implements Serializable
 			throw new UserAlreadyRegistered();
 		
 		subscribers.add(user);
+		
+		//registro la lingua del nuovo iscritto
+		String lang = user.getLingua();
+		
+		if(subscriberLanguage != null && lang != null)
+		{
+			subscriberLanguage.put(User.normalizeNickname(user.getNickname()),lang);
+			
+			//l'insieme delle lingue viene letto ad ogni messaggio,quindi viene copiato solo quando cambia
+			if(!languages.contains(lang))
+			{
+				Set<String> updated = new HashSet<String>(languages);
+				updated.add(lang);
+				languages = Collections.unmodifiableSet(updated);
+			}
+		}
 	}
 	
 	public static JSONObject toJsonObject(ChatRoom cr)
@@ -226,6 +410,13 @@ public class ChatRoom implements Serializable
 		return msAddress.toString().replaceAll("[^\\d.]","");
 	}
 	
+	/**
+	 * @return indirizzo multicast della chatroom
+	 */
+	public synchronized InetAddress getMulticastAddress() {
+		return msAddress;
+	}
+	
 	/**
 	 * 
 	 * @return porta su cui e' attivo il multicast socket della chatroom
@@ -262,7 +453,8 @@ public class ChatRoom implements Serializable
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((name == null) ? 0 : name.hashCode());
+		//hash coerente con equals,che ignora maiuscole e minuscole
+		result = prime * result + ((name == null) ? 0 : User.normalizeNickname(name).hashCode());
 		return result;
 	}
 
@@ -0,0 +1,247 @@
+package server.model;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import server.model.exception.ChatRoomAlreadyExistException;
+import server.model.exception.ChatRoomNotFoundException;
+import server.model.exception.OperationNotPermittedException;
+import server.model.exception.UserAlreadyRegistered;
+import server.thread.ChatRoomEventBus;
+import server.thread.ChatRoomMessageDispatcher;
+import server.thread.TranslationService;
+import utils.MulticastAddressPool;
+
+/**
+ * Chatroom attive sul server,indicizzate per nome senza distinzione tra maiuscole e minuscole.
+ * Non esiste un lock globale: l'indice e' una mappa concorrente,e le operazioni su una chatroom
+ * sincronizzano soltanto sul monitor della chatroom stessa,quindi operazioni su chatroom diverse procedono in parallelo.
+ * Il registro assegna e rilascia le risorse di rete delle chatroom,e notifica i client dei loro cambiamenti.
+ * @author Gionatha Sturba
+ *
+ */
+public class ChatRoomRegistry
+{
+	private ConcurrentHashMap<String,ChatRoom> rooms; //chatroom attive,per nome normalizzato
+	private ChatRoomMessageDispatcher dispatcher; //inoltra i messaggi delle chatroom
+	private MulticastAddressPool addressPool; //indirizzi multicast assegnabili alle chatroom
+	private ChatRoomEventBus events; //notifica ai client gli eventi delle chatroom
+	private TranslationService translations; //traduce i messaggi delle chatroom nelle lingue degli iscritti
+	private InetAddress messageAddress; //indirizzo su cui i client inviano i messaggi delle chatroom
+
+	/**
+	 * Crea un registro vuoto
+	 * @param dispatcher dispatcher che inoltra i messaggi delle chatroom
+	 * @param addressPool indirizzi multicast assegnabili alle chatroom
+	 * @param events bus che notifica ai client gli eventi delle chatroom
+	 * @param translations servizio che traduce i messaggi delle chatroom
+	 * @throws UnknownHostException se non e' possibile risolvere l'indirizzo locale
+	 */
+	public ChatRoomRegistry(ChatRoomMessageDispatcher dispatcher,MulticastAddressPool addressPool,ChatRoomEventBus events,TranslationService translations) throws UnknownHostException
+	{
+		if(dispatcher == null || addressPool == null || events == null || translations == null)
+			throw new NullPointerException();
+
+		this.rooms = new ConcurrentHashMap<String,ChatRoom>();
+		this.dispatcher = dispatcher;
+		this.addressPool = addressPool;
+		this.events = events;
+		this.translations = translations;
+		this.messageAddress = InetAddress.getByName("localhost");
+	}
+
+	/**
+	 * Crea una nuova chatroom,con l'utente creatore come admin
+	 * @param name nome della chatroom
+	 * @param admin utente che crea la chatroom
+	 * @return chatroom creata
+	 * @throws ChatRoomAlreadyExistException se esiste gia' una chatroom con lo stesso nome
+	 * @throws IOException se non ci sono indirizzi o porte disponibili per la chatroom
+	 */
+	public ChatRoom create(String name,User admin) throws ChatRoomAlreadyExistException, IOException
+	{
+		if(name == null || admin == null)
+			throw new NullPointerException();
+
+		String key = User.normalizeNickname(name);
+
+		//controllo veloce,evita di allocare risorse per un nome gia' in uso
+		if(rooms.containsKey(key))
+			throw new ChatRoomAlreadyExistException();
+
+		InetAddress msAddress = addressPool.lease();
+
+		//indirizzi esauriti
+		if(msAddress == null)
+			throw new IOException("Indirizzi multicast esauriti");
+
+		ChatRoom room;
+
+		try {
+			room = new ChatRoom(name,msAddress,messageAddress,dispatcher,translations);
+			room.addNewSubscriber(admin);
+		}
+		catch (Exception e) {
+			addressPool.release(msAddress);
+			throw e instanceof IOException ? (IOException) e : new IOException(e);
+		}
+
+		//un'altra richiesta ha creato una chatroom con lo stesso nome nel frattempo
+		if(rooms.putIfAbsent(key,room) != null)
+		{
+			room.close().thenRun(() -> addressPool.release(msAddress));
+			throw new ChatRoomAlreadyExistException();
+		}
+
+		synchronized (room)
+		{
+			try {
+				//la chatroom potrebbe essere gia' stata chiusa dall'admin
+				if(!room.isClosed())
+					admin.aggiungiChatRoom(room);
+			}
+			//chatroom nuova,non puo' essere gia' nella lista dell'utente
+			catch (UserAlreadyRegistered e) {}
+		}
+
+		events.chatRoomCreated(room);
+
+		return room;
+	}
+
+	/**
+	 * Iscrive un utente ad una chatroom
+	 * @param name nome della chatroom
+	 * @param user utente da iscrivere
+	 * @return chatroom a cui e' stato iscritto l'utente
+	 * @throws ChatRoomNotFoundException se la chatroom non esiste
+	 * @throws UserAlreadyRegistered se l'utente e' gia' iscritto alla chatroom
+	 */
+	public ChatRoom join(String name,User user) throws ChatRoomNotFoundException, UserAlreadyRegistered
+	{
+		if(name == null || user == null)
+			throw new NullPointerException();
+
+		ChatRoom room = rooms.get(User.normalizeNickname(name));
+
+		if(room == null)
+			throw new ChatRoomNotFoundException();
+
+		synchronized (room)
+		{
+			//chatroom chiusa dopo la ricerca
+			if(room.isClosed())
+				throw new ChatRoomNotFoundException();
+
+			room.addNewSubscriber(user);
+
+			//sotto lo stesso lock di close(),che altrimenti potrebbe non trovare la chatroom nella lista dell'utente
+			user.aggiungiChatRoom(room);
+		}
+
+		events.subscriberJoined(room,user);
+
+		return room;
+	}
+
+	/**
+	 * Chiude una chatroom.Solo l'admin della chatroom puo' chiuderla.
+	 * La chatroom viene rimossa subito dalle chatroom attive,mentre le sue risorse di rete vengono chiuse in background:
+	 * il suo indirizzo multicast torna disponibile quando la chiusura e' completata.
+	 * @param name nome della chatroom
+	 * @param user utente che chiede la chiusura
+	 * @return chatroom chiusa
+	 * @throws ChatRoomNotFoundException se la chatroom non esiste
+	 * @throws OperationNotPermittedException se l'utente non e' l'admin della chatroom
+	 */
+	public ChatRoom close(String name,User user) throws ChatRoomNotFoundException, OperationNotPermittedException
+	{
+		if(name == null || user == null)
+			throw new NullPointerException();
+
+		String key = User.normalizeNickname(name);
+		ChatRoom room = rooms.get(key);
+
+		if(room == null)
+			throw new ChatRoomNotFoundException();
+
+		CompletableFuture<Void> closing;
+
+		synchronized (room)
+		{
+			//chatroom chiusa dopo la ricerca
+			if(room.isClosed())
+				throw new ChatRoomNotFoundException();
+
+			//se l'utente non e' l'admin della chatroom
+			if(!room.getSubscribers().get(0).equals(user))
+				throw new OperationNotPermittedException();
+
+			closing = room.close();
+
+			//rimuovo la chatroom da ogni lista delle chatroom a cui sono iscritti gli utenti
+			for (User sub : room.getSubscribers()) {
+				sub.rimuoviChatRoom(room);
+			}
+		}
+
+		rooms.remove(key,room);
+		closing.thenRun(() -> addressPool.release(room.getMulticastAddress()));
+
+		events.chatRoomClosed(room);
+
+		return room;
+	}
+
+	/**
+	 * @param name nome della chatroom
+	 * @return chatroom attiva con il nome cercato,null se non esiste
+	 */
+	public ChatRoom get(String name)
+	{
+		if(name == null)
+			throw new NullPointerException();
+
+		return rooms.get(User.normalizeNickname(name));
+	}
+
+	/**
+	 * Copia delle chatroom attive,da inviare ad un client.
+	 * Ogni chatroom viene copiata sotto il proprio monitor,quindi la sua lista degli iscritti e' consistente.
+	 * @param viewer utente a cui inviare le copie,che ricevera' i messaggi delle chatroom nella propria lingua
+	 * @return lista delle copie delle chatroom attive
+	 */
+	public List<ChatRoom> snapshot(User viewer)
+	{
+		List<ChatRoom> snapshot = new ArrayList<ChatRoom>(rooms.size());
+
+		for (ChatRoom room : rooms.values()) {
+			snapshot.add(room.snapshotFor(viewer));
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Scorre le chatroom attive senza copiarle tutte.L'iteratore non blocca la creazione e la chiusura di chatroom,
+	 * e puo' non vedere i cambiamenti avvenuti durante la visita.
+	 * @return iteratore sulle chatroom attive
+	 */
+	public Iterator<ChatRoom> iterator() {
+		return Collections.unmodifiableCollection(rooms.values()).iterator();
+	}
+
+	/**
+	 * @return numero delle chatroom attive
+	 */
+	public int size() {
+		return rooms.size();
+	}
+}
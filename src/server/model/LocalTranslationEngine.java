@@ -0,0 +1,128 @@
+package server.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Motore di traduzione locale e deterministico,che non usa la rete.
+ * Traduce parola per parola usando un dizionario per ogni coppia di lingue: le parole non presenti nel dizionario
+ * restano invariate,quindi senza dizionario il motore restituisce il testo originale.
+ * Puo' simulare il tempo di risposta di un servizio remoto,per misurare le prestazioni del server su macchine senza rete:
+ * una traduzione di piu' testi insieme paga il tempo di risposta una sola volta,come una singola richiesta remota.
+ * @author Gionatha Sturba
+ *
+ */
+public class LocalTranslationEngine implements TranslationEngine
+{
+	private static final Pattern WORD = Pattern.compile("\\p{L}+");
+
+	private ConcurrentHashMap<String,Map<String,String>> dictionaries; //dizionari,per coppia di lingue
+	private long latency; //millisecondi di attesa simulati per ogni traduzione
+
+	/**
+	 * Crea un motore locale senza latenza
+	 */
+	public LocalTranslationEngine()
+	{
+		this(0);
+	}
+
+	/**
+	 * Crea un motore locale che simula il tempo di risposta di un servizio remoto
+	 * @param latency millisecondi di attesa per ogni traduzione
+	 */
+	public LocalTranslationEngine(long latency)
+	{
+		if(latency < 0)
+			throw new IllegalArgumentException();
+
+		this.dictionaries = new ConcurrentHashMap<String,Map<String,String>>();
+		this.latency = latency;
+	}
+
+	/**
+	 * Aggiunge una parola al dizionario di una coppia di lingue
+	 * @param fromLang lingua originale
+	 * @param toLang lingua in cui tradurre
+	 * @param word parola da tradurre
+	 * @param translation traduzione della parola
+	 */
+	public void addWord(String fromLang,String toLang,String word,String translation)
+	{
+		if(fromLang == null || toLang == null || word == null || translation == null)
+			throw new NullPointerException();
+
+		dictionaries.computeIfAbsent(langPair(fromLang,toLang),key -> new ConcurrentHashMap<String,String>())
+				.put(word.toLowerCase(),translation);
+	}
+
+	@Override
+	public String translate(String text,String fromLang,String toLang) throws Exception
+	{
+		if(text == null || fromLang == null || toLang == null)
+			throw new NullPointerException();
+
+		if(latency > 0)
+			Thread.sleep(latency);
+
+		return translateText(text,dictionaries.get(langPair(fromLang,toLang)));
+	}
+
+	@Override
+	public List<String> translateBatch(List<String> texts,String fromLang,String toLang) throws Exception
+	{
+		if(texts == null || fromLang == null || toLang == null)
+			throw new NullPointerException();
+
+		//un solo tempo di risposta per tutti i testi
+		if(latency > 0)
+			Thread.sleep(latency);
+
+		Map<String,String> dictionary = dictionaries.get(langPair(fromLang,toLang));
+		List<String> translations = new ArrayList<String>(texts.size());
+
+		for (String text : texts) {
+			translations.add(translateText(text,dictionary));
+		}
+
+		return translations;
+	}
+
+	/**
+	 * Traduce un testo parola per parola
+	 * @param text testo da tradurre
+	 * @param dictionary dizionario della coppia di lingue,null se non esiste
+	 * @return traduzione del testo
+	 */
+	private static String translateText(String text,Map<String,String> dictionary)
+	{
+		if(text == null)
+			throw new NullPointerException();
+
+		//nessun dizionario per la coppia di lingue
+		if(dictionary == null)
+			return text;
+
+		Matcher matcher = WORD.matcher(text);
+		StringBuilder translation = new StringBuilder(text.length());
+
+		//sostituisco ogni parola presente nel dizionario,lasciando invariati spazi e punteggiatura
+		while(matcher.find())
+		{
+			String word = dictionary.getOrDefault(matcher.group().toLowerCase(),matcher.group());
+			matcher.appendReplacement(translation,Matcher.quoteReplacement(word));
+		}
+
+		matcher.appendTail(translation);
+
+		return translation.toString();
+	}
+
+	private static String langPair(String fromLang,String toLang) {
+		return fromLang+"|"+toLang;
+	}
+}
@@ -0,0 +1,159 @@
+package server.model;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+/**
+ * Motore di traduzione che usa il servizio REST MyMemoryTranslated.
+ * Tutte le richieste passano da un unico HttpClient,che mantiene aperte e riusa le connessioni verso il servizio:
+ * non si paga l'apertura di una connessione HTTPS per ogni traduzione.
+ * Il servizio traduce un solo testo per richiesta: i testi di una traduzione multipla vengono inviati con richieste contemporanee.
+ * @author Gionatha Sturba
+ *
+ */
+public class MyMemoryTranslationEngine implements TranslationEngine
+{
+	private final static String path = "https://api.mymemory.translated.net/get?";
+	private final static String queryTag = "q=";
+	private final static String andTag = "&";
+	private final static String divideLangTag = "|";
+	private final static String langpairTag = "langpair=";
+
+	private HttpClient client; //client HTTP con le connessioni verso il servizio
+	private Duration timeout; //tempo massimo di una richiesta
+
+	/**
+	 * Crea il motore di traduzione
+	 * @param timeout millisecondi massimi di attesa di una richiesta al servizio
+	 */
+	public MyMemoryTranslationEngine(long timeout)
+	{
+		if(timeout <= 0)
+			throw new IllegalArgumentException();
+
+		this.timeout = Duration.ofMillis(timeout);
+		this.client = HttpClient.newBuilder()
+				.connectTimeout(this.timeout)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+	}
+
+	@Override
+	public String translate(String text,String fromLang,String toLang) throws Exception
+	{
+		if(text == null || fromLang == null || toLang == null)
+			throw new NullPointerException();
+
+		HttpResponse<String> response = client.send(createRequest(text,fromLang,toLang),HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+		return parseResponse(response);
+	}
+
+	@Override
+	public List<String> translateBatch(List<String> texts,String fromLang,String toLang) throws Exception
+	{
+		if(texts == null || fromLang == null || toLang == null)
+			throw new NullPointerException();
+
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<CompletableFuture<HttpResponse<String>>>(texts.size());
+
+		//invio tutte le richieste prima di attendere le risposte
+		for (String text : texts) {
+			responses.add(client.sendAsync(createRequest(text,fromLang,toLang),HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)));
+		}
+
+		List<String> translations = new ArrayList<String>(texts.size());
+
+		try
+		{
+			for (CompletableFuture<HttpResponse<String>> response : responses) {
+				translations.add(parseResponse(response.get()));
+			}
+		}
+		catch (ExecutionException e)
+		{
+			//richieste ancora in corso non piu' necessarie
+			for (CompletableFuture<HttpResponse<String>> response : responses) {
+				response.cancel(true);
+			}
+
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+
+		return translations;
+	}
+
+	/**
+	 * Crea la richiesta di traduzione di un testo
+	 * @param text testo
+	 * @param fromLang lingua originale
+	 * @param toLang lingua in cui tradurre
+	 * @return richiesta al servizio
+	 */
+	private HttpRequest createRequest(String text,String fromLang,String toLang)
+	{
+		if(text == null)
+			throw new NullPointerException();
+
+		return HttpRequest.newBuilder(createRequestURI(text,fromLang,toLang))
+				.timeout(timeout)
+				.GET()
+				.build();
+	}
+
+	/**
+	 * Estrae la traduzione dalla risposta del servizio
+	 * @param response risposta del servizio
+	 * @return traduzione del testo
+	 * @throws Exception se la risposta non contiene una traduzione
+	 */
+	private static String parseResponse(HttpResponse<String> response) throws Exception
+	{
+		if(response.statusCode() != 200)
+			throw new IOException("Risposta del servizio di traduzione: "+response.statusCode());
+
+		//parso risposta json
+		JSONObject obj = (JSONObject) new JSONParser().parse(response.body());
+
+		//analizzo risposta del server
+		JSONObject result = (JSONObject) obj.get("responseData");
+
+		//risposta senza traduzione
+		if(result == null || result.get("translatedText") == null)
+			throw new IOException("Traduzione non presente nella risposta");
+
+		return result.get("translatedText").toString();
+	}
+
+	/**
+	 * Crea l'uri di richiesta al server REST
+	 * @param text testo
+	 * @param fromLang lingua originale
+	 * @param toLang lingua in cui tradurre
+	 * @return uri per la richiesta
+	 */
+	private static URI createRequestURI(String text,String fromLang,String toLang)
+	{
+		//codifico tutti i parametri,non solo gli spazi
+		String query = queryTag+encode(text)+andTag+langpairTag+encode(fromLang+divideLangTag+toLang);
+
+		return URI.create(path+query);
+	}
+
+	private static String encode(String value) {
+		return URLEncoder.encode(value,StandardCharsets.UTF_8).replace("+","%20");
+	}
+}
@@ -1,29 +1,26 @@
 	package server.model;
 
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 import server.model.exception.SameUserException;
 import server.model.exception.UserNotFindException;
-import utils.graph.Arco;
-import utils.graph.Grafo;
-import utils.graph.Nodo;
+import utils.graph.GrafoCompatto;
 import utils.graph.exception.VertexAlreadyExist;
 
 /**
  * Gestisce il grafo degli utenti di social gossip.
- * La classe e' thread-safe.
+ * La classe e' thread-safe: le ricerche degli utenti non acquisiscono lock,
+ * mentre le operazioni sulle amicizie bloccano soltanto gli utenti coinvolti.
  * @author Gionatha Sturba
  *
  */
 public class Network
 {
-	private Grafo<User> grafo; //grafo non orientato,rappresenta il grafo degli utenti
+	private GrafoCompatto<User> grafo; //grafo non orientato,rappresenta il grafo degli utenti
 	
 	public Network()
 	{
-		grafo = new Grafo<User>(false);
+		grafo = new GrafoCompatto<User>();
 	}
 	
 	/**
@@ -32,10 +29,7 @@ public class Network
 	 */
 	public boolean iscrittoUtente(User a)
 	{	
-		synchronized (grafo) 
-		{
-			return grafo.containsVertice(a);
-		}
+		return grafo.containsVertice(a);
 	}
 	
 	/**
@@ -48,10 +42,7 @@ public class Network
 		if(nickname == null)
 			throw new NullPointerException();
 		
-		synchronized (grafo) 
-		{
-			return grafo.getVertice(new User(nickname));
-		}
+		return grafo.getVertice(new User(nickname));
 	}
 	
 	/**
@@ -66,11 +57,8 @@ public class Network
 		if(nickname == null || password == null || language == null)
 			throw new NullPointerException();
 		
-		synchronized (grafo) 
-		{
-			//aggiungo un utente con il suo nick password e lingua relativi ad esso,piu' lo metto online
-			grafo.addVertice(new User(nickname,password,true,language));
-		}
+		//aggiungo un utente con il suo nick password e lingua relativi ad esso,piu' lo metto online
+		grafo.addVertice(new User(nickname,password,true,language));
 	}
 	
 	/**
@@ -86,16 +74,14 @@ public class Network
 		if(a == null || b == null)
 			throw new NullPointerException();
 		
-		synchronized (grafo) 
-		{
-			//se uno o entrambi gli utenti non sono iscritti
-			if (!iscrittoUtente(a) || !iscrittoUtente(b))
-				throw new UserNotFindException();
-			//se gli utenti sono gli stessi
-			if (a.equals(b))
-				throw new SameUserException();
-			return grafo.addArco(a, b);
-		}
+		//se uno o entrambi gli utenti non sono iscritti
+		if (!iscrittoUtente(a) || !iscrittoUtente(b))
+			throw new UserNotFindException();
+		//se gli utenti sono gli stessi
+		if (a.equals(b))
+			throw new SameUserException();
+		
+		return grafo.addArco(a, b);
 	}
 	
 	/**
@@ -103,9 +89,7 @@ public class Network
 	 * @return lista degli utenti attualmenti isccritti
 	 */
 	public List<User> getUtenti(){
-		synchronized (grafo) {
-			return grafo.getVertici();
-		}
+		return grafo.getVertici();
 	}
 	
 	/**
@@ -119,30 +103,18 @@ public class Network
 		if(a == null)
 			throw new NullPointerException();
 		
-		synchronized (grafo) 
-		{
-			if (!iscrittoUtente(a))
-				throw new UserNotFindException();
-			List<User> listaAmici = new LinkedList<User>();
-			//prendiamo il vertice del grafo che rappresenta l'utente
-			Nodo<User> verticeUtente = grafo.getAdj().get(a);
-			//per tutte le amicizie dell'utente
-			for (Arco<User> amicizia : verticeUtente.getArchi()) {
-				listaAmici.add(amicizia.getDst().getKey());
-			}
-			return Collections.unmodifiableList(listaAmici);
-		}
+		if (!iscrittoUtente(a))
+			throw new UserNotFindException();
 		
+		//utenti collegati all'utente tramite un'amicizia
+		return grafo.getAdiacenti(a);
 	}
 	
 	/**
 	 * Stampa la rete degli utenti di Social Gossip
 	 */
 	public void stampaRete() {
-		synchronized (grafo) 
-		{
-			//TODO migliorare funzione di stampa rete
-			grafo.stampaGrafo();
-		}
+		//TODO migliorare funzione di stampa rete
+		grafo.stampaGrafo();
 	}
 }
@@ -7,6 +7,7 @@ import communication.RMI.RMIClientNotifyEvent;
 import communication.RMI.RMIServerInterface;
 import server.model.exception.UserNotFindException;
 import server.model.exception.UserStatusException;
+import server.thread.ChatRoomEventBus;
 
 /**
  * Implementazione dell'interfaccia per il protocollo RMI,per registrare le callback dei client
@@ -20,15 +21,17 @@ public class RMIChannelManager extends RemoteObject implements RMIServerInterfac
 	private static final long serialVersionUID = 5015238682291518864L;
 	
 	private Network reteSG;// rete degli utenti di Social Gossip
+	private ChatRoomEventBus chatroomEvents; //eventi delle chatroom,inviati agli utenti con un canale RMI
 
-	public RMIChannelManager(Network reteSocialGossip) 
+	public RMIChannelManager(Network reteSocialGossip,ChatRoomEventBus chatroomEvents) 
 	{
 		super();
 		
-		if(reteSocialGossip == null)
+		if(reteSocialGossip == null || chatroomEvents == null)
 			throw new IllegalArgumentException();
 		
 		reteSG = reteSocialGossip;
+		this.chatroomEvents = chatroomEvents;
 	}
 
 	@Override
@@ -52,6 +55,9 @@ public class RMIChannelManager extends RemoteObject implements RMIServerInterfac
 		
 		//controlli utente ok,procedo a registrare il suo canale per le notifiche RMI
 		registeredUser.setRMIchannel(callback);
+		
+		//l'utente ora riceve gli eventi delle chatroom
+		chatroomEvents.addListener(registeredUser);
 	}
 	
 	/**
@@ -71,6 +77,7 @@ public class RMIChannelManager extends RemoteObject implements RMIServerInterfac
 		
 		//disassocio il precedente canale RMI dell'utente
 		registeredUser.setRMIchannel(null);
+		chatroomEvents.removeListener(registeredUser);
 		
 	}
 
@@ -1,10 +1,8 @@
 package server.model;
 
-import java.rmi.RemoteException;
-
-import communication.RMI.RMIClientNotifyEvent;
 import server.model.exception.SameUserException;
 import server.model.exception.UserNotFindException;
+import server.thread.NotificationDispatcher;
 
 /**
  * Gestisce le relazioni tra gli utenti di SocialGossip
@@ -13,13 +11,15 @@ import server.model.exception.UserNotFindException;
 public class RelationshipManager 
 {
 	private Network reteSG; //rete degli utenti di Social Gossip
+	private NotificationDispatcher notifier; //consegna le notifiche RMI agli utenti
 
-	public RelationshipManager(Network reteSocialGossip) 
+	public RelationshipManager(Network reteSocialGossip,NotificationDispatcher notifier) 
 	{
-		if(reteSocialGossip == null)
+		if(reteSocialGossip == null || notifier == null)
 			throw new NullPointerException();
 		
 		reteSG = reteSocialGossip;
+		this.notifier = notifier;
 	}
 	
 	/**
@@ -29,28 +29,17 @@ public class RelationshipManager
 	 * @return true se i 2 utenti sono ora amici,false se erano gia' amici
 	 * @throws UserNotFindException se uno degli utenti non e' stato trovato
 	 * @throws SameUserException se sono lo stesso utente
-	 * @throws RemoteException se viene riscontrato un errore nella notifica dell'amicizia
 	 */
-	public boolean nuovaAmicizia(User a,User b) throws UserNotFindException, SameUserException, RemoteException
+	public boolean nuovaAmicizia(User a,User b) throws UserNotFindException, SameUserException
 	{
+		//l'amicizia e' memorizzata solo come arco del grafo degli utenti
 		boolean relationshipCreated = reteSG.nuovaAmicizia(a, b);
 		
 		//se l'amicizia e' stata creata
 		if(relationshipCreated)
 		{
-			//aggiorno amicizia tra i 2 utenti
-			a.aggiungiAmico(b);
-			b.aggiungiAmico(a);
-			
-			//notifico b che ora e' amico di a
-			RMIClientNotifyEvent RMIChannelFiend = b.getRMIchannel();
-			
-			//se b non e' offline,invio la notifica
-			if(RMIChannelFiend != null)
-			{
-				//invio notifica all'amico
-				RMIChannelFiend.newFriend(a);
-			}
+			//notifico b che ora e' amico di a,in background
+			notifier.notify(b,channel -> channel.newFriend(a));
 			
 			return true;
 		}
@@ -0,0 +1,422 @@
+package server.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache delle traduzioni,indicizzate per testo,lingua originale e lingua di destinazione.
+ * Contiene al massimo un numero fissato di traduzioni: quando e' piena viene eliminata quella usata meno di recente.
+ * Ogni traduzione scade dopo un tempo fissato,dopo il quale viene richiesta di nuovo al servizio di traduzione.
+ * Opzionalmente le traduzioni vengono salvate anche su un file,e ricaricate alla creazione della cache,
+ * in modo da sopravvivere al riavvio del server.
+ * Il file viene scritto fuori dal lock della cache,e riscritto con le sole traduzioni in memoria
+ * quando contiene troppe traduzioni sostituite,scadute o eliminate.
+ * La classe e' thread-safe.
+ * @author Gionatha Sturba
+ *
+ */
+public class TranslationCache
+{
+	private int capacity; //traduzioni massime in memoria
+	private long ttl; //millisecondi di validita' di una traduzione
+	private LinkedHashMap<Key,Entry> entries; //traduzioni,in ordine di utilizzo
+	private File file; //file su cui vengono salvate le traduzioni,null se non si usa il disco
+	private DataOutputStream fileOut; //stream di scrittura sul file
+	private long fileRecords; //traduzioni scritte sul file,comprese quelle non piu' in memoria
+	private final Object fileLock = new Object(); //lock del file,preso sempre senza il lock della cache
+
+	private static final int COMPACTION_FACTOR = 2; //il file viene riscritto quando contiene piu' di capacity * COMPACTION_FACTOR traduzioni
+
+	//statistiche
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Crea una cache delle traduzioni solo in memoria
+	 * @param capacity traduzioni massime in memoria
+	 * @param ttl millisecondi di validita' di una traduzione
+	 */
+	public TranslationCache(int capacity,long ttl)
+	{
+		if(capacity <= 0 || ttl <= 0)
+			throw new IllegalArgumentException();
+
+		this.capacity = capacity;
+		this.ttl = ttl;
+		this.file = null;
+		this.fileOut = null;
+
+		//LinkedHashMap in ordine di accesso: il primo elemento e' quello usato meno di recente
+		this.entries = new LinkedHashMap<Key,Entry>(16,0.75f,true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key,Entry> eldest)
+			{
+				if(size() <= TranslationCache.this.capacity)
+					return false;
+
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Crea una cache delle traduzioni salvata anche su file.
+	 * Le traduzioni ancora valide presenti nel file vengono caricate in memoria.
+	 * @param capacity traduzioni massime in memoria
+	 * @param ttl millisecondi di validita' di una traduzione
+	 * @param file file su cui salvare le traduzioni
+	 * @throws IOException se c'e' un errore nella lettura o scrittura del file
+	 */
+	public TranslationCache(int capacity,long ttl,File file) throws IOException
+	{
+		this(capacity,ttl);
+
+		if(file == null)
+			throw new NullPointerException();
+
+		this.file = file;
+
+		load();
+		compact();
+
+		//le eliminazioni durante il caricamento non sono significative
+		evictions = 0;
+	}
+
+	/**
+	 * Cerca una traduzione nella cache
+	 * @param text testo originale
+	 * @param fromLang lingua originale
+	 * @param toLang lingua di destinazione
+	 * @return traduzione del testo,null se non e' presente o e' scaduta
+	 */
+	public synchronized String get(String text,String fromLang,String toLang)
+	{
+		Key key = new Key(text,fromLang,toLang);
+		Entry entry = entries.get(key);
+
+		//traduzione scaduta
+		if(entry != null && entry.expiration <= System.currentTimeMillis()) {
+			entries.remove(key);
+			entry = null;
+		}
+
+		if(entry == null) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return entry.translation;
+	}
+
+	/**
+	 * Inserisce una traduzione nella cache
+	 * @param text testo originale
+	 * @param fromLang lingua originale
+	 * @param toLang lingua di destinazione
+	 * @param translation traduzione del testo
+	 */
+	public void put(String text,String fromLang,String toLang,String translation)
+	{
+		if(translation == null)
+			throw new NullPointerException();
+
+		Key key = new Key(text,fromLang,toLang);
+		Entry entry = new Entry(translation,System.currentTimeMillis() + ttl);
+
+		synchronized (this) {
+			entries.put(key,entry);
+		}
+
+		if(file == null)
+			return;
+
+		byte[] record;
+
+		try {
+			record = record(key,entry);
+		}
+		//testo troppo lungo per il file,resta solo in memoria
+		catch (IOException e) {
+			return;
+		}
+
+		synchronized (fileLock)
+		{
+			if(fileOut == null)
+				return;
+
+			try
+			{
+				fileOut.write(record);
+				fileOut.flush();
+				fileRecords++;
+
+				//troppe traduzioni non piu' valide sul file,lo riscrivo
+				if(fileRecords > (long) capacity * COMPACTION_FACTOR)
+				{
+					closeFile();
+					compact();
+				}
+			}
+			//errore del disco,la cache continua a funzionare solo in memoria
+			catch (IOException e) {
+				e.printStackTrace();
+				closeFile();
+			}
+		}
+	}
+
+	/**
+	 * Elimina tutte le traduzioni in memoria e sul file
+	 */
+	public void clear()
+	{
+		synchronized (this) {
+			entries.clear();
+		}
+
+		synchronized (fileLock)
+		{
+			if(fileOut == null)
+				return;
+
+			//riscrivo il file con le traduzioni in memoria,nessuna se non ne sono state aggiunte nel frattempo
+			try {
+				closeFile();
+				compact();
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+				closeFile();
+			}
+		}
+	}
+
+	/**
+	 * @return numero di traduzioni in memoria
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return numero di ricerche che hanno trovato la traduzione
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return numero di ricerche che non hanno trovato la traduzione
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return numero di traduzioni eliminate perche' la cache era piena
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Chiude il file della cache,se presente.La cache continua a funzionare solo in memoria.
+	 */
+	public void close()
+	{
+		synchronized (fileLock) {
+			closeFile();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "traduzioni: "+entries.size()+" hit: "+hits+" miss: "+misses+" eliminate: "+evictions;
+	}
+
+	/*METODI PRIVATI*/
+
+	/**
+	 * Carica le traduzioni ancora valide dal file
+	 */
+	private void load() throws IOException
+	{
+		if(!file.exists())
+			return;
+
+		long now = System.currentTimeMillis();
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			while(true)
+			{
+				long expiration = in.readLong();
+				Key key = new Key(in.readUTF(),in.readUTF(),in.readUTF());
+				String translation = in.readUTF();
+
+				if(expiration > now)
+					entries.put(key,new Entry(translation,expiration));
+			}
+		}
+		//fine del file,o ultima traduzione scritta solo in parte
+		catch (EOFException e) {}
+	}
+
+	/**
+	 * Riscrive il file con le sole traduzioni in memoria,e lo apre in scrittura.
+	 * Chiamato con il lock del file: il lock della cache viene preso solo per copiare le traduzioni.
+	 */
+	private void compact() throws IOException
+	{
+		File tmp = new File(file.getPath()+".tmp");
+		List<Map.Entry<Key,Entry>> snapshot;
+
+		synchronized (this) {
+			snapshot = new ArrayList<Map.Entry<Key,Entry>>(entries.entrySet().size());
+
+			for (Map.Entry<Key,Entry> entry : entries.entrySet()) {
+				snapshot.add(new AbstractMap.SimpleImmutableEntry<Key,Entry>(entry));
+			}
+		}
+
+		long now = System.currentTimeMillis();
+		long written = 0;
+
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+		{
+			for (Map.Entry<Key,Entry> entry : snapshot)
+			{
+				//le traduzioni scadute non vengono riscritte
+				if(entry.getValue().expiration <= now)
+					continue;
+
+				try {
+					out.write(record(entry.getKey(),entry.getValue()));
+					written++;
+				}
+				//testo troppo lungo per il file,resta solo in memoria
+				catch (UTFDataFormatException e) {}
+			}
+		}
+
+		if(!tmp.renameTo(file))
+		{
+			tmp.delete();
+			throw new IOException("Impossibile aggiornare il file "+file);
+		}
+
+		fileOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file,true)));
+		fileRecords = written;
+	}
+
+	/**
+	 * Prepara in memoria una traduzione da scrivere sul file,per non scrivere mai sul file una traduzione incompleta
+	 * @return traduzione codificata
+	 * @throws UTFDataFormatException se il testo e' troppo lungo per il file
+	 */
+	private static byte[] record(Key key,Entry entry) throws IOException
+	{
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(record);
+
+		out.writeLong(entry.expiration);
+		out.writeUTF(key.text);
+		out.writeUTF(key.fromLang);
+		out.writeUTF(key.toLang);
+		out.writeUTF(entry.translation);
+
+		return record.toByteArray();
+	}
+
+	private void closeFile()
+	{
+		if(fileOut == null)
+			return;
+
+		try {
+			fileOut.close();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		fileOut = null;
+	}
+
+	/**
+	 * Chiave della cache: testo e coppia di lingue
+	 */
+	private static final class Key
+	{
+		private final String text;
+		private final String fromLang;
+		private final String toLang;
+		private final int hash;
+
+		private Key(String text,String fromLang,String toLang)
+		{
+			if(text == null || fromLang == null || toLang == null)
+				throw new NullPointerException();
+
+			this.text = text;
+			this.fromLang = fromLang;
+			this.toLang = toLang;
+			this.hash = (text.hashCode() * 31 + fromLang.hashCode()) * 31 + toLang.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if(this == obj)
+				return true;
+
+			if(!(obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+
+			return hash == other.hash && text.equals(other.text) && fromLang.equals(other.fromLang) && toLang.equals(other.toLang);
+		}
+	}
+
+	/**
+	 * Traduzione e istante in cui scade
+	 */
+	private static final class Entry
+	{
+		private final String translation;
+		private final long expiration;
+
+		private Entry(String translation,long expiration)
+		{
+			this.translation = translation;
+			this.expiration = expiration;
+		}
+	}
+}
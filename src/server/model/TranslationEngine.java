@@ -0,0 +1,44 @@
+package server.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Motore che effettua la traduzione di un testo da una lingua ad un'altra.
+ * Le implementazioni devono essere thread-safe,perche' vengono usate da piu' thread contemporaneamente.
+ * @author Gionatha Sturba
+ *
+ */
+public interface TranslationEngine
+{
+	/**
+	 * Traduce un testo da una lingua ad un'altra
+	 * @param text testo da tradurre
+	 * @param fromLang codice della lingua originale
+	 * @param toLang codice della lingua in cui tradurre
+	 * @return traduzione del testo
+	 * @throws Exception se non e' stato possibile tradurre il testo
+	 */
+	public String translate(String text,String fromLang,String toLang) throws Exception;
+
+	/**
+	 * Traduce piu' testi dalla stessa lingua alla stessa lingua.
+	 * Di default i testi vengono tradotti uno alla volta: i motori che possono tradurli insieme
+	 * (con una sola richiesta,o con richieste contemporanee) devono ridefinire questo metodo.
+	 * @param texts testi da tradurre
+	 * @param fromLang codice della lingua originale
+	 * @param toLang codice della lingua in cui tradurre
+	 * @return traduzioni dei testi,nello stesso ordine
+	 * @throws Exception se non e' stato possibile tradurre i testi
+	 */
+	public default List<String> translateBatch(List<String> texts,String fromLang,String toLang) throws Exception
+	{
+		List<String> translations = new ArrayList<String>(texts.size());
+
+		for (String text : texts) {
+			translations.add(translate(text,fromLang,toLang));
+		}
+
+		return translations;
+	}
+}
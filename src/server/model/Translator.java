@@ -1,94 +1,206 @@
 package server.model;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import utils.Config;
 
 /**
  * Classe che si occupa di effettua le traduzioni dei testi nelle varie lingue richieste.
- * Per effettuare le traduzioni utilizza il servizio REST MyMemoryTranslated
+ * Le traduzioni vengono effettuate da un TranslationEngine (di default il servizio REST MyMemoryTranslated),
+ * e salvate in una cache.
  * @author Gionatha Sturba
  *
  */
 public class Translator 
 {
+	/**
+	 * Motori di traduzione disponibili
+	 */
+	public enum Engine {MYMEMORY,LOCAL};
+	
 	public static int LANGUAGE_STRING_LEN = 2;
-	private final static String path = "https://api.mymemory.translated.net/get?";
-	private final static String queryTag = "q=";
-	private final static String andTag = "&";
-	private final static String divideLangTag = "|";
-	private final static String langpairTag = "langpair=";
-	private final static String spaceDelimiter = "%20";
+	
+	//motore che effettua le traduzioni
+	private static volatile TranslationEngine engine = createEngine(Engine.valueOf(Config.TRANSLATION_ENGINE));
+	
+	//cache delle traduzioni gia' effettuate
+	private final static TranslationCache cache = createCache();
 	
 	/**
-	 * Traduce un testo da una lingua ad un altra,tramite il servizio MyMemoryTranslated
+	 * Traduce un testo da una lingua ad un altra,tramite il motore di traduzione
 	 * @param text testo da tradurre
 	 * @param fromLang lingua originale
 	 * @param toLang lingua in cui tradurre
-	 * @return traduzione del testo richiesto,altrimenti testo originale se non si e' riuscita la traduzione
+	 * @return traduzione del testo richiesto
 	 * @throws Exception se ci sono errori nella traduzione del testo
 	 */
 	public static String translate(String text,String fromLang,String toLang) throws Exception
 	{
-		if(text == null || fromLang == null || toLang == null)
-			throw new NullPointerException();
+		//traduzione gia' effettuata
+		String cached = getCachedTranslation(text,fromLang,toLang);
 		
-		if(text.isEmpty() || fromLang.length() != LANGUAGE_STRING_LEN || toLang.length() != LANGUAGE_STRING_LEN)
-			throw new IllegalArgumentException();
+		if(cached != null)
+			return cached;
+		
+		return translateRemote(text,fromLang,toLang);
+	}
+	
+	/**
+	 * Cerca la traduzione di un testo senza contattare il servizio di traduzione
+	 * @param text testo da tradurre
+	 * @param fromLang lingua originale
+	 * @param toLang lingua in cui tradurre
+	 * @return traduzione del testo se e' gia' disponibile,null altrimenti
+	 */
+	public static String getCachedTranslation(String text,String fromLang,String toLang)
+	{
+		checkArguments(text,fromLang,toLang);
 		
 		//se le lingue sono uguali,non bisogna effettuare la traduzione
 		if(fromLang.equals(toLang))
 			return text;
 		
-		//creo url per la richiesta al server REST MyMemory
-		String requestURL = createRequestURL(text,fromLang,toLang);
+		return cache.get(text,fromLang,toLang);
+	}
+	
+	/**
+	 * Traduce un testo tramite il motore di traduzione,senza cercarlo nella cache.
+	 * La traduzione ottenuta viene salvata in cache.
+	 * @param text testo da tradurre
+	 * @param fromLang lingua originale
+	 * @param toLang lingua in cui tradurre
+	 * @return traduzione del testo richiesto
+	 * @throws Exception se ci sono errori nella traduzione del testo
+	 */
+	public static String translateRemote(String text,String fromLang,String toLang) throws Exception
+	{
+		checkArguments(text,fromLang,toLang);
 		
-		URL url = new URL(requestURL);
+		//se le lingue sono uguali,non bisogna effettuare la traduzione
+		if(fromLang.equals(toLang))
+			return text;
 		
-		//apro connessione con il server REST
-		URLConnection uc = url.openConnection();
+		String translation = engine.translate(text,fromLang,toLang);
 		
-		BufferedReader in = new BufferedReader(new InputStreamReader(uc.getInputStream()));
+		//salvo in cache solo le traduzioni riuscite
+		cache.put(text,fromLang,toLang,translation);
 		
-		String line = null;
-		StringBuffer response = new StringBuffer();
+		return translation;
+	}
+	
+	/**
+	 * Traduce piu' testi con una sola chiamata al motore di traduzione,senza cercarli nella cache.
+	 * Le traduzioni ottenute vengono salvate in cache.
+	 * @param texts testi da tradurre
+	 * @param fromLang lingua originale
+	 * @param toLang lingua in cui tradurre
+	 * @return traduzioni dei testi,nello stesso ordine
+	 * @throws Exception se ci sono errori nella traduzione dei testi
+	 */
+	public static List<String> translateRemoteBatch(List<String> texts,String fromLang,String toLang) throws Exception
+	{
+		if(texts == null)
+			throw new NullPointerException();
 		
-		//leggo risposta
-		while((line = in.readLine())!= null) {
-			response.append(line);
+		for (String text : texts) {
+			checkArguments(text,fromLang,toLang);
 		}
 		
-		//parso risposta json
-		JSONObject obj = (JSONObject) new JSONParser().parse(response.toString());
+		//se le lingue sono uguali,non bisogna effettuare la traduzione
+		if(fromLang.equals(toLang))
+			return texts;
+		
+		List<String> translations = engine.translateBatch(texts,fromLang,toLang);
 		
-		//analizzo risposta del server
-		JSONObject result = (JSONObject) obj.get("responseData");
+		if(translations == null || translations.size() != texts.size())
+			throw new IOException("Numero di traduzioni diverso dal numero di testi");
 		
-		//se la risposta e' valida
-		if(result != null) {
-			return result.get("translatedText").toString();
+		//salvo in cache solo le traduzioni riuscite
+		for (int i = 0; i < texts.size(); i++) {
+			cache.put(texts.get(i),fromLang,toLang,translations.get(i));
 		}
 		
-		return text;
+		return translations;
+	}
+	
+	/**
+	 * Cambia il motore di traduzione.Le traduzioni in cache del motore precedente vengono eliminate.
+	 * @param newEngine nuovo motore di traduzione
+	 */
+	public static void setEngine(TranslationEngine newEngine)
+	{
+		if(newEngine == null)
+			throw new NullPointerException();
 		
+		engine = newEngine;
+		cache.clear();
 	}
 	
 	/**
-	 * Crea l'url di richiesta al server REST
-	 * @param text testo
-	 * @param fromLang lingua originale
-	 * @param toLang lingua in cui tradurreo
-	 * @return url per la richiesta
+	 * @return motore di traduzione in uso
+	 */
+	public static TranslationEngine getEngine() {
+		return engine;
+	}
+	
+	/**
+	 * Crea un motore di traduzione
+	 * @param type tipo del motore
+	 * @return motore di traduzione
+	 */
+	public static TranslationEngine createEngine(Engine type)
+	{
+		if(type == null)
+			throw new NullPointerException();
+		
+		switch (type) 
+		{
+			case LOCAL:
+				return new LocalTranslationEngine();
+	
+			default:
+				return new MyMemoryTranslationEngine(Config.TRANSLATION_TIMEOUT);
+		}
+	}
+	
+	/**
+	 * Controlla i parametri di una richiesta di traduzione
 	 */
-	private static String createRequestURL(String text,String fromLang,String toLang)
+	private static void checkArguments(String text,String fromLang,String toLang)
 	{
-		//sostituisco tutti gli spazi con un nuovo carattere,per una migliore traduzione
-		String betterText = text.replace(" ",spaceDelimiter);
+		if(text == null || fromLang == null || toLang == null)
+			throw new NullPointerException();
+		
+		if(text.isEmpty() || fromLang.length() != LANGUAGE_STRING_LEN || toLang.length() != LANGUAGE_STRING_LEN)
+			throw new IllegalArgumentException();
+	}
+	
+	/**
+	 * @return cache delle traduzioni
+	 */
+	public static TranslationCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Crea la cache delle traduzioni,su file se configurato
+	 * @return cache delle traduzioni
+	 */
+	private static TranslationCache createCache()
+	{
+		if(Config.TRANSLATION_CACHE_FILE != null)
+		{
+			try {
+				return new TranslationCache(Config.TRANSLATION_CACHE_CAPACITY,Config.TRANSLATION_CACHE_TTL,new File(Config.TRANSLATION_CACHE_FILE));
+			}
+			//file non utilizzabile,uso solo la memoria
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 		
-		return path+queryTag+betterText+andTag+langpairTag+fromLang+divideLangTag+toLang;
+		return new TranslationCache(Config.TRANSLATION_CACHE_CAPACITY,Config.TRANSLATION_CACHE_TTL);
 	}
 }
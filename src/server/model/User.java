@@ -1,7 +1,6 @@
 package server.model;
 
 import java.io.Serializable;
-import java.net.Socket;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -9,6 +8,7 @@ import org.json.simple.JSONObject;
 
 import communication.RMI.RMIClientNotifyEvent;
 import server.model.exception.UserAlreadyRegistered;
+import server.thread.OutboundMailbox;
 /**
  * Rappresenta un generico utente della rete di Social Gossip
  * @author Gionatha Sturba
@@ -25,9 +25,9 @@ public class User implements Serializable
 	private String password;
 	private boolean online;
 	private String lingua; //ISO 639-2 Code
-	private List<User> amici;
 	private List<ChatRoom> chatrooms; //chatroom a cui e' iscritto l'utente
-	private transient Socket notificationMessageChannel;
+	private transient OutboundMailbox notificationMailbox; //coda dei messaggi verso il canale di notifica
+	private transient int hash = 0; //hash del nickname normalizzato,calcolato alla prima richiesta
 
 	
 	//gestione notifiche eventi
@@ -56,9 +56,8 @@ public class User implements Serializable
 		this.password = password;
 		this.online = online;
 		this.lingua = lingua;
-		this.amici = new LinkedList<User>();
 		this.chatrooms = new LinkedList<ChatRoom>(); 
-		this.notificationMessageChannel = null;
+		this.notificationMailbox = null;
 	}
 	
 	/**
@@ -75,9 +74,8 @@ public class User implements Serializable
 		this.online = isOnline;
 		this.password = null;
 		this.lingua = null;
-		this.amici = null;
 		this.chatrooms = null;
-		this.notificationMessageChannel = null;
+		this.notificationMailbox = null;
 	}
 	
 	/**
@@ -93,9 +91,8 @@ public class User implements Serializable
 		this.password = null;
 		this.online = false;
 		this.lingua = null;
-		this.amici = null;
 		this.chatrooms = null;
-		this.notificationMessageChannel = null;
+		this.notificationMailbox = null;
 
 	}
 	
@@ -113,9 +110,8 @@ public class User implements Serializable
 		this.password = password;
 		this.online = false;
 		this.lingua = null;
-		this.amici = null;
 		this.chatrooms = null;
-		this.notificationMessageChannel = null;
+		this.notificationMailbox = null;
 
 	}
 	
@@ -134,9 +130,8 @@ public class User implements Serializable
 		this.password = password;
 		this.online = false;
 		this.lingua = lingua;
-		this.amici = null;
 		this.chatrooms = null;
-		this.notificationMessageChannel = null;
+		this.notificationMailbox = null;
 	}
 	
 	
@@ -151,20 +146,24 @@ public class User implements Serializable
 	
 	/**
 	 * 
-	 * @return canale di notifica utilizzato dall'utente per ricevere messaggi da altri utenti,null se non e' settato
+	 * @return coda dei messaggi verso il canale di notifica dell'utente,null se il canale non e' settato
 	 */
-	public synchronized Socket getNotificationMessageChannel() {
-		return notificationMessageChannel;
+	public synchronized OutboundMailbox getNotificationMailbox() {
+		return notificationMailbox;
 	}
 	
 	/**
-	 * Setta il canale di notifica per ricevere i messaggi da altri utenti
-	 * @param notificationMessageChannel 
+	 * Setta la coda dei messaggi verso il canale di notifica,per ricevere i messaggi da altri utenti.
+	 * La coda precedente viene chiusa.
+	 * @param notificationMailbox coda del nuovo canale di notifica,null per togliere il canale
 	 */
-	public synchronized void setNotificationMessageChannel(Socket notificationMessageChannel) {
-		this.notificationMessageChannel = notificationMessageChannel;
+	public synchronized void setNotificationMailbox(OutboundMailbox notificationMailbox) {
+		if(this.notificationMailbox != null && this.notificationMailbox != notificationMailbox)
+			this.notificationMailbox.close();
+		
+		this.notificationMailbox = notificationMailbox;
 	}
-
+	
 	/**
 	 * 
 	 * @return canale RMI per notificare l'utente di un evento,null se non ha un canale RMI
@@ -226,30 +225,6 @@ public class User implements Serializable
 		this.lingua = lingua;
 	}
 	
-	/**
-	 * @return lista degli amici dell'utente
-	 */
-	public synchronized List<User> getAmici(){
-		return amici;
-	}
-	
-	/**
-	 * Aggiunge l'utente user alla lista di amici di questo utente
-	 * @param user
-	 */
-	public synchronized void aggiungiAmico(User user) {
-		if(user == null)
-			throw new NullPointerException();
-		
-		if(amici == null)
-			return;
-		
-		//se non sono gia' amici
-		if(!amici.contains(user)) {
-			amici.add(user);
-		}
-	}
-	
 	/**
 	 * Aggiunge una nuova chatroom a cui l'utente si e' iscritto
 	 * @param chatroom
@@ -300,11 +275,36 @@ public class User implements Serializable
 		return jsonUser;
 	}
 
+	/**
+	 * Normalizza un nickname,in modo coerente con il confronto effettuato da String.equalsIgnoreCase
+	 * @param nickname nickname da normalizzare
+	 * @return nickname normalizzato
+	 */
+	public static String normalizeNickname(String nickname)
+	{
+		if(nickname == null)
+			throw new NullPointerException();
+		
+		char[] chars = new char[nickname.length()];
+		
+		//stessa conversione carattere per carattere usata da equalsIgnoreCase
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(nickname.charAt(i)));
+		}
+		
+		return new String(chars);
+	}
+
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((nickname == null) ? 0 : nickname.hashCode());
+		//l'hash deve essere coerente con equals,che non distingue maiuscole e minuscole
+		int result = hash;
+		
+		if(result == 0 && nickname != null) {
+			result = 31 + normalizeNickname(nickname).hashCode();
+			hash = result;
+		}
+		
 		return result;
 	}
 
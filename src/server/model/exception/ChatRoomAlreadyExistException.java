@@ -0,0 +1,19 @@
+package server.model.exception;
+
+/**
+ * Eccezione che viene sollevata se esiste gia' una chatroom con il nome scelto
+ * @author Gionatha Sturba
+ *
+ */
+public class ChatRoomAlreadyExistException extends Exception{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -6204826473955152871L;
+	
+	public ChatRoomAlreadyExistException() {
+		super();
+	}
+
+}
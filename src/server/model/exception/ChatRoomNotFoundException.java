@@ -0,0 +1,19 @@
+package server.model.exception;
+
+/**
+ * Eccezione che viene sollevata se la chatroom cercata non esiste
+ * @author Gionatha Sturba
+ *
+ */
+public class ChatRoomNotFoundException extends Exception{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 3091583744207169834L;
+	
+	public ChatRoomNotFoundException() {
+		super();
+	}
+
+}
@@ -0,0 +1,19 @@
+package server.model.exception;
+
+/**
+ * Eccezione che viene sollevata se l'utente non ha i permessi per eseguire l'operazione richiesta
+ * @author Gionatha Sturba
+ *
+ */
+public class OperationNotPermittedException extends Exception{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 8156120983265094411L;
+	
+	public OperationNotPermittedException() {
+		super();
+	}
+
+}
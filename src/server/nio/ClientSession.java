@@ -0,0 +1,493 @@
+package server.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import communication.TCPMessages.Message;
+import communication.TCPMessages.ParsedRequest;
+import communication.TCPMessages.wire.WireFormat;
+import communication.TCPMessages.wire.WireProtocol;
+import server.model.ChatRoomRegistry;
+import server.model.Network;
+import server.thread.NotificationDispatcher;
+import server.thread.PresenceAggregator;
+import server.thread.TranslationService;
+import server.thread.UserRequestHandler;
+
+/**
+ * Sessione di un client gestito dal motore NIO.
+ * Riconosce dai primi byte il formato dei messaggi scelto dal client (vedi WireProtocol),separa i frame ricevuti
+ * e li passa,uno alla volta e nell'ordine di arrivo, alla logica di UserRequestHandler eseguita sul pool di worker,
+ * che li decodifica direttamente dal buffer del frame.
+ * Le risposte inviate a pagine vengono codificate dal pool di worker una pagina alla volta,solo quando le risposte
+ * precedenti sono state scritte sulla connessione;fino all'ultima pagina le richieste successive restano in attesa.
+ * L'event loop scrive soltanto buffer gia' codificati.
+ * Allo stesso modo,le richieste successive ad una richiesta senza id con risposta differita attendono l'invio
+ * di quella risposta,senza occupare un worker.
+ * @author Gionatha Sturba
+ *
+ */
+public class ClientSession
+{
+	private static final int INITIAL_BUFFER_LEN = 1024;
+
+	private SocketChannel channel; //connessione con il client
+	private EventLoop loop; //event loop che gestisce la connessione
+	private SelectionKey key; //chiave della connessione sul selettore dell'event loop
+	private Executor workers; //pool che esegue la logica delle richieste
+
+	private SessionRequestHandler handler; //logica di gestione delle richieste
+	private ByteBuffer readBuffer; //dati letti non ancora decodificati
+	private WireFormat format = null; //formato dei messaggi,null finche' non e' stato riconosciuto
+	private Queue<ByteBuffer> requests; //frame delle richieste,in attesa di essere gestite
+	private AtomicBoolean processing; //true se un worker sta gestendo le richieste della sessione
+	private Queue<ByteBuffer> writeQueue; //risposte in attesa di essere scritte sulla connessione
+	private ByteArrayOutputStream response; //risposta della richiesta corrente
+	private DataOutputStream out; //stream su cui l'handler scrive le risposte
+	private Iterator<? extends Message> nextPages = null; //pagine della richiesta corrente,da inviare dopo la risposta
+	private volatile Iterator<? extends Message> pages = null; //pagine in invio,codificate dai worker
+	private volatile boolean encodingPage = false; //true se un worker sta codificando la prossima pagina
+	private CompletableFuture<Void> deferred = null; //risposta differita da attendere prima della prossima richiesta
+
+	private volatile boolean detached = false; //true se la connessione e' diventata un canale di notifica
+
+	public ClientSession(SocketChannel channel,EventLoop loop,Executor workers,Network reteSG,ChatRoomRegistry chatrooms,NotificationDispatcher notifier,PresenceAggregator presence,TranslationService translations,Executor mailboxWriters)
+	{
+		if(channel == null || loop == null || workers == null)
+			throw new NullPointerException();
+
+		this.channel = channel;
+		this.loop = loop;
+		this.workers = workers;
+		this.handler = new SessionRequestHandler(channel.socket(),reteSG,chatrooms,notifier,presence,translations,mailboxWriters);
+
+		readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_LEN);
+		requests = new ConcurrentLinkedQueue<ByteBuffer>();
+		processing = new AtomicBoolean(false);
+		writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+		response = new ByteArrayOutputStream();
+		out = new DataOutputStream(response);
+	}
+
+	/**
+	 * Registra la connessione sul selettore.Deve essere chiamato dal thread dell'event loop.
+	 * @param selector selettore dell'event loop
+	 * @throws IOException se non e' possibile registrare la connessione
+	 */
+	void register(Selector selector) throws IOException
+	{
+		channel.configureBlocking(false);
+		key = channel.register(selector,SelectionKey.OP_READ,this);
+	}
+
+	/**
+	 * Legge i dati disponibili e decodifica le richieste complete
+	 * @throws IOException se c'e' un errore nella lettura
+	 */
+	void onReadable() throws IOException
+	{
+		int read = channel.read(readBuffer);
+
+		//client ha chiuso la connessione
+		if(read == -1) {
+			System.out.println("Chiusura client");
+			close();
+			return;
+		}
+
+		readBuffer.flip();
+
+		//primi byte della connessione: handshake o inizio del primo frame Json
+		if(format == null && !negotiate()) {
+			readBuffer.compact();
+			return;
+		}
+
+		int headerLength = format.getHeaderLength();
+
+		while(readBuffer.remaining() >= headerLength)
+		{
+			int length = format.getPayloadLength(readBuffer);
+
+			//messaggio non ancora completo
+			if(readBuffer.remaining() < headerLength + length)
+				break;
+
+			//copio il frame,che verra' decodificato dal worker
+			ByteBuffer frame = ByteBuffer.allocate(headerLength + length);
+			ByteBuffer source = readBuffer.duplicate();
+			source.limit(source.position() + frame.capacity());
+			frame.put(source).flip();
+			readBuffer.position(source.limit());
+
+			requests.add(frame);
+		}
+
+		readBuffer.compact();
+
+		//se il buffer e' pieno e il messaggio in arrivo non ci sta,lo ingrandisco
+		if(!readBuffer.hasRemaining())
+		{
+			ByteBuffer bigger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+			readBuffer.flip();
+			bigger.put(readBuffer);
+			readBuffer = bigger;
+		}
+
+		scheduleProcessing();
+	}
+
+	/**
+	 * Riconosce il formato dei messaggi dai primi byte ricevuti,e risponde all'handshake se il client lo ha inviato
+	 * @return true se il formato e' stato riconosciuto,false se servono altri byte
+	 */
+	private boolean negotiate()
+	{
+		if(readBuffer.remaining() < WireProtocol.HANDSHAKE_LEN - 1)
+			return false;
+
+		//client che non negozia
+		if(!WireProtocol.isHandshake(readBuffer)) {
+			setFormat(WireProtocol.JSON);
+			return true;
+		}
+
+		if(readBuffer.remaining() < WireProtocol.HANDSHAKE_LEN)
+			return false;
+
+		int version = WireProtocol.negotiate(readBuffer.get(readBuffer.position() + WireProtocol.HANDSHAKE_LEN - 1) & 0xFF);
+		readBuffer.position(readBuffer.position() + WireProtocol.HANDSHAKE_LEN);
+
+		setFormat(WireProtocol.getFormat(version));
+
+		//confermo la versione,prima di qualsiasi risposta
+		writeQueue.add(ByteBuffer.wrap(WireProtocol.handshake(version)));
+		key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+
+		return true;
+	}
+
+	private void setFormat(WireFormat format)
+	{
+		this.format = format;
+		handler.setWireFormat(format);
+	}
+
+	/**
+	 * Scrive le risposte in attesa sulla connessione
+	 * @throws IOException se c'e' un errore nella scrittura
+	 */
+	void onWritable() throws IOException
+	{
+		ByteBuffer buffer;
+
+		while((buffer = writeQueue.peek()) != null)
+		{
+			channel.write(buffer);
+
+			//socket pieno,riprovo quando sara' di nuovo scrivibile
+			if(buffer.hasRemaining())
+				return;
+
+			writeQueue.poll();
+		}
+
+		//risposte in coda scritte,un worker codifica la prossima pagina
+		if(pages != null && !encodingPage)
+		{
+			encodingPage = true;
+			workers.execute(this::nextPage);
+		}
+
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Accoda per la scrittura la prossima pagina della risposta in invio.
+	 * Dopo l'ultima pagina riprende la gestione delle richieste in attesa.
+	 * Eseguito da un worker,con encodingPage a true.
+	 */
+	private void nextPage()
+	{
+		Iterator<? extends Message> pages = this.pages;
+
+		if(pages.hasNext())
+		{
+			try
+			{
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				format.write(pages.next().getJsonObject(),new DataOutputStream(buffer));
+
+				writeQueue.add(ByteBuffer.wrap(buffer.toByteArray()));
+			}
+			//pagina non codificabile,la risposta al client resterebbe incompleta
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				close();
+				return;
+			}
+		}
+
+		boolean last = !pages.hasNext();
+
+		//ultima pagina accodata,le risposte successive la seguono nella coda di scrittura
+		if(last)
+			this.pages = null;
+
+		encodingPage = false;
+
+		if(last) {
+			processing.set(false);
+			scheduleProcessing();
+		}
+
+		loop.execute(() -> {
+			if(key.isValid())
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		});
+	}
+
+	/**
+	 * Chiude la connessione con il client
+	 */
+	void close()
+	{
+		try {
+			if(key != null)
+				key.cancel();
+
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Fa gestire le richieste in attesa ad un worker,se non c'e' gia' un worker che lo sta facendo
+	 */
+	private void scheduleProcessing()
+	{
+		if(!requests.isEmpty() && !detached && processing.compareAndSet(false,true))
+			workers.execute(this::processRequests);
+	}
+
+	/**
+	 * Gestisce le richieste in attesa,nell'ordine in cui sono arrivate
+	 */
+	private void processRequests()
+	{
+		ByteBuffer request;
+
+		while(!detached && (request = requests.poll()) != null)
+		{
+			handler.handle(request,out);
+			flushResponse();
+
+			//risposta a pagine: le pagine vengono codificate una alla volta,dopo la scrittura di quelle precedenti
+			if(nextPages != null)
+			{
+				encodingPage = true;
+				pages = nextPages;
+				nextPages = null;
+
+				//la prima pagina segue subito la risposta appena accodata
+				nextPage();
+
+				//la gestione delle richieste riprende dopo l'ultima pagina
+				return;
+			}
+
+			//risposta differita ad una richiesta senza id: la gestione delle richieste riprende dopo il suo invio
+			if(deferred != null)
+			{
+				CompletableFuture<Void> response = deferred;
+				deferred = null;
+
+				response.whenComplete((result,e) -> {
+					processing.set(false);
+					scheduleProcessing();
+				});
+
+				return;
+			}
+		}
+
+		processing.set(false);
+
+		//potrebbero essere arrivate nuove richieste nel frattempo
+		scheduleProcessing();
+	}
+
+	/**
+	 * Accoda la risposta della richiesta corrente per la scrittura sulla connessione
+	 */
+	private void flushResponse()
+	{
+		if(response.size() == 0)
+			return;
+
+		writeQueue.add(ByteBuffer.wrap(response.toByteArray()));
+		response.reset();
+
+		loop.execute(() -> {
+			if(key.isValid())
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		});
+	}
+
+	/**
+	 * Accoda per la scrittura una risposta prodotta fuori dal worker che gestisce le richieste della sessione
+	 * @param response risposta da inviare
+	 * @throws IOException se non e' possibile codificare la risposta
+	 */
+	private void sendLater(JSONObject response) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		format.write(response,new DataOutputStream(buffer));
+
+		writeQueue.add(ByteBuffer.wrap(buffer.toByteArray()));
+
+		loop.execute(() -> {
+			if(key.isValid())
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		});
+	}
+
+	/**
+	 * Stacca la connessione dal selettore e la rimette in modalita' bloccante,
+	 * dopo aver scritto le risposte ancora in attesa.
+	 * @return socket della connessione,utilizzabile in modo bloccante
+	 * @throws IOException se non e' possibile staccare la connessione
+	 */
+	private Socket detach() throws IOException
+	{
+		flushResponse();
+
+		FutureTask<Socket> detachTask = new FutureTask<Socket>(() -> {
+			key.cancel();
+
+			//completo la deregistrazione dal selettore
+			loop.getSelector().selectNow();
+
+			channel.configureBlocking(true);
+
+			//scrivo le risposte in attesa
+			ByteBuffer buffer;
+			while((buffer = writeQueue.poll()) != null)
+			{
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+			}
+
+			detached = true;
+
+			return channel.socket();
+		});
+
+		loop.execute(detachTask);
+
+		try {
+			return detachTask.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Logica di gestione delle richieste di UserRequestHandler,adattata alla sessione NIO
+	 */
+	private class SessionRequestHandler extends UserRequestHandler
+	{
+		public SessionRequestHandler(Socket client,Network reteSG,ChatRoomRegistry chatrooms,NotificationDispatcher notifier,PresenceAggregator presence,TranslationService translations,Executor mailboxWriters)
+		{
+			super(client,reteSG,chatrooms,notifier,presence,translations,mailboxWriters);
+		}
+
+		/**
+		 * Gestisce una richiesta del client
+		 * @param frame frame della richiesta da gestire
+		 * @param out stream su cui scrivere la risposta
+		 */
+		void handle(ByteBuffer frame,DataOutputStream out)
+		{
+			ParsedRequest request;
+
+			try {
+				request = wireFormat.decodeRequest(frame);
+			}
+			//messaggio non valido
+			catch (IOException | ParseException e) {
+				rejectInvalidRequest(out);
+				return;
+			}
+
+			analyzeRequestMessage(request,out);
+		}
+
+		void setWireFormat(WireFormat format) {
+			wireFormat = format;
+		}
+
+		@Override
+		protected void sendPages(Message response,Iterator<? extends Message> pages,DataOutputStream out) throws IOException
+		{
+			sendMessage(response,out);
+			
+			//le pagine vengono codificate una alla volta,quando le precedenti sono state scritte
+			long requestId = this.requestId;
+			
+			nextPages = new Iterator<Message>() 
+			{
+				@Override
+				public boolean hasNext() {
+					return pages.hasNext();
+				}
+
+				@Override
+				public Message next() {
+					return stamp(pages.next(),requestId);
+				}
+			};
+		}
+
+		@Override
+		protected void sendDeferredResponse(JSONObject response,DataOutputStream out) throws IOException
+		{
+			sendLater(response);
+		}
+
+		@Override
+		protected void awaitDeferredResponse(CompletableFuture<Void> response) {
+			deferred = response;
+		}
+
+		@Override
+		protected Socket openNotificationChannel() throws IOException
+		{
+			return detach();
+		}
+	}
+}
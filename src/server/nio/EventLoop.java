@@ -0,0 +1,141 @@
+package server.nio;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread che gestisce, tramite un selettore, le connessioni dei client assegnate.
+ * Oltre agli eventi di lettura e scrittura esegue i task che gli vengono sottomessi dagli altri thread,
+ * in modo che ogni operazione sul selettore venga svolta sempre dallo stesso thread.
+ * @author Gionatha Sturba
+ *
+ */
+public class EventLoop extends Thread
+{
+	private Selector selector; //selettore delle connessioni gestite
+	private Queue<Runnable> tasks; //task da eseguire sul thread del selettore
+
+	/**
+	 * Crea un nuovo event loop
+	 * @param name nome del thread
+	 * @throws IOException se non e' possibile aprire il selettore
+	 */
+	public EventLoop(String name) throws IOException
+	{
+		super(name);
+
+		selector = Selector.open();
+		tasks = new ConcurrentLinkedQueue<Runnable>();
+	}
+
+	/**
+	 * Sottomette un task da eseguire sul thread dell'event loop
+	 * @param task task da eseguire
+	 */
+	public void execute(Runnable task)
+	{
+		if(task == null)
+			throw new NullPointerException();
+
+		tasks.add(task);
+
+		//sveglio il selettore,se e' bloccato sulla select
+		selector.wakeup();
+	}
+
+	/**
+	 * Assegna una nuova connessione a questo event loop
+	 * @param session sessione del client da gestire
+	 */
+	public void register(ClientSession session)
+	{
+		execute(() -> {
+			try {
+				session.register(selector);
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+				session.close();
+			}
+		});
+	}
+
+	/**
+	 *
+	 * @return selettore dell'event loop
+	 */
+	Selector getSelector() {
+		return selector;
+	}
+
+	/**
+	 * Ciclo di vita dell'event loop
+	 */
+	public void run()
+	{
+		try
+		{
+			while(!Thread.interrupted())
+			{
+				selector.select();
+
+				//eseguo i task sottomessi dagli altri thread
+				runTasks();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+				while(keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					ClientSession session = (ClientSession) key.attachment();
+
+					try
+					{
+						if(key.isValid() && key.isReadable())
+							session.onReadable();
+
+						if(key.isValid() && key.isWritable())
+							session.onWritable();
+					}
+					//la sessione e' stata staccata dal selettore nel frattempo
+					catch(CancelledKeyException e) {}
+					//errore sulla connessione, la chiudo
+					catch (IOException e) {
+						session.close();
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		finally
+		{
+			try {
+				selector.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Esegue i task in attesa
+	 */
+	private void runTasks()
+	{
+		Runnable task;
+
+		while((task = tasks.poll()) != null)
+		{
+			task.run();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package server.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import server.model.ChatRoomRegistry;
+import server.model.Network;
+import server.thread.NotificationDispatcher;
+import server.thread.PresenceAggregator;
+import server.thread.TranslationService;
+import utils.Config;
+
+/**
+ * Motore di rete del server basato su selettori.
+ * Le connessioni vengono distribuite su un numero fisso di event loop,mentre la logica delle richieste
+ * viene eseguita su un pool fisso di worker: il numero di thread non dipende piu' dal numero di client connessi.
+ * @author Gionatha Sturba
+ *
+ */
+public class NIOServerEngine implements Runnable
+{
+	private Network reteSG; //rete degli utenti di Social Gossip
+	private ChatRoomRegistry chatrooms; //chatroom attive
+	private NotificationDispatcher notifier; //consegna le notifiche RMI agli utenti
+	private PresenceAggregator presence; //notifica agli amici i cambi di stato degli utenti
+	private TranslationService translations; //traduce in background i messaggi tra utenti
+	private Executor mailboxWriters; //scrive sui canali di notifica e ne legge le risposte
+
+	private ServerSocketChannel listenerChannel; //canale in cui e' in ascolto il server
+	private EventLoop[] loops; //event loop che gestiscono le connessioni
+	private ExecutorService workers; //pool che esegue la logica delle richieste
+
+	public NIOServerEngine(int port,Network reteSG,ChatRoomRegistry chatrooms,NotificationDispatcher notifier,PresenceAggregator presence,TranslationService translations,Executor mailboxWriters) throws IOException
+	{
+		if(reteSG == null || chatrooms == null || notifier == null || presence == null || translations == null || mailboxWriters == null)
+			throw new NullPointerException();
+
+		this.reteSG = reteSG;
+		this.chatrooms = chatrooms;
+		this.notifier = notifier;
+		this.presence = presence;
+		this.translations = translations;
+		this.mailboxWriters = mailboxWriters;
+
+		listenerChannel = ServerSocketChannel.open();
+		listenerChannel.bind(new InetSocketAddress(port));
+
+		loops = new EventLoop[Config.NIO_EVENT_LOOPS];
+
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new EventLoop("nio-event-loop-"+i);
+		}
+
+		workers = Executors.newFixedThreadPool(Config.NIO_WORKER_THREADS);
+	}
+
+	/**
+	 * Ciclo di accettazione delle connessioni
+	 */
+	@Override
+	public void run()
+	{
+		try
+		{
+			for (EventLoop loop : loops) {
+				loop.start();
+			}
+
+			int next = 0;
+
+			while(true)
+			{
+				SocketChannel newClient = listenerChannel.accept();
+
+				//assegno il client ad un event loop,a turno
+				EventLoop loop = loops[next];
+				next = (next + 1) % loops.length;
+
+				loop.register(new ClientSession(newClient,loop,workers,reteSG,chatrooms,notifier,presence,translations,mailboxWriters));
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		finally
+		{
+			try {
+				listenerChannel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+			for (EventLoop loop : loops) {
+				loop.interrupt();
+			}
+
+			workers.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package server.test;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import server.model.ChatRoom;
+import server.thread.ChatRoomMessageDispatcher;
+import utils.PortAllocator;
+
+/**
+ * Misura il tempo di creazione delle chatroom al crescere delle chatroom attive,
+ * e la latenza della chiusura,controllando che le porte vengano rilasciate.
+ * Ogni chatroom usa 2 socket: il limite dei file aperti (ulimit -n) deve essere maggiore del doppio delle chatroom.
+ * Esempio: java server.test.BenchmarkChatRoomCreation 5000
+ * @author Gionatha Sturba
+ *
+ */
+public class BenchmarkChatRoomCreation
+{
+	private static final int BUCKET = 1000; //chatroom per ogni misura
+
+	public static void main(String[] args) throws Exception
+	{
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+
+		PortAllocator ports = new PortAllocator();
+		ChatRoomMessageDispatcher dispatcher = new ChatRoomMessageDispatcher(1,ports);
+		InetAddress msAddress = InetAddress.getByName("239.0.0.1");
+		InetAddress messageAddress = InetAddress.getByName("localhost");
+
+		ChatRoom[] rooms = new ChatRoom[size];
+		long start = System.nanoTime();
+		long bucketStart = start;
+
+		for (int i = 0; i < size; i++)
+		{
+			rooms[i] = new ChatRoom("room"+i,msAddress,messageAddress,dispatcher);
+
+			if((i + 1) % BUCKET == 0 || i == size - 1)
+			{
+				long now = System.nanoTime();
+				int created = i % BUCKET + 1;
+
+				System.out.println("chatroom attive: "+(i + 1)+"\tus/creazione: "+(now - bucketStart) / 1000 / created);
+				bucketStart = now;
+			}
+		}
+
+		System.out.println("creazione totale: "+(System.nanoTime() - start) / 1000000+" ms\tporte assegnate: "+ports.leased());
+
+		//la chiusura non e' bloccante: misuro sia il tempo di chiamata che quello di completamento
+		CompletableFuture<?>[] closing = new CompletableFuture<?>[size];
+		long[] completion = new long[size];
+
+		start = System.nanoTime();
+
+		for (int i = 0; i < size; i++)
+		{
+			final int index = i;
+			long closeStart = System.nanoTime();
+
+			closing[i] = rooms[i].close().thenRun(() -> completion[index] = System.nanoTime() - closeStart);
+		}
+
+		long callTime = System.nanoTime() - start;
+
+		CompletableFuture.allOf(closing).join();
+
+		long totalTime = System.nanoTime() - start;
+
+		Arrays.sort(completion);
+
+		System.out.println("chiusura: us/chiamata: "+callTime / 1000 / size+"\tcompletamento mediano: "+completion[size / 2] / 1000+" us"
+				+"\tmassimo: "+completion[size - 1] / 1000+" us\ttotale: "+totalTime / 1000000+" ms");
+		System.out.println("porte assegnate dopo la chiusura: "+ports.leased());
+		System.exit(0);
+	}
+}
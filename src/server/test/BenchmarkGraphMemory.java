@@ -0,0 +1,114 @@
+package server.test;
+
+import java.util.Random;
+
+import server.model.Network;
+import server.model.User;
+import utils.graph.Grafo;
+import utils.graph.GrafoCompatto;
+
+/**
+ * Misura la memoria occupata da ogni arco del grafo delle amicizie,
+ * confrontando Grafo (un oggetto Arco per ogni direzione) con GrafoCompatto (insiemi di id interi).
+ * Con "rete" le amicizie vengono create tramite Network,come fa il server,tra utenti registrati.
+ * Esempio: java -Xmx4g server.test.BenchmarkGraphMemory compatto 10000000
+ * @author Gionatha Sturba
+ *
+ */
+public class BenchmarkGraphMemory
+{
+	private static final int AVERAGE_DEGREE = 20; //amici medi per utente
+
+	public static void main(String[] args) throws Exception
+	{
+		String type = args.length > 0 ? args[0] : "compatto";
+		int edges = args.length > 1 ? Integer.parseInt(args[1]) : 10000000;
+		int vertices = 2 * edges / AVERAGE_DEGREE;
+
+		Random rand = new Random(42);
+		long added = 0;
+		long before, after;
+
+		if(type.equals("grafo"))
+		{
+			Grafo<Integer> grafo = new Grafo<Integer>(false);
+
+			for (int i = 0; i < vertices; i++) {
+				grafo.addVertice(i);
+			}
+
+			before = usedMemory();
+
+			while(added < edges) {
+				if(grafo.addArco(rand.nextInt(vertices),rand.nextInt(vertices)))
+					added++;
+			}
+
+			after = usedMemory();
+			System.out.println("vertici: "+grafo.getVerticiSize());
+		}
+		else if(type.equals("rete"))
+		{
+			Network rete = new Network();
+			User[] utenti = new User[vertices];
+
+			for (int i = 0; i < vertices; i++)
+			{
+				rete.aggiungiUtente("utente"+i,"password","it");
+				utenti[i] = rete.cercaUtente("utente"+i);
+			}
+
+			before = usedMemory();
+
+			while(added < edges)
+			{
+				int a = rand.nextInt(vertices);
+				int b = rand.nextInt(vertices);
+
+				if(a != b && rete.nuovaAmicizia(utenti[a],utenti[b]))
+					added++;
+			}
+
+			after = usedMemory();
+			System.out.println("utenti: "+rete.getUtenti().size());
+		}
+		else
+		{
+			GrafoCompatto<Integer> grafo = new GrafoCompatto<Integer>();
+
+			for (int i = 0; i < vertices; i++) {
+				grafo.addVertice(i);
+			}
+
+			before = usedMemory();
+
+			while(added < edges)
+			{
+				int a = rand.nextInt(vertices);
+				int b = rand.nextInt(vertices);
+
+				if(a != b && grafo.addArco(a,b))
+					added++;
+			}
+
+			after = usedMemory();
+			System.out.println("vertici: "+grafo.getVerticiSize());
+		}
+
+		System.out.println("grafo: "+type+"\tarchi: "+added+"\tmemoria archi: "+(after - before) / (1024 * 1024)+" MB\tbyte/arco: "+(after - before) / added);
+	}
+
+	/**
+	 * @return memoria heap occupata,dopo aver richiesto una garbage collection
+	 */
+	private static long usedMemory()
+	{
+		Runtime rt = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return rt.totalMemory() - rt.freeMemory();
+	}
+}
@@ -0,0 +1,119 @@
+package server.test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import server.model.LocalTranslationEngine;
+import server.model.TranslationEngine;
+import server.model.Translator;
+import server.thread.TranslationService;
+import utils.CircuitBreaker;
+import utils.Config;
+
+/**
+ * Misura le traduzioni al secondo del servizio di traduzione,con e senza lotti,al crescere dei mittenti contemporanei.
+ * Usa il motore locale con un tempo di risposta simulato: ogni mittente attende la traduzione di un messaggio prima di inviare il successivo,
+ * e ogni messaggio e' diverso dai precedenti,quindi nessuna traduzione viene presa dalla cache.
+ * Esempio: java server.test.BenchmarkTranslationBatching 20 2000
+ * @author Gionatha Sturba
+ *
+ */
+public class BenchmarkTranslationBatching
+{
+	private static final int[] SENDERS = {1,10,100};
+
+	public static void main(String[] args) throws Exception
+	{
+		long latency = args.length > 0 ? Long.parseLong(args[0]) : 20; //tempo di risposta simulato del motore
+		long duration = args.length > 1 ? Long.parseLong(args[1]) : 2000; //millisecondi di ogni misura
+
+		CountingEngine engine = new CountingEngine(new LocalTranslationEngine(latency));
+		Translator.setEngine(engine);
+
+		System.out.println("latenza motore: "+latency+" ms\tthread: "+Config.TRANSLATION_THREADS);
+
+		for (int senders : SENDERS)
+		{
+			run("senza lotti",senders,duration,engine,1,0);
+			run("lotti "+Config.TRANSLATION_BATCH_SIZE+"/"+Config.TRANSLATION_BATCH_WINDOW+" ms",senders,duration,engine,
+					Config.TRANSLATION_BATCH_SIZE,Config.TRANSLATION_BATCH_WINDOW);
+		}
+
+		System.exit(0);
+	}
+
+	/**
+	 * Esegue una misura
+	 */
+	private static void run(String name,int senders,long duration,CountingEngine engine,int batchSize,long batchWindow) throws InterruptedException
+	{
+		//timeout ampio: si misura la capacita' del servizio,non la consegna dei messaggi non tradotti
+		TranslationService translations = new TranslationService(Config.TRANSLATION_THREADS,Config.TRANSLATION_QUEUE_CAPACITY,60000,
+				batchSize,batchWindow,new CircuitBreaker(Config.TRANSLATION_BREAKER_FAILURES,Config.TRANSLATION_BREAKER_OPEN_TIME));
+
+		AtomicInteger completed = new AtomicInteger();
+		AtomicLong totalLatency = new AtomicLong();
+		Thread[] threads = new Thread[senders];
+		long end = System.currentTimeMillis() + duration;
+		int callsBefore = engine.calls.get();
+
+		for (int i = 0; i < senders; i++)
+		{
+			String sender = name+"-"+senders+"-"+i;
+
+			threads[i] = new Thread(() -> {
+				int sent = 0;
+
+				while(System.currentTimeMillis() < end)
+				{
+					long start = System.nanoTime();
+
+					translations.translate("messaggio "+sender+" "+sent++,"it","en").join();
+					totalLatency.addAndGet(System.nanoTime() - start);
+					completed.incrementAndGet();
+				}
+			});
+
+			threads[i].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		translations.shutdown();
+
+		int calls = engine.calls.get() - callsBefore;
+		int done = completed.get();
+
+		System.out.println("mittenti: "+senders+"\t"+name+"\ttraduzioni/s: "+done * 1000 / duration
+				+"\tlatenza media: "+(done == 0 ? 0 : totalLatency.get() / done / 1000)+" us"
+				+"\tchiamate al motore: "+calls+"\ttesti/chiamata: "+(calls == 0 ? 0 : done / calls));
+	}
+
+	/**
+	 * Conta le chiamate al motore di traduzione
+	 */
+	private static class CountingEngine implements TranslationEngine
+	{
+		private TranslationEngine engine;
+		private AtomicInteger calls = new AtomicInteger();
+
+		private CountingEngine(TranslationEngine engine) {
+			this.engine = engine;
+		}
+
+		@Override
+		public String translate(String text,String fromLang,String toLang) throws Exception {
+			calls.incrementAndGet();
+			return engine.translate(text,fromLang,toLang);
+		}
+
+		@Override
+		public List<String> translateBatch(List<String> texts,String fromLang,String toLang) throws Exception {
+			calls.incrementAndGet();
+			return engine.translateBatch(texts,fromLang,toLang);
+		}
+	}
+}
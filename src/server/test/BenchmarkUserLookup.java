@@ -0,0 +1,107 @@
+package server.test;
+
+import java.util.Random;
+
+import server.model.Network;
+
+/**
+ * Misura il costo di Network.cercaUtente al crescere degli utenti registrati,
+ * e il throughput delle ricerche eseguite in parallelo da piu' thread.
+ * Esempio: java -Xmx2g server.test.BenchmarkUserLookup
+ * @author Gionatha Sturba
+ *
+ */
+public class BenchmarkUserLookup
+{
+	private static final int[] SIZES = {1000,10000,100000,1000000};
+	private static final int LOOKUPS = 1000000;
+	private static final int PARALLEL_USERS = 100000;
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		for (int size : SIZES)
+		{
+			Network rete = new Network();
+
+			for (int i = 0; i < size; i++) {
+				rete.aggiungiUtente("utente"+i,"password","it");
+			}
+
+			//nickname da cercare,scritti con maiuscole diverse da quelle della registrazione
+			Random rand = new Random(42);
+			String[] nicknames = new String[LOOKUPS];
+
+			for (int i = 0; i < LOOKUPS; i++) {
+				nicknames[i] = "UTENTE"+rand.nextInt(size);
+			}
+
+			//riscaldamento
+			lookup(rete,nicknames);
+
+			long start = System.nanoTime();
+			int found = lookup(rete,nicknames);
+			long elapsed = System.nanoTime() - start;
+
+			System.out.println("utenti: "+size+"\tricerche: "+LOOKUPS+"\ttrovati: "+found+"\tns/ricerca: "+(elapsed / LOOKUPS));
+		}
+
+		parallelLookups();
+	}
+
+	/**
+	 * Misura il throughput delle ricerche al crescere dei thread che le eseguono
+	 */
+	private static void parallelLookups() throws InterruptedException
+	{
+		Network rete = new Network();
+
+		for (int i = 0; i < PARALLEL_USERS; i++) {
+			rete.aggiungiUtente("utente"+i,"password","it");
+		}
+
+		int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2)
+		{
+			Thread[] workers = new Thread[threads];
+
+			for (int t = 0; t < threads; t++)
+			{
+				Random rand = new Random(t);
+				String[] nicknames = new String[LOOKUPS];
+
+				for (int i = 0; i < LOOKUPS; i++) {
+					nicknames[i] = "UTENTE"+rand.nextInt(PARALLEL_USERS);
+				}
+
+				workers[t] = new Thread(() -> lookup(rete,nicknames));
+			}
+
+			long start = System.nanoTime();
+
+			for (Thread worker : workers) {
+				worker.start();
+			}
+
+			for (Thread worker : workers) {
+				worker.join();
+			}
+
+			long elapsed = System.nanoTime() - start;
+
+			System.out.println("thread: "+threads+"\tricerche/s: "+((long) threads * LOOKUPS * 1000000000L / elapsed));
+		}
+	}
+
+	private static int lookup(Network rete,String[] nicknames)
+	{
+		int found = 0;
+
+		for (String nickname : nicknames) {
+			if(rete.cercaUtente(nickname) != null)
+				found++;
+		}
+
+		return found;
+	}
+}
@@ -0,0 +1,119 @@
+package server.test;
+
+import java.util.concurrent.CountDownLatch;
+
+import server.model.TranslationEngine;
+import server.model.Translator;
+import server.thread.TranslationService;
+import utils.CircuitBreaker;
+
+/**
+ * Controlla che l'interruttore del servizio di traduzione non resti mezzo aperto quando la richiesta di prova
+ * non arriva al motore di traduzione: la prova rifiutata perche' la coda e' piena,o scaduta prima della risposta,
+ * deve riaprire l'interruttore,e la prova successiva andata a buon fine deve chiuderlo.
+ * Esempio: java server.test.TestCircuitBreakerProbe
+ * @author Gionatha Sturba
+ *
+ */
+public class TestCircuitBreakerProbe
+{
+	private static final long OPEN_TIME = 100; //millisecondi in cui l'interruttore resta aperto
+	private static final long TIMEOUT = 200; //millisecondi massimi di una traduzione
+
+	private static volatile CountDownLatch blocked = new CountDownLatch(0); //blocca il motore finche' non viene aperto
+	private static volatile long latency = 0; //tempo di risposta del motore
+
+	public static void main(String[] args) throws Exception
+	{
+		Translator.setEngine(new TranslationEngine() {
+			@Override
+			public String translate(String text,String fromLang,String toLang) throws Exception
+			{
+				blocked.await();
+				Thread.sleep(latency);
+				return "["+toLang+"] "+text;
+			}
+		});
+
+		rejectedProbe();
+		expiredProbe();
+
+		System.out.println("richieste di prova: ok");
+	}
+
+	/**
+	 * La richiesta di prova viene rifiutata perche' il thread e la coda del servizio sono occupati
+	 */
+	private static void rejectedProbe() throws Exception
+	{
+		CircuitBreaker breaker = new CircuitBreaker(1,OPEN_TIME);
+		TranslationService service = new TranslationService(1,1,TIMEOUT * 10,breaker);
+
+		//occupo il thread e la coda del servizio
+		blocked = new CountDownLatch(1);
+		service.translate("occupa il thread","it","en");
+		service.translate("occupa la coda","it","en");
+
+		open(breaker);
+
+		//richiesta di prova,rifiutata dal pool
+		String text = service.translate("prova rifiutata","it","en").get();
+		check(text.equals("prova rifiutata"),"prova rifiutata tradotta: "+text);
+		check(breaker.getState() == CircuitBreaker.State.OPEN,"prova rifiutata,interruttore "+breaker.getState());
+
+		blocked.countDown();
+		Thread.sleep(OPEN_TIME * 2);
+
+		//nuova prova,che arriva al motore
+		text = service.translate("prova riuscita","it","en").get();
+		check(text.equals("[en] prova riuscita"),"prova non tradotta: "+text);
+		check(breaker.getState() == CircuitBreaker.State.CLOSED,"prova riuscita,interruttore "+breaker.getState());
+
+		service.shutdown();
+		System.out.println("prova rifiutata: ok");
+	}
+
+	/**
+	 * La richiesta di prova scade prima della risposta del motore
+	 */
+	private static void expiredProbe() throws Exception
+	{
+		CircuitBreaker breaker = new CircuitBreaker(1,OPEN_TIME);
+		TranslationService service = new TranslationService(1,1,TIMEOUT,breaker);
+
+		open(breaker);
+
+		latency = TIMEOUT * 2;
+		String text = service.translate("prova lenta","it","en").get();
+		check(text.equals("prova lenta"),"prova scaduta tradotta: "+text);
+		check(breaker.getState() == CircuitBreaker.State.OPEN,"prova scaduta,interruttore "+breaker.getState());
+
+		//attendo la fine della traduzione lenta e la chiusura del periodo di apertura
+		latency = 0;
+		Thread.sleep(TIMEOUT * 2);
+
+		text = service.translate("prova veloce","it","en").get();
+		check(text.equals("[en] prova veloce"),"prova non tradotta: "+text);
+		check(breaker.getState() == CircuitBreaker.State.CLOSED,"prova riuscita,interruttore "+breaker.getState());
+
+		service.shutdown();
+		System.out.println("prova scaduta: ok");
+	}
+
+	/**
+	 * Apre l'interruttore e attende che sia possibile una richiesta di prova
+	 */
+	private static void open(CircuitBreaker breaker) throws InterruptedException
+	{
+		breaker.recordFailure();
+		check(breaker.getState() == CircuitBreaker.State.OPEN,"interruttore non aperto");
+
+		Thread.sleep(OPEN_TIME * 2);
+	}
+
+	private static void check(boolean condition,String message)
+	{
+		if(!condition)
+			throw new AssertionError(message);
+	}
+}
@@ -0,0 +1,67 @@
+package server.test;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import server.SocialGossipServer;
+
+/**
+ * Test di carico: apre molte connessioni inattive verso il server e riporta memoria e thread utilizzati.
+ * Esempio: ulimit -n 200000; java -Xmx256m server.test.TestIdleConnections VIRTUAL_THREADS 50000
+ * @author Gionatha Sturba
+ *
+ */
+public class TestIdleConnections
+{
+	private static final int PORT = 5100;
+	private static final int CONNECTIONS_PER_ADDRESS = 20000; //limite dovuto alle porte effimere disponibili
+
+	public static void main(String[] args) throws Exception
+	{
+		SocialGossipServer.Engine engine = args.length > 0 ? SocialGossipServer.Engine.valueOf(args[0].toUpperCase()) : SocialGossipServer.Engine.VIRTUAL_THREADS;
+		int connections = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+
+		//avvio il server
+		Thread server = new Thread(new SocialGossipServer(PORT,engine));
+		server.setDaemon(true);
+		server.start();
+
+		Thread.sleep(1000);
+
+		List<Socket> clients = new ArrayList<Socket>(connections);
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < connections; i++)
+		{
+			Socket client = new Socket();
+
+			//uso indirizzi di loopback diversi,per non esaurire le porte effimere
+			client.bind(new InetSocketAddress("127.0.0."+(1 + i / CONNECTIONS_PER_ADDRESS),0));
+			client.connect(new InetSocketAddress("127.0.0.1",PORT));
+			clients.add(client);
+		}
+
+		long elapsed = System.currentTimeMillis() - start;
+
+		//lascio al server il tempo di prendere in carico tutte le connessioni
+		Thread.sleep(5000);
+		System.gc();
+
+		Runtime rt = Runtime.getRuntime();
+		long usedHeap = (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+
+		System.out.println("Motore: "+engine);
+		System.out.println("Connessioni aperte: "+clients.size()+" in "+elapsed+" ms");
+		System.out.println("Heap usato: "+usedHeap+" MB (max "+rt.maxMemory() / (1024 * 1024)+" MB)");
+		System.out.println("Thread di piattaforma attivi: "+ManagementFactory.getThreadMXBean().getThreadCount());
+
+		for (Socket client : clients) {
+			client.close();
+		}
+
+		System.exit(0);
+	}
+}
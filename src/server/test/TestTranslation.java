@@ -21,8 +21,18 @@ public class TestTranslation
 {	
 	public static void main(String[] args) throws Exception 
 	{
+		//motore di traduzione da provare,es. LOCAL senza rete
+		if(args.length > 0)
+			Translator.setEngine(Translator.createEngine(Translator.Engine.valueOf(args[0].toUpperCase())));
+		
 		String text = Translator.translate("ciao come stai? ","it","en");
 		
 		System.out.println(text);
+		
+		//la seconda traduzione dello stesso testo viene presa dalla cache
+		text = Translator.translate("ciao come stai? ","it","en");
+		
+		System.out.println(text);
+		System.out.println(Translator.getCache());
 	}
 }
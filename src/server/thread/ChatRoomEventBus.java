@@ -0,0 +1,143 @@
+package server.thread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import server.model.ChatRoom;
+import server.model.User;
+
+/**
+ * Notifica ai client gli eventi delle chatroom (creazione,nuovo iscritto,chiusura).
+ * Gli eventi vengono inviati soltanto agli utenti che hanno registrato un canale RMI,tramite il NotificationDispatcher:
+ * creazione e chiusura a tutti,i nuovi iscritti solo agli iscritti della chatroom.
+ * la pubblicazione di un evento non esegue chiamate RMI e non scorre tutti gli utenti della rete.
+ * Ogni evento contiene solo le informazioni cambiate,non l'intera chatroom con i suoi iscritti.
+ * @author Gionatha Sturba
+ *
+ */
+public class ChatRoomEventBus
+{
+	private NotificationDispatcher notifier; //consegna le notifiche RMI
+	private Set<User> listeners; //utenti con un canale RMI attivo
+
+	/**
+	 * Crea un nuovo bus degli eventi delle chatroom
+	 * @param notifier dispatcher che consegna le notifiche
+	 */
+	public ChatRoomEventBus(NotificationDispatcher notifier)
+	{
+		if(notifier == null)
+			throw new NullPointerException();
+
+		this.notifier = notifier;
+		this.listeners = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Iscrive un utente agli eventi delle chatroom
+	 * @param user utente che ha registrato il suo canale RMI
+	 */
+	public void addListener(User user)
+	{
+		if(user == null)
+			throw new NullPointerException();
+
+		listeners.add(user);
+	}
+
+	/**
+	 * Disiscrive un utente dagli eventi delle chatroom
+	 * @param user utente che ha rimosso il suo canale RMI
+	 */
+	public void removeListener(User user)
+	{
+		if(user == null)
+			throw new NullPointerException();
+
+		listeners.remove(user);
+	}
+
+	/**
+	 * Notifica la creazione di una chatroom
+	 * @param chatroom chatroom creata
+	 */
+	public void chatRoomCreated(ChatRoom chatroom)
+	{
+		//la copia dipende dalla lingua dell'utente,ne creo una sola per lingua
+		Map<String,ChatRoom> snapshots = new HashMap<String,ChatRoom>();
+
+		publish(listener -> {
+			ChatRoom snapshot = snapshots.computeIfAbsent(listener.getLingua(),lang -> chatroom.snapshotFor(listener));
+
+			return channel -> channel.newChatRoom(snapshot);
+		});
+	}
+
+	/**
+	 * Notifica l'iscrizione di un utente agli iscritti di una chatroom
+	 * @param chatroom chatroom a cui si e' iscritto l'utente
+	 * @param subscriber nuovo iscritto
+	 */
+	public void subscriberJoined(ChatRoom chatroom,User subscriber)
+	{
+		String name = chatroom.getName();
+		User sub = new User(subscriber.getNickname(),subscriber.isOnline());
+		List<User> subscribers;
+
+		//copio gli iscritti,la lista puo' cambiare durante l'invio
+		synchronized (chatroom) {
+			subscribers = new ArrayList<User>(chatroom.getSubscribers());
+		}
+
+		publish(subscribers,listener -> channel -> channel.newChatRoomSubscriber(name,sub));
+	}
+
+	/**
+	 * Notifica la chiusura di una chatroom
+	 * @param chatroom chatroom chiusa
+	 */
+	public void chatRoomClosed(ChatRoom chatroom)
+	{
+		//per rimuovere la chatroom basta il nome
+		ChatRoom closed = new ChatRoom(chatroom.getName());
+
+		publish(listener -> channel -> channel.removeChatRoom(closed));
+	}
+
+	/**
+	 * Accoda l'evento per tutti gli utenti iscritti al bus
+	 * @param event crea la notifica dell'evento per un utente
+	 */
+	private void publish(Function<User,NotificationDispatcher.Notification> event) {
+		publish(listeners,event);
+	}
+
+	/**
+	 * Accoda l'evento per alcuni utenti,se sono iscritti al bus
+	 * @param recipients utenti interessati all'evento
+	 * @param event crea la notifica dell'evento per un utente
+	 */
+	private void publish(Collection<User> recipients,Function<User,NotificationDispatcher.Notification> event)
+	{
+		for (User listener : recipients)
+		{
+			//utente senza canale RMI registrato
+			if(!listeners.contains(listener))
+				continue;
+
+			//canale RMI rimosso o non piu' raggiungibile
+			if(listener.getRMIchannel() == null) {
+				listeners.remove(listener);
+				continue;
+			}
+
+			notifier.notify(listener,event.apply(listener));
+		}
+	}
+}
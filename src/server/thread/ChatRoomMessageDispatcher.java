@@ -0,0 +1,311 @@
+package server.thread;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utils.PortAllocator;
+
+/**
+ * Inoltra i messaggi di tutte le chatroom sui rispettivi indirizzi multicast.
+ * Ogni chatroom ha un DatagramChannel in ascolto su una propria porta,su cui i client inviano i messaggi:
+ * la porta di destinazione del pacchetto identifica la chatroom.
+ * I canali sono distribuiti su un numero fisso di thread,ognuno con un proprio Selector,
+ * quindi il numero di thread non dipende dal numero di chatroom attive.
+ * @author Gionatha Sturba
+ *
+ */
+public class ChatRoomMessageDispatcher
+{
+	/**
+	 * Gestore dei messaggi di una chatroom,usato al posto dell'inoltro diretto sull'indirizzo multicast
+	 */
+	public interface MessageHandler
+	{
+		/**
+		 * Gestisce un messaggio ricevuto.Viene eseguito sul thread del dispatcher,quindi non deve bloccarsi.
+		 * @param message contenuto del pacchetto ricevuto
+		 */
+		public void handle(byte[] message);
+	}
+
+	private static final int BUFFER_LEN = 1024; //dimensione massima di un messaggio
+	private static final int MAX_PACKETS_PER_ROUND = 16; //pacchetti inoltrati per chatroom,prima di passare alle altre
+
+	private Worker[] workers; //thread che inoltrano i messaggi
+	private AtomicInteger next; //prossimo thread a cui assegnare una chatroom
+	private ConcurrentHashMap<Integer,Room> rooms; //chatroom servite,per porta di ascolto
+	private PortAllocator ports; //assegna le porte alle chatroom
+
+	/**
+	 * Crea e avvia il dispatcher dei messaggi delle chatroom
+	 * @param threads numero di thread che inoltrano i messaggi
+	 * @param ports allocatore delle porte delle chatroom
+	 * @throws IOException se c'e' un errore nell'apertura dei selettori
+	 */
+	public ChatRoomMessageDispatcher(int threads,PortAllocator ports) throws IOException
+	{
+		if(ports == null)
+			throw new NullPointerException();
+
+		if(threads <= 0)
+			throw new IllegalArgumentException();
+
+		this.ports = ports;
+
+		workers = new Worker[threads];
+		next = new AtomicInteger(0);
+		rooms = new ConcurrentHashMap<Integer,Room>();
+
+		for (int i = 0; i < workers.length; i++)
+		{
+			workers[i] = new Worker("chatroom-dispatcher-"+i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Apre il canale su cui ricevere i messaggi di una chatroom,che vengono inoltrati cosi' come sono sull'indirizzo multicast
+	 * @param msAddress indirizzo multicast della chatroom
+	 * @param msPort porta multicast della chatroom
+	 * @return porta su cui i client devono inviare i messaggi della chatroom
+	 * @throws IOException se non e' possibile aprire il canale
+	 */
+	public int register(InetAddress msAddress,int msPort) throws IOException
+	{
+		if(msAddress == null)
+			throw new NullPointerException();
+
+		return register(new InetSocketAddress(msAddress,msPort));
+	}
+
+	/**
+	 * Apre il canale su cui ricevere i messaggi di una chatroom,che vengono passati ad un gestore
+	 * @param handler gestore dei messaggi della chatroom
+	 * @return porta su cui i client devono inviare i messaggi della chatroom
+	 * @throws IOException se non e' possibile aprire il canale
+	 */
+	public int register(MessageHandler handler) throws IOException
+	{
+		if(handler == null)
+			throw new NullPointerException();
+
+		return register((Object) handler);
+	}
+
+	/**
+	 * Apre il canale di una chatroom e lo assegna ad un thread
+	 * @param target indirizzo multicast o gestore dei messaggi ricevuti sul canale
+	 */
+	private int register(Object target) throws IOException
+	{
+		DatagramChannel channel = ports.openDatagramChannel();
+		int port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+
+		try {
+			channel.configureBlocking(false);
+		}
+		catch (IOException e) {
+			channel.close();
+			ports.release(port);
+			throw e;
+		}
+
+		//assegno la chatroom ad un thread,a turno
+		Worker worker = workers[Math.floorMod(next.getAndIncrement(),workers.length)];
+
+		rooms.put(port,new Room(channel,worker));
+
+		worker.execute(() -> {
+			try {
+				channel.register(worker.selector,SelectionKey.OP_READ,target);
+			}
+			//chatroom chiusa prima della registrazione
+			catch (ClosedChannelException e) {}
+		});
+
+		return port;
+	}
+
+	/**
+	 * Chiude il canale dei messaggi di una chatroom.La chiusura avviene in background,sul thread che serve la chatroom.
+	 * @param port porta su cui e' in ascolto il canale della chatroom
+	 * @return future completato quando il canale e' stato chiuso e la sua porta rilasciata
+	 */
+	public CompletableFuture<Void> unregister(int port)
+	{
+		Room room = rooms.remove(port);
+
+		//canale gia' chiuso
+		if(room == null)
+			return CompletableFuture.completedFuture(null);
+
+		CompletableFuture<Void> closed = new CompletableFuture<Void>();
+
+		room.worker.execute(() -> {
+			room.worker.close(room.channel,port);
+			closed.complete(null);
+		});
+
+		return closed;
+	}
+
+	/**
+	 * @return allocatore delle porte delle chatroom
+	 */
+	public PortAllocator getPortAllocator() {
+		return ports;
+	}
+
+	/**
+	 * @return numero di chatroom servite dal dispatcher
+	 */
+	public int size() {
+		return rooms.size();
+	}
+
+	/**
+	 * Canale di una chatroom e thread che lo serve
+	 */
+	private static class Room
+	{
+		private DatagramChannel channel;
+		private Worker worker;
+
+		private Room(DatagramChannel channel,Worker worker)
+		{
+			this.channel = channel;
+			this.worker = worker;
+		}
+	}
+
+	/**
+	 * Thread che inoltra i messaggi delle chatroom assegnate
+	 */
+	private class Worker extends Thread
+	{
+		private Selector selector;
+		private DatagramChannel sender; //canale da cui vengono inviati i messaggi sugli indirizzi multicast
+		private Queue<Runnable> tasks; //operazioni da eseguire sul thread del selettore
+		private ByteBuffer buffer; //buffer di ricezione,riusato per tutti i pacchetti
+
+		private Worker(String name) throws IOException
+		{
+			super(name);
+
+			selector = Selector.open();
+			sender = DatagramChannel.open();
+			tasks = new ConcurrentLinkedQueue<Runnable>();
+			buffer = ByteBuffer.allocateDirect(BUFFER_LEN);
+		}
+
+		/**
+		 * Esegue un'operazione sul thread del selettore
+		 */
+		private void execute(Runnable task)
+		{
+			tasks.add(task);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run()
+		{
+			while(!Thread.interrupted())
+			{
+				try
+				{
+					selector.select();
+
+					Runnable task;
+					while((task = tasks.poll()) != null) {
+						task.run();
+					}
+
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+					while(it.hasNext())
+					{
+						SelectionKey key = it.next();
+						it.remove();
+
+						if(key.isValid())
+							forward(key);
+					}
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		/**
+		 * Chiude il canale di una chatroom e ne rilascia la porta
+		 */
+		private void close(DatagramChannel channel,int port)
+		{
+			try {
+				channel.close();
+
+				//il socket viene chiuso davvero quando il selettore rimuove la chiave
+				selector.selectNow();
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+
+			//la porta puo' essere riassegnata ad un'altra chatroom
+			ports.release(port);
+		}
+
+		/**
+		 * Inoltra sull'indirizzo multicast,o passa al gestore della chatroom,i messaggi ricevuti sul canale di una chatroom
+		 */
+		private void forward(SelectionKey key)
+		{
+			DatagramChannel channel = (DatagramChannel) key.channel();
+			Object target = key.attachment();
+
+			try
+			{
+				for (int i = 0; i < MAX_PACKETS_PER_ROUND; i++)
+				{
+					buffer.clear();
+
+					//nessun altro pacchetto in attesa
+					if(channel.receive(buffer) == null)
+						break;
+
+					buffer.flip();
+
+					if(target instanceof MessageHandler)
+					{
+						byte[] message = new byte[buffer.remaining()];
+						buffer.get(message);
+
+						((MessageHandler) target).handle(message);
+					}
+					else
+						sender.send(buffer,(SocketAddress) target);
+				}
+			}
+			//un errore nel gestore di una chatroom non deve fermare il thread
+			catch (IOException | RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
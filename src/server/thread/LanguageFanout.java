@@ -0,0 +1,195 @@
+package server.thread;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import server.model.ChatRoom;
+import utils.PortAllocator;
+
+/**
+ * Traduce i messaggi di una chatroom nelle lingue dei suoi iscritti.
+ * Gli iscritti sono raggruppati per lingua: ogni lingua ha una propria porta sull'indirizzo multicast della chatroom,
+ * e ogni messaggio viene tradotto una sola volta per lingua (passando dalla cache delle traduzioni) e inviato sulla porta della lingua.
+ * Il costo di un messaggio dipende quindi dal numero di lingue,e non dal numero di iscritti.
+ * I messaggi di ogni lingua vengono inviati nell'ordine in cui sono arrivati,anche se le traduzioni terminano in ordine diverso.
+ * @author Gionatha Sturba
+ *
+ */
+public class LanguageFanout implements ChatRoomMessageDispatcher.MessageHandler
+{
+	private static final String SENDER_START = "["; //i messaggi dei client hanno la forma "[nickname]: testo\n"
+	private static final String SENDER_END = "]: ";
+	private static final String MESSAGE_END = "\n";
+
+	private ChatRoom chatroom; //chatroom servita
+	private InetAddress msAddress; //indirizzo multicast della chatroom
+	private PortAllocator ports; //assegna le porte delle lingue
+	private TranslationService translations; //traduce i messaggi
+	private ConcurrentHashMap<String,LanguageGroup> groups; //gruppi degli iscritti,per lingua
+	private boolean closed = false;
+
+	/**
+	 * Crea il traduttore dei messaggi di una chatroom
+	 * @param chatroom chatroom servita
+	 * @param msAddress indirizzo multicast della chatroom
+	 * @param ports allocatore delle porte delle lingue
+	 * @param translations servizio che traduce i messaggi
+	 */
+	public LanguageFanout(ChatRoom chatroom,InetAddress msAddress,PortAllocator ports,TranslationService translations)
+	{
+		if(chatroom == null || msAddress == null || ports == null || translations == null)
+			throw new NullPointerException();
+
+		this.chatroom = chatroom;
+		this.msAddress = msAddress;
+		this.ports = ports;
+		this.translations = translations;
+		this.groups = new ConcurrentHashMap<String,LanguageGroup>();
+	}
+
+	/**
+	 * Restituisce la porta su cui vengono inviati i messaggi in una lingua,assegnandola se non esiste ancora
+	 * @param lang codice della lingua
+	 * @return porta multicast della lingua
+	 * @throws IOException se non ci sono porte disponibili,o la chatroom e' stata chiusa
+	 */
+	public synchronized int getPort(String lang) throws IOException
+	{
+		if(lang == null)
+			throw new NullPointerException();
+
+		if(closed)
+			throw new IOException("Chatroom chiusa");
+
+		LanguageGroup group = groups.get(lang);
+
+		if(group == null) {
+			group = new LanguageGroup(ports.openMulticastSocket());
+			groups.put(lang,group);
+		}
+
+		return group.port;
+	}
+
+	@Override
+	public void handle(byte[] message)
+	{
+		String text = new String(message,StandardCharsets.UTF_8);
+
+		//separo il mittente e il testo del messaggio
+		String prefix = "";
+		String body = text;
+		String suffix = "";
+		String fromLang = null;
+
+		int senderEnd = text.indexOf(SENDER_END);
+
+		if(text.startsWith(SENDER_START) && senderEnd > 0)
+		{
+			prefix = text.substring(0,senderEnd + SENDER_END.length());
+			body = text.substring(prefix.length());
+			fromLang = chatroom.getSubscriberLanguage(text.substring(SENDER_START.length(),senderEnd));
+
+			if(body.endsWith(MESSAGE_END)) {
+				suffix = MESSAGE_END;
+				body = body.substring(0,body.length() - MESSAGE_END.length());
+			}
+		}
+
+		Set<String> languages = chatroom.getSubscriberLanguages();
+
+		for (String lang : languages)
+		{
+			LanguageGroup group = groups.get(lang);
+
+			//nessun iscritto ha ricevuto la porta di questa lingua
+			if(group == null)
+				continue;
+
+			//mittente sconosciuto o testo vuoto,inoltro il messaggio originale
+			if(fromLang == null || body.isEmpty()) {
+				group.send(CompletableFuture.completedFuture(message));
+				continue;
+			}
+
+			String head = prefix;
+			String tail = suffix;
+
+			//una sola traduzione per lingua
+			group.send(translations.translate(body,fromLang,lang).thenApply(translation -> (head+translation+tail).getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	/**
+	 * Chiude il traduttore: invia un ultimo messaggio su tutte le porte delle lingue,dopo i messaggi ancora in traduzione,
+	 * poi chiude i socket delle lingue e ne rilascia le porte.
+	 * @param closeMessage messaggio di chiusura da inviare agli iscritti
+	 * @return future completato quando tutte le porte delle lingue sono state rilasciate
+	 */
+	public synchronized CompletableFuture<Void> close(byte[] closeMessage)
+	{
+		if(closeMessage == null)
+			throw new NullPointerException();
+
+		closed = true;
+
+		CompletableFuture<?>[] closing = new CompletableFuture<?>[groups.size()];
+		int i = 0;
+
+		for (LanguageGroup group : groups.values())
+		{
+			closing[i++] = group.send(CompletableFuture.completedFuture(closeMessage)).thenRun(() -> {
+				group.socket.close();
+				ports.release(group.port);
+			});
+		}
+
+		groups.clear();
+
+		return CompletableFuture.allOf(closing);
+	}
+
+	/**
+	 * Iscritti che parlano la stessa lingua,e socket da cui vengono inviati i loro messaggi
+	 */
+	private class LanguageGroup
+	{
+		private MulticastSocket socket;
+		private int port;
+		private CompletableFuture<Void> lastSend; //ultimo invio in coda
+
+		private LanguageGroup(MulticastSocket socket)
+		{
+			this.socket = socket;
+			this.port = socket.getLocalPort();
+			this.lastSend = CompletableFuture.completedFuture(null);
+		}
+
+		/**
+		 * Accoda l'invio di un messaggio,dopo quelli gia' in coda
+		 * @param message messaggio da inviare,pronto quando il future viene completato
+		 * @return future completato quando il messaggio e' stato inviato
+		 */
+		private synchronized CompletableFuture<Void> send(CompletableFuture<byte[]> message)
+		{
+			//un errore in un invio non deve bloccare quelli successivi
+			lastSend = lastSend.thenCombine(message,(previous,data) -> data)
+					.thenAccept(data -> {
+						try {
+							socket.send(new DatagramPacket(data,data.length,msAddress,port));
+						}
+						//socket chiuso alla chiusura della chatroom
+						catch (IOException e) {}
+					})
+					.exceptionally(e -> null);
+
+			return lastSend;
+		}
+	}
+}
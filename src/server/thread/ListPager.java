@@ -0,0 +1,106 @@
+package server.thread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import communication.TCPMessages.response.success.ListPage;
+import server.model.ChatRoom;
+import server.model.ChatRoomRegistry;
+import server.model.User;
+
+/**
+ * Divide la lista degli amici e delle chatroom da inviare al login in pagine di dimensione limitata.
+ * Le pagine vengono create solo quando richieste,copiando dal modello solo gli elementi della pagina:
+ * la memoria occupata e' proporzionale alla pagina,non al numero di chatroom e di iscritti.
+ * In una pagina ogni amico,ogni chatroom e ogni iscritto di una chatroom occupa un elemento;
+ * gli iscritti di una chatroom che non entrano nella pagina continuano nella successiva.
+ * Le chatroom create o chiuse durante l'invio possono comparire o meno nelle pagine.
+ * @author Gionatha Sturba
+ *
+ */
+public class ListPager implements Iterator<ListPage>
+{
+	public static final int MIN_PAGE_SIZE = 2; //una chatroom e almeno un suo iscritto
+
+	private Iterator<User> friends; //amici non ancora inviati
+	private Iterator<ChatRoom> rooms; //chatroom non ancora inviate
+	private User viewer; //utente che riceve le pagine
+	private int pageSize; //elementi massimi di una pagina
+
+	private ChatRoom current = null; //chatroom di cui si stanno inviando gli iscritti
+	private int offset = 0; //primo iscritto di current non ancora inviato
+	private boolean done = false; //true se e' stata creata l'ultima pagina
+
+	/**
+	 * @param amici amici dell'utente,null se non vanno inviati
+	 * @param chatrooms chatroom attive
+	 * @param viewer utente che riceve le pagine
+	 * @param pageSize elementi massimi di una pagina
+	 */
+	public ListPager(List<User> amici,ChatRoomRegistry chatrooms,User viewer,int pageSize)
+	{
+		if(chatrooms == null || viewer == null)
+			throw new NullPointerException();
+
+		if(pageSize <= 0)
+			throw new IllegalArgumentException();
+
+		this.friends = amici == null ? Collections.<User>emptyIterator() : amici.iterator();
+		this.rooms = chatrooms.iterator();
+		this.viewer = viewer;
+		this.pageSize = Math.max(pageSize,MIN_PAGE_SIZE);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !done;
+	}
+
+	@Override
+	public ListPage next()
+	{
+		if(done)
+			throw new NoSuchElementException();
+
+		int budget = pageSize;
+		List<User> amici = new ArrayList<User>();
+		List<ChatRoom> chatrooms = new ArrayList<ChatRoom>();
+
+		while(budget > 0 && friends.hasNext()) {
+			amici.add(friends.next());
+			budget--;
+		}
+
+		//serve spazio per la chatroom e per almeno un iscritto
+		while(budget >= MIN_PAGE_SIZE)
+		{
+			if(current == null)
+			{
+				if(!rooms.hasNext())
+					break;
+
+				current = rooms.next();
+				offset = 0;
+			}
+
+			int requested = budget - 1;
+			ChatRoom page = current.snapshotFor(viewer,offset,requested);
+			int copied = page.getSubscribers().size();
+
+			chatrooms.add(page);
+			budget -= 1 + copied;
+			offset += copied;
+
+			//iscritti della chatroom finiti
+			if(copied < requested)
+				current = null;
+		}
+
+		done = !friends.hasNext() && current == null && !rooms.hasNext();
+
+		return new ListPage(amici,chatrooms,done);
+	}
+}
@@ -0,0 +1,213 @@
+package server.thread;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import communication.RMI.RMIClientNotifyEvent;
+import server.model.User;
+
+/**
+ * Consegna in background le notifiche RMI agli utenti.
+ * Ogni destinatario ha una coda limitata,svuotata da un worker alla volta in modo da mantenere l'ordine delle notifiche:
+ * un client lento o irraggiungibile rallenta soltanto la propria coda,e non il thread che ha generato l'evento.
+ * Una notifica non consegnata viene ritentata con attese crescenti;solo dopo il numero massimo di tentativi
+ * il canale RMI del destinatario viene considerato perso.
+ * @author Gionatha Sturba
+ *
+ */
+public class NotificationDispatcher
+{
+	/**
+	 * Notifica da consegnare ad un utente,tramite il suo canale RMI
+	 */
+	public interface Notification
+	{
+		/**
+		 * Consegna la notifica
+		 * @param channel canale RMI del destinatario
+		 * @throws RemoteException se c'e' un errore nel protocollo RMI
+		 */
+		public void send(RMIClientNotifyEvent channel) throws RemoteException;
+	}
+
+	private ConcurrentHashMap<User,RecipientQueue> queues; //code delle notifiche,per destinatario
+	private ScheduledExecutorService workers; //thread che consegnano le notifiche e ritentano quelle fallite
+	private int queueCapacity; //numero massimo di notifiche in attesa per destinatario
+	private int maxRetries; //tentativi ulteriori per una notifica non consegnata
+	private long retryDelay; //millisecondi di attesa prima del primo tentativo ulteriore,raddoppiati ad ogni fallimento
+
+	/**
+	 * Crea un nuovo dispatcher di notifiche
+	 * @param workers numero di thread che consegnano le notifiche
+	 * @param queueCapacity numero massimo di notifiche in attesa per ogni destinatario
+	 * @param maxRetries tentativi ulteriori per una notifica non consegnata,prima di scartare il canale RMI del destinatario
+	 * @param retryDelay millisecondi di attesa prima del primo tentativo ulteriore,raddoppiati ad ogni fallimento
+	 */
+	public NotificationDispatcher(int workers,int queueCapacity,int maxRetries,long retryDelay)
+	{
+		if(workers <= 0 || queueCapacity <= 0 || maxRetries < 0 || retryDelay <= 0)
+			throw new IllegalArgumentException();
+
+		this.queues = new ConcurrentHashMap<User,RecipientQueue>();
+		this.workers = Executors.newScheduledThreadPool(workers);
+		this.queueCapacity = queueCapacity;
+		this.maxRetries = maxRetries;
+		this.retryDelay = retryDelay;
+	}
+
+	/**
+	 * Accoda una notifica per un utente.Il metodo ritorna subito,la notifica viene consegnata in background.
+	 * Se la coda del destinatario e' piena,viene scartata la notifica piu' vecchia.
+	 * @param recipient utente destinatario
+	 * @param notification notifica da consegnare
+	 */
+	public void notify(User recipient,Notification notification)
+	{
+		if(recipient == null || notification == null)
+			throw new NullPointerException();
+
+		//utente senza canale RMI,non c'e' niente da consegnare
+		if(recipient.getRMIchannel() == null)
+			return;
+
+		RecipientQueue queue = queues.computeIfAbsent(recipient,key -> new RecipientQueue(key));
+
+		//coda piena,scarto la notifica piu' vecchia
+		while(!queue.notifications.offer(notification))
+		{
+			if(queue.notifications.poll() != null)
+				System.out.println("Coda notifiche piena per "+recipient.getNickname()+",notifica scartata");
+		}
+
+		queue.schedule();
+	}
+
+	/**
+	 * Scarta la coda delle notifiche di un utente,ad esempio al logout
+	 * @param recipient utente destinatario
+	 */
+	public void remove(User recipient)
+	{
+		if(recipient == null)
+			throw new NullPointerException();
+
+		RecipientQueue queue = queues.remove(recipient);
+
+		if(queue != null)
+			queue.notifications.clear();
+	}
+
+	/**
+	 * Termina i thread che consegnano le notifiche
+	 */
+	public void shutdown()
+	{
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Coda delle notifiche di un destinatario
+	 */
+	private class RecipientQueue
+	{
+		private User recipient;
+		private ArrayBlockingQueue<Notification> notifications;
+		private AtomicBoolean scheduled; //true se un worker sta consegnando le notifiche della coda
+		private Notification failed = null; //notifica non consegnata,da ritentare prima delle altre
+		private int failures = 0; //tentativi falliti consecutivi della notifica non consegnata
+
+		private RecipientQueue(User recipient)
+		{
+			this.recipient = recipient;
+			this.notifications = new ArrayBlockingQueue<Notification>(queueCapacity);
+			this.scheduled = new AtomicBoolean(false);
+		}
+
+		/**
+		 * Fa consegnare le notifiche ad un worker,se non c'e' gia' un worker che lo sta facendo
+		 */
+		private void schedule()
+		{
+			if(!notifications.isEmpty() && scheduled.compareAndSet(false,true))
+				workers.execute(this::deliver);
+		}
+
+		/**
+		 * Consegna le notifiche in attesa,nell'ordine in cui sono state accodate.
+		 * I campi failed e failures sono usati solo dal worker che consegna le notifiche della coda.
+		 */
+		private void deliver()
+		{
+			Notification notification;
+
+			while((notification = failed != null ? failed : notifications.poll()) != null)
+			{
+				RMIClientNotifyEvent channel = recipient.getRMIchannel();
+
+				//il destinatario non ha piu' un canale RMI,la coda non serve piu'
+				if(channel == null) {
+					discard();
+					break;
+				}
+
+				try
+				{
+					notification.send(channel);
+
+					failed = null;
+					failures = 0;
+				}
+				//client irraggiungibile o troppo lento (timeout RMI)
+				catch (RemoteException e)
+				{
+					System.out.println("Notifica a "+recipient.getNickname()+" fallita: "+e.getMessage());
+
+					//ritento piu' tardi la stessa notifica,tenendo occupata la coda per mantenere l'ordine
+					if(failures < maxRetries)
+					{
+						failed = notification;
+						workers.schedule(this::deliver,retryDelay << failures,TimeUnit.MILLISECONDS);
+						failures++;
+						return;
+					}
+
+					//tentativi esauriti,smetto di notificarlo
+					synchronized (recipient) {
+						if(recipient.getRMIchannel() == channel)
+							recipient.setRMIchannel(null);
+					}
+
+					discard();
+					break;
+				}
+				catch (RuntimeException e)
+				{
+					failed = null;
+					failures = 0;
+					e.printStackTrace();
+				}
+			}
+
+			scheduled.set(false);
+
+			//potrebbero essere arrivate nuove notifiche nel frattempo
+			schedule();
+		}
+
+		/**
+		 * Scarta le notifiche in attesa e rimuove la coda dal dispatcher
+		 */
+		private void discard()
+		{
+			failed = null;
+			failures = 0;
+			notifications.clear();
+			queues.remove(recipient,this);
+		}
+	}
+}
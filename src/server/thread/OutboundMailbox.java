@@ -0,0 +1,430 @@
+package server.thread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import communication.TCPMessages.Message;
+import communication.TCPMessages.MessageAnalyzer;
+import communication.TCPMessages.wire.WireFormat;
+
+/**
+ * Coda dei messaggi in uscita verso il canale di notifica di un utente.
+ * Chi invia un messaggio lo accoda e torna subito: il canale viene usato solo da un writer,eseguito su un executor,
+ * che scrive in ordine i messaggi pronti e li invia con un solo flush.Un destinatario lento rallenta quindi solo la propria coda,
+ * e non i thread dei mittenti.
+ * La coda ha una capacita' massima: quando e' piena si applica la politica scelta alla creazione.
+ * I messaggi a cui il destinatario deve rispondere (le offerte di file) hanno un id,riportato nella risposta:
+ * le risposte vengono lette da un reader separato,quindi mentre si attende una risposta la consegna degli altri messaggi continua.
+ * Il reader attende l'inizio di una risposta per un tempo limitato,e termina quando non ci sono piu' risposte attese.
+ * @author Gionatha Sturba
+ *
+ */
+public class OutboundMailbox
+{
+	/**
+	 * Politiche applicate quando la coda e' piena
+	 */
+	public enum OverflowPolicy
+	{
+		DROP, //il nuovo messaggio viene scartato,il mittente non viene avvisato
+		DISCONNECT, //il canale di notifica del destinatario viene chiuso
+		REJECT //il nuovo messaggio viene rifiutato,il mittente riceve un errore
+	};
+
+	/**
+	 * Esito dell'accodamento di un messaggio
+	 */
+	public enum Result {ACCEPTED,DROPPED,REJECTED,CLOSED};
+
+	private Socket channel; //canale di notifica del destinatario
+	private WireFormat format; //formato dei messaggi negoziato dal destinatario
+	private DataOutputStream out; //stream bufferizzato: i messaggi vengono inviati al flush
+	private DataInputStream in; //risposte del destinatario
+	private Executor writers; //esegue il writer dei messaggi e il reader delle risposte
+	private int capacity; //messaggi massimi in coda
+	private int maxBatch; //messaggi massimi inviati con un flush
+	private OverflowPolicy policy; //politica applicata a coda piena
+
+	private static final AtomicLong exchangeIds = new AtomicLong(); //id dei messaggi che attendono risposta
+
+	private ArrayDeque<CompletableFuture<? extends Message>> queue; //messaggi in coda,in ordine di invio
+	private LinkedHashMap<Long,CompletableFuture<JSONObject>> pendingReplies; //risposte attese,per id,in ordine di invio
+	private boolean scheduled = false; //true se un writer e' in esecuzione o in attesa di esecuzione
+	private boolean reading = false; //true se un reader e' in attesa delle risposte
+	private boolean closed = false;
+	private long dropped = 0; //messaggi scartati o rifiutati a coda piena
+
+	/**
+	 * Crea la coda dei messaggi di un canale di notifica
+	 * @param channel canale di notifica del destinatario
+	 * @param format formato dei messaggi del canale
+	 * @param writers executor su cui eseguire il writer dei messaggi e il reader delle risposte
+	 * @param capacity messaggi massimi in coda
+	 * @param maxBatch messaggi massimi inviati con un flush
+	 * @param policy politica applicata a coda piena
+	 * @param readTimeout millisecondi dopo cui il reader,in attesa di una risposta,controlla se e' ancora attesa
+	 * @throws IOException se non e' possibile usare il canale
+	 */
+	public OutboundMailbox(Socket channel,WireFormat format,Executor writers,int capacity,int maxBatch,OverflowPolicy policy,int readTimeout) throws IOException
+	{
+		if(channel == null || format == null || writers == null || policy == null)
+			throw new NullPointerException();
+
+		if(capacity <= 0 || maxBatch <= 0 || readTimeout <= 0)
+			throw new IllegalArgumentException();
+
+		//il canale viene letto solo dal reader delle risposte
+		channel.setSoTimeout(readTimeout);
+
+		this.channel = channel;
+		this.format = format;
+		this.out = new DataOutputStream(new BufferedOutputStream(channel.getOutputStream()));
+		this.in = new DataInputStream(new BufferedInputStream(channel.getInputStream()));
+		this.writers = writers;
+		this.capacity = capacity;
+		this.maxBatch = maxBatch;
+		this.policy = policy;
+		this.queue = new ArrayDeque<CompletableFuture<? extends Message>>();
+		this.pendingReplies = new LinkedHashMap<Long,CompletableFuture<JSONObject>>();
+	}
+
+	/**
+	 * Accoda un messaggio.Il messaggio viene inviato quando e' pronto,dopo quelli accodati prima.
+	 * @param message messaggio da inviare,pronto quando il future viene completato
+	 * @return esito dell'accodamento
+	 */
+	public Result offer(CompletableFuture<? extends Message> message)
+	{
+		if(message == null)
+			throw new NullPointerException();
+
+		synchronized (this)
+		{
+			if(closed)
+				return Result.CLOSED;
+
+			//destinatario troppo lento
+			if(queue.size() >= capacity)
+			{
+				dropped++;
+
+				switch (policy)
+				{
+					case DROP:
+						return Result.DROPPED;
+
+					case DISCONNECT:
+						close();
+						return Result.CLOSED;
+
+					default:
+						return Result.REJECTED;
+				}
+			}
+
+			queue.add(message);
+		}
+
+		//il writer viene avviato quando il primo messaggio in coda e' pronto
+		message.whenComplete((ready,e) -> scheduleWriter());
+
+		return Result.ACCEPTED;
+	}
+
+	/**
+	 * Accoda un messaggio a cui il destinatario deve rispondere,riportando l'id del messaggio.
+	 * Il chiamante non viene bloccato: la risposta completa il future restituito.
+	 * @param message crea il messaggio da inviare,dato il suo id
+	 * @param timeout millisecondi massimi di attesa della risposta
+	 * @return future completato con la risposta del destinatario.Viene completato con un errore se il messaggio non e' stato accodato
+	 * (RejectedExecutionException se la coda e' piena,IOException se il canale e' chiuso) o se la risposta non arriva in tempo (TimeoutException)
+	 */
+	public CompletableFuture<JSONObject> exchange(LongFunction<? extends Message> message,long timeout)
+	{
+		if(message == null)
+			throw new NullPointerException();
+
+		if(timeout <= 0)
+			throw new IllegalArgumentException();
+
+		long id = exchangeIds.incrementAndGet();
+		CompletableFuture<JSONObject> reply = new CompletableFuture<JSONObject>();
+
+		//registro la risposta attesa prima dell'invio,per non perdere una risposta immediata
+		synchronized (this) {
+			pendingReplies.put(id,reply);
+		}
+
+		switch (offer(CompletableFuture.completedFuture(message.apply(id))))
+		{
+			case ACCEPTED:
+				break;
+
+			case CLOSED:
+				reply.completeExceptionally(new IOException("Canale di notifica chiuso"));
+				break;
+
+			//un messaggio scartato non riceverebbe mai risposta
+			default:
+				reply.completeExceptionally(new RejectedExecutionException("Coda dei messaggi piena"));
+				break;
+		}
+
+		//risposta arrivata,scaduta o messaggio non accodato: non e' piu' attesa
+		reply.orTimeout(timeout,TimeUnit.MILLISECONDS).whenComplete((response,e) -> {
+			synchronized (this) {
+				pendingReplies.remove(id);
+			}
+		});
+
+		scheduleReader();
+
+		return reply;
+	}
+
+	/**
+	 * Avvia il writer,se non e' gia' in esecuzione e il primo messaggio in coda e' pronto
+	 */
+	private synchronized void scheduleWriter()
+	{
+		if(scheduled || closed || queue.isEmpty() || !queue.peek().isDone())
+			return;
+
+		scheduled = true;
+
+		try {
+			writers.execute(this::write);
+		}
+		//server in chiusura o pool saturo: il writer ripartira' con il prossimo messaggio accodato
+		catch (RejectedExecutionException e) {
+			scheduled = false;
+		}
+	}
+
+	/**
+	 * Writer: invia i messaggi pronti,in ordine,fino a quando la coda e' vuota o il primo messaggio non e' ancora pronto
+	 */
+	private void write()
+	{
+		List<CompletableFuture<? extends Message>> batch = new ArrayList<CompletableFuture<? extends Message>>(maxBatch);
+
+		while(true)
+		{
+			batch.clear();
+
+			synchronized (this)
+			{
+				//prendo i messaggi pronti
+				while(!closed && !queue.isEmpty() && queue.peek().isDone() && batch.size() < maxBatch)
+					batch.add(queue.poll());
+
+				//niente da inviare: il prossimo messaggio pronto riavviera' il writer
+				if(batch.isEmpty()) {
+					scheduled = false;
+					return;
+				}
+			}
+
+			try
+			{
+				for (CompletableFuture<? extends Message> message : batch)
+				{
+					//messaggio che non e' stato possibile preparare
+					if(message.isCompletedExceptionally())
+						continue;
+
+					format.write(message.join().getJsonObject(),out);
+				}
+
+				//un solo flush per tutti i messaggi del lotto
+				out.flush();
+			}
+			//canale non piu' utilizzabile
+			catch (IOException e)
+			{
+				System.out.println("Impossibile consegnare i messaggi sul canale di notifica: "+e.getMessage());
+
+				synchronized (this) {
+					scheduled = false;
+					close();
+				}
+
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Avvia il reader delle risposte,se ci sono risposte attese e non e' gia' in esecuzione
+	 */
+	private synchronized void scheduleReader()
+	{
+		if(reading || closed || pendingReplies.isEmpty())
+			return;
+
+		reading = true;
+
+		try {
+			writers.execute(this::read);
+		}
+		//server in chiusura o pool saturo: le risposte attese scadranno
+		catch (RejectedExecutionException e) {
+			reading = false;
+		}
+	}
+
+	/**
+	 * Reader: legge le risposte del destinatario finche' ci sono risposte attese,
+	 * e completa la risposta con lo stesso id.Le risposte senza id (client che non lo riportano) completano la piu' vecchia in attesa.
+	 * Le risposte arrivate dopo la scadenza vengono scartate.
+	 */
+	private void read()
+	{
+		while(true)
+		{
+			synchronized (this)
+			{
+				if(closed || pendingReplies.isEmpty()) {
+					reading = false;
+					return;
+				}
+			}
+
+			JSONObject response;
+
+			try
+			{
+				//nessuna risposta entro il tempo massimo,controllo se ci sono ancora risposte attese
+				if(!awaitResponse())
+					continue;
+
+				response = format.read(in);
+			}
+			//risposta non valida,viene scartata
+			catch (ParseException e) {
+				continue;
+			}
+			//canale non piu' utilizzabile
+			catch (IOException e)
+			{
+				synchronized (this) {
+					reading = false;
+					close();
+				}
+
+				return;
+			}
+
+			Long id = MessageAnalyzer.getFileOfferId(response);
+
+			CompletableFuture<JSONObject> reply;
+
+			synchronized (this)
+			{
+				if(id != null)
+					reply = pendingReplies.remove(id);
+				else
+				{
+					Iterator<CompletableFuture<JSONObject>> oldest = pendingReplies.values().iterator();
+					reply = oldest.hasNext() ? oldest.next() : null;
+
+					if(reply != null)
+						oldest.remove();
+				}
+			}
+
+			//risposta ancora attesa
+			if(reply != null)
+				reply.complete(response);
+		}
+	}
+
+	/**
+	 * Attende l'inizio di una risposta,senza consumarne i byte
+	 * @return true se e' arrivata una risposta,false se il tempo di attesa e' scaduto
+	 * @throws IOException se il canale e' stato chiuso o non e' piu' utilizzabile
+	 */
+	private boolean awaitResponse() throws IOException
+	{
+		in.mark(1);
+
+		try {
+			if(in.read() < 0)
+				throw new EOFException();
+		}
+		catch (SocketTimeoutException e) {
+			return false;
+		}
+
+		in.reset();
+
+		return true;
+	}
+
+	/**
+	 * Chiude il canale di notifica.I messaggi ancora in coda vengono scartati.
+	 */
+	public synchronized void close()
+	{
+		if(closed)
+			return;
+
+		closed = true;
+
+		queue.clear();
+
+		//le risposte attese non arriveranno piu'
+		List<CompletableFuture<JSONObject>> replies = new ArrayList<CompletableFuture<JSONObject>>(pendingReplies.values());
+		pendingReplies.clear();
+
+		for (CompletableFuture<JSONObject> reply : replies) {
+			reply.completeExceptionally(new IOException("Canale di notifica chiuso"));
+		}
+
+		try {
+			channel.close();
+		}
+		catch (IOException e) {}
+	}
+
+	/**
+	 * @return true se il canale di notifica e' stato chiuso
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return messaggi in coda
+	 */
+	public synchronized int size() {
+		return queue.size();
+	}
+
+	/**
+	 * @return messaggi scartati o rifiutati perche' la coda era piena
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+}
@@ -0,0 +1,137 @@
+package server.thread;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import server.model.Network;
+import server.model.User;
+import server.model.exception.UserNotFindException;
+
+/**
+ * Raggruppa i cambi di stato degli utenti prima di notificarli agli amici.
+ * I cambi di stato destinati ad uno stesso utente,avvenuti in una finestra di tempo,vengono inviati con una sola callback RMI;
+ * di ogni utente viene inviato soltanto l'ultimo stato,letto al momento dell'invio.
+ * Un utente che si riconnette piu' volte nella finestra genera quindi una sola notifica per ogni amico.
+ * @author Gionatha Sturba
+ *
+ */
+public class PresenceAggregator
+{
+	private Network reteSG; //rete degli utenti,da cui vengono letti gli amici
+	private NotificationDispatcher notifier; //consegna le notifiche RMI
+	private ScheduledExecutorService timer; //fa scattare l'invio delle notifiche al termine della finestra
+	private long window; //durata della finestra,in millisecondi
+	private ConcurrentHashMap<User,PendingUpdates> pending; //cambi di stato in attesa,per destinatario
+
+	/**
+	 * Crea un nuovo aggregatore dei cambi di stato
+	 * @param reteSG rete degli utenti
+	 * @param notifier dispatcher che consegna le notifiche
+	 * @param window durata in millisecondi della finestra in cui i cambi di stato vengono raggruppati
+	 */
+	public PresenceAggregator(Network reteSG,NotificationDispatcher notifier,long window)
+	{
+		if(reteSG == null || notifier == null)
+			throw new NullPointerException();
+
+		if(window < 0)
+			throw new IllegalArgumentException();
+
+		this.reteSG = reteSG;
+		this.notifier = notifier;
+		this.window = window;
+		this.timer = Executors.newSingleThreadScheduledExecutor();
+		this.pending = new ConcurrentHashMap<User,PendingUpdates>();
+	}
+
+	/**
+	 * Segnala che l'utente ha cambiato stato: tutti i suoi amici ne verranno notificati al termine della finestra
+	 * @param user utente che ha cambiato stato
+	 */
+	public void statusChanged(User user)
+	{
+		if(user == null)
+			throw new NullPointerException();
+
+		List<User> friends;
+
+		//copia degli amici,letta dal grafo degli utenti
+		try {
+			friends = reteSG.amiciDi(user);
+		}
+		//utente non registrato,non ha amici da notificare
+		catch (UserNotFindException e) {
+			return;
+		}
+
+		for (User friend : friends)
+		{
+			//amico senza canale RMI,non c'e' niente da notificare
+			if(friend.getRMIchannel() == null)
+				continue;
+
+			PendingUpdates updates = pending.computeIfAbsent(friend,key -> new PendingUpdates());
+
+			synchronized (updates)
+			{
+				updates.changed.add(user);
+
+				//primo cambio di stato della finestra,programmo l'invio
+				if(!updates.scheduled) {
+					updates.scheduled = true;
+					timer.schedule(() -> flush(friend,updates),window,TimeUnit.MILLISECONDS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Termina il timer delle notifiche
+	 */
+	public void shutdown()
+	{
+		timer.shutdownNow();
+	}
+
+	/**
+	 * Invia al destinatario,con una sola notifica,lo stato attuale degli utenti cambiati nella finestra
+	 */
+	private void flush(User recipient,PendingUpdates updates)
+	{
+		List<User> deltas;
+
+		synchronized (updates)
+		{
+			deltas = new ArrayList<User>(updates.changed.size());
+
+			//invio solo nickname e stato,letti ora: e' l'ultimo stato dell'utente
+			for (User user : updates.changed) {
+				deltas.add(new User(user.getNickname(),user.isOnline()));
+			}
+
+			updates.changed.clear();
+			updates.scheduled = false;
+
+			//nessun cambio in attesa,la coda viene ricreata al prossimo cambio di stato.
+			//Chi l'ha gia' ottenuta prima della rimozione la programma comunque da se',senza perdere cambi di stato
+			pending.remove(recipient,updates);
+		}
+
+		notifier.notify(recipient,channel -> channel.updateFriendsStatus(deltas));
+	}
+
+	/**
+	 * Cambi di stato in attesa di essere notificati ad un utente.Protetti dal monitor dell'oggetto.
+	 */
+	private static class PendingUpdates
+	{
+		private Set<User> changed = new LinkedHashSet<User>(); //utenti che hanno cambiato stato nella finestra
+		private boolean scheduled = false; //true se l'invio e' gia' stato programmato
+	}
+}
@@ -0,0 +1,397 @@
+package server.thread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import server.model.Translator;
+import utils.CircuitBreaker;
+
+/**
+ * Esegue in background le traduzioni dei messaggi,su un pool di thread dedicato con una coda limitata.
+ * Ogni traduzione ha un tempo massimo: scaduto il tempo,o in caso di errore,viene restituito il testo originale.
+ * Se il servizio di traduzione fallisce ripetutamente viene sospeso da un CircuitBreaker,
+ * e i messaggi vengono consegnati subito non tradotti finche' il servizio non torna disponibile.
+ * Le traduzioni gia' in cache vengono restituite subito,senza passare dal pool.
+ * Le traduzioni tra la stessa coppia di lingue richieste a breve distanza vengono raggruppate in un lotto,
+ * inviato al motore di traduzione con una sola chiamata quando e' pieno o quando scade la sua finestra di attesa.
+ * @author Gionatha Sturba
+ *
+ */
+public class TranslationService
+{
+	private ThreadPoolExecutor workers; //thread che effettuano le traduzioni
+	private ScheduledThreadPoolExecutor timer; //scadenza delle traduzioni
+	private CircuitBreaker breaker; //sospende le traduzioni se il servizio non funziona
+	private long timeout; //millisecondi massimi di attesa di una traduzione
+	private int batchSize; //testi massimi in un lotto
+	private long batchWindow; //millisecondi massimi di attesa di un lotto prima dell'invio
+	private HashMap<String,TranslationBatch> pending; //lotti in attesa,per coppia di lingue
+
+	/**
+	 * Crea il servizio di traduzione,senza raggruppare le traduzioni in lotti
+	 * @param threads thread che effettuano le traduzioni
+	 * @param queueCapacity traduzioni massime in attesa,oltre le quali i messaggi vengono consegnati non tradotti
+	 * @param timeout millisecondi massimi di attesa di una traduzione
+	 * @param breaker interruttore che sospende le traduzioni se il servizio non funziona
+	 */
+	public TranslationService(int threads,int queueCapacity,long timeout,CircuitBreaker breaker)
+	{
+		this(threads,queueCapacity,timeout,1,0,breaker);
+	}
+
+	/**
+	 * Crea il servizio di traduzione
+	 * @param threads thread che effettuano le traduzioni
+	 * @param queueCapacity lotti massimi in attesa,oltre i quali i messaggi vengono consegnati non tradotti
+	 * @param timeout millisecondi massimi di attesa di una traduzione
+	 * @param batchSize testi massimi in un lotto,1 per non raggruppare le traduzioni
+	 * @param batchWindow millisecondi massimi di attesa di un lotto non pieno,0 per non raggruppare le traduzioni
+	 * @param breaker interruttore che sospende le traduzioni se il servizio non funziona
+	 */
+	public TranslationService(int threads,int queueCapacity,long timeout,int batchSize,long batchWindow,CircuitBreaker breaker)
+	{
+		if(breaker == null)
+			throw new NullPointerException();
+
+		if(threads <= 0 || queueCapacity <= 0 || timeout <= 0 || batchSize <= 0 || batchWindow < 0)
+			throw new IllegalArgumentException();
+
+		this.workers = new ThreadPoolExecutor(threads,threads,0L,TimeUnit.MILLISECONDS,new ArrayBlockingQueue<Runnable>(queueCapacity),runnable -> {
+			Thread thread = new Thread(runnable,"translation-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.timer = new ScheduledThreadPoolExecutor(1,runnable -> {
+			Thread thread = new Thread(runnable,"translation-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		//le scadenze annullate vengono rimosse subito dalla coda del timer
+		this.timer.setRemoveOnCancelPolicy(true);
+
+		this.breaker = breaker;
+		this.timeout = timeout;
+		this.batchSize = batchSize;
+		this.batchWindow = batchWindow;
+		this.pending = new HashMap<String,TranslationBatch>();
+	}
+
+	/**
+	 * Traduce un testo in background.Il future non viene mai completato con un errore:
+	 * se la traduzione non e' possibile entro il tempo massimo,viene completato con il testo originale.
+	 * @param text testo da tradurre
+	 * @param fromLang lingua originale
+	 * @param toLang lingua in cui tradurre
+	 * @return future completato con la traduzione del testo,o con il testo originale
+	 */
+	public CompletableFuture<String> translate(String text,String fromLang,String toLang)
+	{
+		String cached;
+
+		try {
+			cached = Translator.getCachedTranslation(text,fromLang,toLang);
+		}
+		//testo o lingue non validi,il testo non puo' essere tradotto
+		catch (IllegalArgumentException e) {
+			return CompletableFuture.completedFuture(text);
+		}
+
+		//traduzione gia' disponibile
+		if(cached != null)
+			return CompletableFuture.completedFuture(cached);
+
+		//servizio di traduzione sospeso
+		if(!breaker.allowRequest())
+			return CompletableFuture.completedFuture(text);
+
+		PendingTranslation request = new PendingTranslation(text);
+		CompletableFuture<String> result = request.result;
+
+		enqueue(fromLang,toLang,request);
+
+		//traduzione gia' terminata,o troppe traduzioni in attesa e messaggio consegnato non tradotto
+		//(il rifiuto e' gia' stato registrato sull'interruttore): la scadenza non serve
+		if(result.isDone())
+			return result;
+
+		//tempo scaduto,si consegna il messaggio originale dopo aver registrato il fallimento
+		ScheduledFuture<?> expiration = timer.schedule(() -> {
+			if(request.claim()) {
+				breaker.recordFailure();
+				result.complete(text);
+			}
+		},timeout,TimeUnit.MILLISECONDS);
+		
+		//traduzione completata in tempo,la scadenza non serve piu'
+		result.whenComplete((translation,e) -> expiration.cancel(false));
+
+		return result;
+	}
+
+	/**
+	 * Aggiunge una traduzione al lotto della sua coppia di lingue,e invia il lotto se e' pieno
+	 * @param fromLang lingua originale
+	 * @param toLang lingua in cui tradurre
+	 * @param request traduzione richiesta
+	 */
+	private void enqueue(String fromLang,String toLang,PendingTranslation request)
+	{
+		TranslationBatch ready = null;
+
+		synchronized (pending)
+		{
+			String langPair = fromLang+"|"+toLang;
+			TranslationBatch batch = pending.get(langPair);
+
+			//primo testo del lotto,che verra' inviato al piu' tardi allo scadere della finestra
+			if(batch == null)
+			{
+				batch = new TranslationBatch(langPair,fromLang,toLang);
+				pending.put(langPair,batch);
+
+				if(batchSize > 1 && batchWindow > 0)
+				{
+					TranslationBatch scheduled = batch;
+
+					try {
+						batch.flush = timer.schedule(() -> flush(scheduled),batchWindow,TimeUnit.MILLISECONDS);
+					}
+					//servizio terminato,il lotto viene inviato subito
+					catch (RejectedExecutionException e) {}
+				}
+			}
+
+			batch.add(request);
+
+			//lotto pieno,o lotti disabilitati
+			if(batch.size() >= batchSize || batch.flush == null)
+			{
+				pending.remove(langPair);
+
+				if(batch.flush != null)
+					batch.flush.cancel(false);
+
+				ready = batch;
+			}
+		}
+
+		//il lotto viene inviato fuori dalla sezione critica
+		if(ready != null)
+			submit(ready);
+	}
+
+	/**
+	 * Invia un lotto alla scadenza della sua finestra di attesa,se non e' gia' stato inviato perche' pieno
+	 * @param batch lotto da inviare
+	 */
+	private void flush(TranslationBatch batch)
+	{
+		synchronized (pending)
+		{
+			if(!pending.remove(batch.langPair,batch))
+				return;
+		}
+
+		submit(batch);
+	}
+
+	/**
+	 * Accoda un lotto ai thread che effettuano le traduzioni
+	 * @param batch lotto da tradurre
+	 */
+	private void submit(TranslationBatch batch)
+	{
+		try {
+			workers.execute(() -> translateBatch(batch));
+		}
+		//troppi lotti in attesa,i messaggi vengono consegnati non tradotti.
+		//Il rifiuto conta come un fallimento: se il lotto conteneva la richiesta di prova,l'interruttore torna aperto
+		//e lascera' passare un'altra prova,invece di restare mezzo aperto senza una prova in corso
+		catch (RejectedExecutionException e) {
+			completeWithOriginal(batch);
+		}
+	}
+
+	/**
+	 * Traduce tutti i testi di un lotto con una sola chiamata al motore di traduzione
+	 * @param batch lotto da tradurre
+	 */
+	private void translateBatch(TranslationBatch batch)
+	{
+		//testi le cui traduzioni sono gia' scadute per tutti i richiedenti
+		batch.removeExpired();
+
+		if(batch.size() == 0)
+			return;
+
+		List<String> texts = new ArrayList<String>(batch.requests.keySet());
+
+		try
+		{
+			List<String> translations = Translator.translateRemoteBatch(texts,batch.fromLang,batch.toLang);
+			List<PendingTranslation> inTime = new ArrayList<PendingTranslation>();
+			List<String> results = new ArrayList<String>();
+
+			//se il tempo e' gia' scaduto le traduzioni restano comunque in cache
+			for (int i = 0; i < texts.size(); i++)
+			{
+				for (PendingTranslation request : batch.requests.get(texts.get(i)))
+				{
+					if(request.claim()) {
+						inTime.add(request);
+						results.add(translations.get(i));
+					}
+				}
+			}
+
+			//l'esito viene registrato prima di consegnare le traduzioni,chi le riceve vede gia' l'interruttore aggiornato
+			if(!inTime.isEmpty())
+				breaker.recordSuccess();
+
+			for (int i = 0; i < inTime.size(); i++) {
+				inTime.get(i).result.complete(results.get(i));
+			}
+		}
+		//errore nella traduzione,si consegnano i messaggi originali
+		catch (Exception e) {
+			completeWithOriginal(batch);
+		}
+	}
+
+	/**
+	 * Consegna i testi originali alle richieste del lotto ancora in attesa,
+	 * dopo aver registrato il fallimento sull'interruttore
+	 * @param batch lotto non tradotto
+	 */
+	private void completeWithOriginal(TranslationBatch batch)
+	{
+		List<PendingTranslation> claimed = batch.claimPending();
+
+		if(claimed.isEmpty())
+			return;
+
+		breaker.recordFailure();
+
+		for (PendingTranslation request : claimed) {
+			request.result.complete(request.text);
+		}
+	}
+
+	/**
+	 * @return interruttore che sospende le traduzioni
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return breaker;
+	}
+
+	/**
+	 * Termina i thread del servizio
+	 */
+	public void shutdown()
+	{
+		workers.shutdownNow();
+		timer.shutdownNow();
+	}
+
+	/**
+	 * Traduzione richiesta,in attesa del risultato.
+	 * Chi la completa (lotto tradotto,errore o scadenza) la reclama prima,
+	 * in modo da registrare l'esito sull'interruttore prima di consegnare il testo al richiedente.
+	 */
+	private static class PendingTranslation
+	{
+		private final String text; //testo da tradurre
+		private final CompletableFuture<String> result = new CompletableFuture<String>();
+		private final AtomicBoolean settled = new AtomicBoolean(false); //true se l'esito e' gia' stato deciso
+
+		private PendingTranslation(String text) {
+			this.text = text;
+		}
+
+		/**
+		 * @return true se il chiamante e' il primo a decidere l'esito della traduzione,e deve completarla
+		 */
+		private boolean claim() {
+			return settled.compareAndSet(false,true);
+		}
+	}
+
+	/**
+	 * Traduzioni in attesa tra la stessa coppia di lingue.
+	 * Lo stesso testo richiesto piu' volte viene tradotto una sola volta.
+	 */
+	private static class TranslationBatch
+	{
+		private String langPair;
+		private String fromLang;
+		private String toLang;
+		private LinkedHashMap<String,List<PendingTranslation>> requests; //richiedenti di ogni testo,in ordine di arrivo
+		private ScheduledFuture<?> flush; //invio allo scadere della finestra,null se il lotto viene inviato solo quando e' pieno
+
+		private TranslationBatch(String langPair,String fromLang,String toLang)
+		{
+			this.langPair = langPair;
+			this.fromLang = fromLang;
+			this.toLang = toLang;
+			this.requests = new LinkedHashMap<String,List<PendingTranslation>>();
+		}
+
+		private void add(PendingTranslation request) {
+			requests.computeIfAbsent(request.text,key -> new ArrayList<PendingTranslation>(1)).add(request);
+		}
+
+		/**
+		 * @return testi diversi nel lotto
+		 */
+		private int size() {
+			return requests.size();
+		}
+
+		/**
+		 * Rimuove i testi che nessun richiedente sta piu' aspettando
+		 */
+		private void removeExpired()
+		{
+			Iterator<List<PendingTranslation>> iterator = requests.values().iterator();
+
+			while(iterator.hasNext())
+			{
+				if(iterator.next().stream().allMatch(request -> request.settled.get()))
+					iterator.remove();
+			}
+		}
+
+		/**
+		 * Reclama le richieste ancora in attesa
+		 * @return richieste reclamate,da completare
+		 */
+		private List<PendingTranslation> claimPending()
+		{
+			List<PendingTranslation> claimed = new ArrayList<PendingTranslation>();
+
+			for (List<PendingTranslation> texts : requests.values())
+			{
+				for (PendingTranslation request : texts)
+				{
+					if(request.claim())
+						claimed.add(request);
+				}
+			}
+
+			return claimed;
+		}
+	}
+}
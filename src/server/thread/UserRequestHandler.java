@@ -5,28 +5,37 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.InetAddress;
-import java.net.MulticastSocket;
+import java.net.ProtocolException;
 import java.net.Socket;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
 import org.json.simple.JSONObject;
 import org.json.simple.parser.ParseException;
-import communication.RMI.RMIClientNotifyEvent;
 import communication.TCPMessages.Message;
-import communication.TCPMessages.MessageAnalyzer;
+import communication.TCPMessages.ParsedRequest;
 import communication.TCPMessages.notification.NewChatMessage;
 import communication.TCPMessages.notification.NewIncomingFile;
 import communication.TCPMessages.request.RequestMessage;
 import communication.TCPMessages.request.access.RequestAccessMessage;
 import communication.TCPMessages.request.chatroom.ChatRoomRequest;
 import communication.TCPMessages.request.interaction.InteractionRequest;
+import communication.TCPMessages.response.ResponseMessage;
 import communication.TCPMessages.response.fail.ResponseFailedMessage;
-import communication.TCPMessages.response.success.ResponseSuccessMessage;
 import communication.TCPMessages.response.success.SuccessFriendship;
 import communication.TCPMessages.response.success.SuccessfulLogin;
 import communication.TCPMessages.response.success.SuccessfulRegistration;
+import communication.TCPMessages.wire.ConstantResponses;
+import communication.TCPMessages.wire.WireFormat;
+import communication.TCPMessages.wire.WireProtocol;
 import server.model.*;
+import server.model.exception.ChatRoomAlreadyExistException;
+import server.model.exception.ChatRoomNotFoundException;
+import server.model.exception.OperationNotPermittedException;
 import server.model.exception.PasswordMismatchingException;
 import server.model.exception.SameUserException;
 import server.model.exception.UserAlreadyRegistered;
@@ -43,21 +52,32 @@ public class UserRequestHandler implements Runnable
 	private Socket client; //connessioni TCP con il client
 	
 	private Network reteSG; //rete degli utenti di Social Gossip
-	private List<ChatRoom> chatrooms; //lista delle chatrooms 
+	private ChatRoomRegistry chatrooms; //chatroom attive
+	private NotificationDispatcher notifier; //consegna le notifiche RMI agli utenti
+	private PresenceAggregator presence; //notifica agli amici i cambi di stato degli utenti
+	private TranslationService translations; //traduce in background i messaggi tra utenti
+	
+	private Executor mailboxWriters; //scrive sui canali di notifica e ne legge le risposte: un destinatario lento occupa solo la propria coda
 	
 	private boolean isNotificationThread = false;
+	protected WireFormat wireFormat = WireProtocol.JSON; //formato dei messaggi della connessione
+	protected long requestId = ParsedRequest.NO_REQUEST_ID; //id della richiesta in gestione,riportato nelle risposte
 
 
-	public UserRequestHandler(Socket client,Network reteSG,List<ChatRoom> chatrooms)
+	public UserRequestHandler(Socket client,Network reteSG,ChatRoomRegistry chatrooms,NotificationDispatcher notifier,PresenceAggregator presence,TranslationService translations,Executor mailboxWriters)
 	{
 		super();
 
-		if(client == null || reteSG == null || chatrooms == null)
+		if(client == null || reteSG == null || chatrooms == null || notifier == null || presence == null || translations == null || mailboxWriters == null)
 			throw new NullPointerException();
 		
 		this.client = client;
 		this.reteSG = reteSG;
 		this.chatrooms = chatrooms;		
+		this.notifier = notifier;
+		this.presence = presence;
+		this.translations = translations;
+		this.mailboxWriters = mailboxWriters;
 	}
 	
 	/**
@@ -74,14 +94,17 @@ public class UserRequestHandler implements Runnable
 			in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
 			out = new DataOutputStream(client.getOutputStream());
 			
+			//formato dei messaggi richiesto dal client,Json se non lo negozia
+			wireFormat = WireProtocol.accept(in,out);
+			
 			//fin quando il client mi invia richieste
 			while(true)
 			{
 				try 
 				{
 					//leggo messaggio inviatomi dal client
-					String request = in.readUTF();
-					System.out.println("received: "+request);
+					ParsedRequest request = wireFormat.readRequest(in);
+					System.out.println("received: "+request.getRequestType()+" "+request.getNicknameSender());
 					
 					//analizzo richiesta del client
 					analyzeRequestMessage(request,out);
@@ -95,12 +118,25 @@ public class UserRequestHandler implements Runnable
 					System.out.println("Chiusura client");
 					break;
 				}
+				//frame non valido,la connessione non e' piu' sincronizzata con il client
+				catch (ProtocolException e) {
+					System.out.println("Frame non valido: "+e.getMessage());
+					break;
+				}
+				//messaggio non valido
+				catch (ParseException e) {
+					rejectInvalidRequest(out);
+				}
 				catch (IOException e) {
 					e.printStackTrace();
 				}
 			}
 			
 		} 
+		//client ha chiuso la connessione prima di inviare una richiesta
+		catch (EOFException e1) {
+			System.out.println("Chiusura client");
+		}
 		catch (IOException e1) {
 			e1.printStackTrace();
 		}
@@ -126,39 +162,39 @@ public class UserRequestHandler implements Runnable
 	
 	/**
 	 * Analizza la richiesta del client
-	 * @param StringMessage messaggio del client
+	 * @param message messaggio del client,gia' decodificato dal formato della connessione
 	 * @param out stream per rispondere al client
 	 */
-	private void analyzeRequestMessage(String StringMessage,DataOutputStream out)
+	protected void analyzeRequestMessage(ParsedRequest message,DataOutputStream out)
 	{	
+		//le risposte a questa richiesta riportano il suo id
+		requestId = message.getRequestId();
+		
 		try 
 		{
-			//parso il messaggio arrivato 
-			JSONObject message = MessageAnalyzer.parse(StringMessage);
-			
 			//controllo che sia un messaggio di richiesta altrimenti invio messaggio di errore
-			if(MessageAnalyzer.getMessageType(message) != Message.Type.REQUEST)
+			if(message.getMessageType() != Message.Type.REQUEST)
 			{
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+				sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 				return;
 			}
 			
 			//essendo un messaggio di richiesta,posso prendere il nickname dell'utente mittente
-			String nicknameSender = MessageAnalyzer.getNicknameSender(message);
+			String nicknameSender = message.getNicknameSender();
 			
 			//prendo il tipo del messaggio di richiesta
-			RequestMessage.Type requestType = MessageAnalyzer.getRequestMessageType(message);
+			RequestMessage.Type requestType = message.getRequestType();
 			
 			//nickname non trovato, oppure tipo richiesta non trovato,invio messaggio di errore
 			if(nicknameSender == null || requestType == null)
 			{
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+				sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 				return;
 			}
 			
 			
 			//sistema per gestire gli accessi a social Gossip
-			AccessSystem accessSystem = new AccessSystem(reteSG);
+			AccessSystem accessSystem = new AccessSystem(reteSG,presence);
 			
 			//controllo i possibili casi di richiesta
 			switch (requestType) 
@@ -190,7 +226,7 @@ public class UserRequestHandler implements Runnable
 						
 				//richiesta non valida
 				default:
-					sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+					sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 					return;
 			}
 			
@@ -200,11 +236,11 @@ public class UserRequestHandler implements Runnable
 			
 		} 
 		//errore lettura messaggio
-		catch (ParseException  | NullPointerException e) 
+		catch (NullPointerException e) 
 		{
 			try {
 				//invio messaggio di errore richiesta non valida
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+				sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 			} catch (IOException e1) {
 				// TODO Auto-generated catch block
 				e1.printStackTrace();
@@ -226,9 +262,88 @@ public class UserRequestHandler implements Runnable
 	 * @param out stream sulla quale inviare la risposta
 	 * @throws IOException se ci sono errori nell'invio della risposta
 	 */
-	private void sendMessage(Message response,DataOutputStream out) throws IOException
+	protected void sendMessage(Message response,DataOutputStream out) throws IOException
+	{
+		//le risposte differite possono essere scritte da altri thread
+		synchronized (out) {
+			wireFormat.write(stamp(response,requestId).getJsonObject(),out);
+		}
+	}
+	
+	/**
+	 * Inserisce in una risposta l'id della richiesta a cui risponde
+	 * @param response risposta da inviare
+	 * @param requestId id della richiesta,ParsedRequest.NO_REQUEST_ID se la richiesta non ha un id
+	 * @return la risposta stessa
+	 */
+	protected static Message stamp(Message response,long requestId)
+	{
+		if(requestId != ParsedRequest.NO_REQUEST_ID && response instanceof ResponseMessage)
+			((ResponseMessage) response).setRequestId(requestId);
+		
+		return response;
+	}
+	
+	/**
+	 * Invia la risposta di successo,gia' codificata nel formato della connessione
+	 * @param out stream sulla quale inviare la risposta
+	 * @throws IOException se ci sono errori nell'invio della risposta
+	 */
+	protected void sendSuccess(DataOutputStream out) throws IOException
+	{
+		synchronized (out) {
+			ConstantResponses.writeSuccess(wireFormat,requestId,out);
+		}
+	}
+	
+	/**
+	 * Invia una risposta di errore,gia' codificata nel formato della connessione
+	 * @param error errore da inviare
+	 * @param out stream sulla quale inviare la risposta
+	 * @throws IOException se ci sono errori nell'invio della risposta
+	 */
+	protected void sendFailed(ResponseFailedMessage.Errors error,DataOutputStream out) throws IOException
+	{
+		synchronized (out) {
+			ConstantResponses.writeFailed(wireFormat,error,requestId,out);
+		}
+	}
+	
+	/**
+	 * Invia una risposta seguita da una serie di pagine.Ogni pagina viene creata solo quando la precedente
+	 * e' stata scritta,e nessun'altra risposta puo' inserirsi tra le pagine.
+	 * @param response risposta da inviare
+	 * @param pages pagine che seguono la risposta
+	 * @param out stream su cui inviare
+	 * @throws IOException errore nell'invio
+	 */
+	protected void sendPages(Message response,Iterator<? extends Message> pages,DataOutputStream out) throws IOException
+	{
+		synchronized (out) 
+		{
+			sendMessage(response,out);
+			
+			while(pages.hasNext()) {
+				sendMessage(pages.next(),out);
+			}
+		}
+	}
+	
+	/**
+	 * Risponde ad un messaggio che non e' stato possibile decodificare
+	 * @param out stream per rispondere al client
+	 */
+	protected void rejectInvalidRequest(DataOutputStream out)
 	{
-		out.writeUTF(response.getJsonMessage());
+		//id della richiesta non leggibile,il client associa la risposta alla richiesta in attesa da piu' tempo
+		requestId = ParsedRequest.NO_REQUEST_ID;
+		
+		try {
+			sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
 	/**
@@ -238,7 +353,7 @@ public class UserRequestHandler implements Runnable
 	 * @param out stream per rispondere al client
 	 * @throws IOException se ci sono errori nell'invio della risposta
 	 */
-	private void ChatRoomRequestHandler(JSONObject message,String nicknameSender,DataOutputStream out) throws IOException
+	private void ChatRoomRequestHandler(ParsedRequest message,String nicknameSender,DataOutputStream out) throws IOException
 	{		
 		//cerco utente mittente del messaggio
 		User sender = reteSG.cercaUtente(nicknameSender);
@@ -246,31 +361,31 @@ public class UserRequestHandler implements Runnable
 		//se il mittente non e' registrato,invio messaggio di errore
 		if(sender == null)
 		{
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND),out);
+			sendFailed(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND,out);
 			return;
 		}
 		
 		//se il mittente non e' online,invio messaggio di errore
 		if(!sender.isOnline()) {
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS),out);
+			sendFailed(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS,out);
 			return;
 		}
 		
-		String chatroomName = MessageAnalyzer.getChatRoomName(message);
+		String chatroomName = message.getChatRoomName();
 		
 		//se non e' stata trovata il nome della chatrooms
 		if(chatroomName == null)
 		{
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+			sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 			return;
 		}
 		
 		//controllo il tipo della richiesta che coinvolge la chatroom
-		ChatRoomRequest.ChatroomRequests type = MessageAnalyzer.getChatRoomRequestType(message);
+		ChatRoomRequest.ChatroomRequests type = message.getChatRoomRequestType();
 		
 		//tipo richiesta non trovato
 		if(type == null) {
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+			sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 			return;
 		}
 		
@@ -288,7 +403,7 @@ public class UserRequestHandler implements Runnable
 			break;
 		
 		default:
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+			sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 			break;
 		}
 		
@@ -304,72 +419,23 @@ public class UserRequestHandler implements Runnable
 	 */
 	private void closeChatRoomRequestHandler(User sender,String chatroomName,DataOutputStream out)throws IOException
 	{
-		//controllo se la chatroom esiste gia'
-		synchronized (chatrooms) {
-			
-			//chatroom non esistente
-			if(!chatrooms.contains(new ChatRoom(chatroomName)))
-			{
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.CHATROOM_NOT_FOUND), out);
-				return;
-			}
-			//chatroom trovata
-			else {
-				ChatRoom selectedRoom = chatrooms.get(chatrooms.indexOf(new ChatRoom(chatroomName)));
-				
-				//se l'utente non e' l'admin della chatroom
-				if(!selectedRoom.getSubscribers().get(0).equals(sender)) {
-					sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.OPERATION_NOT_PERMITTED), out);
-					return;
-				}
-				
-				//posso procedere alla chiusura della chatroom
-				
-				//mando un messaggio di chiusura agli utenti,via UDP
-				MulticastSocket ms = selectedRoom.getMulticastSocket();
-				byte[] msg = "CHATROOM CLOSED".getBytes();
-				
-				//creo pacchetto per notificare gli iscritti dell'avvenuta chiusura della chatroom
-				DatagramPacket packet = new DatagramPacket(msg,msg.length,InetAddress.getByName(selectedRoom.getIPAddress()),selectedRoom.getPort());
-				
-				//invio pacchetto
-				ms.send(packet);
-				
-				//chiudo la chatroom
-				selectedRoom.close();
-				
-				//rimuovo la chatroom da ogni lista delle chatroom a cui sono iscritti gli utenti
-				List<User> subs = selectedRoom.getSubscribers();
-				synchronized (subs) {
-					for (User user : subs) {
-						user.rimuoviChatRoom(selectedRoom);
-					}
-				}
-				
-				//elimino la chatroom,da quelle attive
-				chatrooms.remove(selectedRoom);
-				
-				//invio una notifica a tutti gli utenti
-				List<User> users = reteSG.getUtenti();
-				
-				synchronized (users) {
-					for (User user : users) {
-						RMIClientNotifyEvent notifyEvent = user.getRMIchannel();
-						
-						//invio notifica,se il canale RMI e' attivo
-						if(notifyEvent != null) {
-							notifyEvent.removeChatRoom(selectedRoom);
-						}
-					}
-				}
-				
-				//elimino definitavemente chatroom
-				selectedRoom = null;	
-			}
+		try {
+			//chiudo la chatroom,gli iscritti vengono notificati via UDP
+			chatrooms.close(chatroomName,sender);
+		}
+		//chatroom non esistente
+		catch (ChatRoomNotFoundException e) {
+			sendFailed(ResponseFailedMessage.Errors.CHATROOM_NOT_FOUND,out);
+			return;
+		}
+		//se l'utente non e' l'admin della chatroom
+		catch (OperationNotPermittedException e) {
+			sendFailed(ResponseFailedMessage.Errors.OPERATION_NOT_PERMITTED,out);
+			return;
 		}
 		
 		//operazione andata a buon fine
-		sendMessage(new ResponseSuccessMessage(), out);	
+		sendSuccess(out);	
 	}
 	
 	/**
@@ -381,46 +447,22 @@ public class UserRequestHandler implements Runnable
 	 */
 	private void joinChatRoomRequestHandler(User sender,String chatroomName,DataOutputStream out) throws IOException
 	{
-		//controllo se la chatroom esiste gia'
-		synchronized (chatrooms) {
-			
-			//chatroom non esistente
-			if(!chatrooms.contains(new ChatRoom(chatroomName)))
-			{
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.CHATROOM_NOT_FOUND), out);
-				return;
-			}
-			//chatroom trovata
-			else {
-				ChatRoom selectedRoom = chatrooms.get(chatrooms.indexOf(new ChatRoom(chatroomName)));
-				
-				//aggiungo l'utente alla chatroom, e aggiorno la lista chatroom dell'utente
-				try {
-					selectedRoom.addNewSubscriber(sender);
-					
-					sender.aggiungiChatRoom(selectedRoom);
-					
-					//notifico tutti gli utenti,della nuova iscrizione
-					List<User> users = reteSG.getUtenti();
-					
-					synchronized (users) {
-						for (User user : users) {
-							RMIClientNotifyEvent notifyEvent = user.getRMIchannel();
-							
-							//se l'utente ha settato il canale di notifica,invio la notifica
-							if(notifyEvent != null)
-								notifyEvent.updateChatRoom(selectedRoom);
-						}
-					}
-				} catch (UserAlreadyRegistered e) {
-					sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.USER_ALREADY_REGISTERED), out);
-					return;
-				}
-			}
+		try {
+			//aggiungo l'utente alla chatroom, e aggiorno la lista chatroom dell'utente
+			chatrooms.join(chatroomName,sender);
+		}
+		//chatroom non esistente
+		catch (ChatRoomNotFoundException e) {
+			sendFailed(ResponseFailedMessage.Errors.CHATROOM_NOT_FOUND,out);
+			return;
+		}
+		catch (UserAlreadyRegistered e) {
+			sendFailed(ResponseFailedMessage.Errors.USER_ALREADY_REGISTERED,out);
+			return;
 		}
 		
 		//operazione andata a buon fine
-		sendMessage(new ResponseSuccessMessage(), out);
+		sendSuccess(out);
 	}
 	
 	/**
@@ -432,95 +474,26 @@ public class UserRequestHandler implements Runnable
 	 */
 	private void newChatRoomRequestHandler(User sender,String chatroomName,DataOutputStream out) throws IOException
 	{
-		//controllo se la chatroom esiste gia'
-		synchronized (chatrooms) {
-			
-			//chatroom gia' esistente
-			if(chatrooms.contains(new ChatRoom(chatroomName)))
-			{
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.CHATROOM_ALREADY_REGISTERED), out);
-				return;
-			}
-			//posso creare la nuvoa chatroom
-			else {
-				
-				String msAddress = getNewChatRoomAddress();
-				
-				//indirizzi non piu disponibili
-				if(msAddress == null)
-				{
-					sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.CANNOT_CREATE_CHATROOM), out);
-					return;
-				}
-				
-				// l'indirizzo multicast
-				InetAddress addr = InetAddress.getByName(msAddress);
-				//indirizzo receiver messaggi
-				InetAddress messAddr = InetAddress.getByName("localhost");
-				
-				//istanza chatroom da creare
-				ChatRoom newChatRoom = null;
-				
-				//aggiungo l'utente che ha creato il gruppo. Essendo il primo e' l'admin
-				try {
-					newChatRoom = new ChatRoom(chatroomName,addr,messAddr);
-
-					newChatRoom.addNewSubscriber(sender);
-					
-					//aggiungo la chatroom alla lista delle chatroom a cui l'utente e' iscritto
-					sender.aggiungiChatRoom(newChatRoom);
-				} 
-				catch (UserAlreadyRegistered e) {
-					sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.USER_ALREADY_REGISTERED), out);
-					return;
-				} catch (Exception e) {
-					sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.CANNOT_CREATE_CHATROOM), out);
-					return;
-				}
-				
-				//aggiungo chatroom alla lista
-				if(newChatRoom != null)
-					chatrooms.add(newChatRoom);
-				
-				//notifico tutti gli utenti della nuova chatroom
-				List<User> users = reteSG.getUtenti();
-				
-				synchronized (users) {
-					for (User user : users) {
-						RMIClientNotifyEvent notifyEvent = user.getRMIchannel();
-						
-						//se l'utente ha settato il canale di notifica,invio la notifica
-						if(notifyEvent != null)
-							notifyEvent.newChatRoom(newChatRoom);
-					}
-				}
-			}
-			
-			//mando un messaggio di ok al sender
-			sendMessage(new ResponseSuccessMessage(), out);
-				
+		try {
+			//creo la chatroom,l'utente che l'ha creata e' l'admin
+			chatrooms.create(chatroomName,sender);
+		}
+		//chatroom gia' esistente
+		catch (ChatRoomAlreadyExistException e) {
+			sendFailed(ResponseFailedMessage.Errors.CHATROOM_ALREADY_REGISTERED,out);
+			return;
+		}
+		//indirizzi o porte non piu disponibili
+		catch (IOException e) {
+			sendFailed(ResponseFailedMessage.Errors.CANNOT_CREATE_CHATROOM,out);
+			return;
 		}
-	}
-	
-	/**
-	 * 
-	 * @return indirizzo multicast non ancora utilizzato
-	 */
-	private synchronized String getNewChatRoomAddress()
-	{		
-		String[] byteIP = Config.FIRST_MULTICAST_ADDR.split("\\.");
-		
-		Integer offset = Integer.parseInt(byteIP[3]);
-		
-		offset = offset + chatrooms.size();
-		
-		//se non ci sono piu indirizzi dispoibili
-		if(offset.equals(256))
-			return null;
 		
-		return new String(byteIP[0]+"."+byteIP[1]+"."+byteIP[2]+"."+offset.toString());
+		//mando un messaggio di ok al sender
+		sendSuccess(out);
 	}
 	
+	
 	/**
 	 * Handler della richiesta di settaggio del canale di notifica dei messaggi chat relativo ad un utente
 	 * @param nickname nome mittente
@@ -537,21 +510,33 @@ public class UserRequestHandler implements Runnable
 		//se il mittente non e' registrato,invio messaggio di errore
 		if(user == null)
 		{
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND),out);
+			sendFailed(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND,out);
 			return;
 		}
 		
 		//se il mittente non e' online,invio messaggio di errore
 		if(!user.isOnline()) {
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS),out);
+			sendFailed(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS,out);
 			return;
 		}
 		
-		//setto come canale di notifica questa connessione
-		user.setNotificationMessageChannel(client);
+		//mando messaggio di OK al mittente,prima che sul canale possano arrivare notifiche
+		sendSuccess(out);
 		
-		//mando messaggio di OK al mittente
-		sendMessage(new ResponseSuccessMessage(),out);
+		//setto come canale di notifica questa connessione,usata solo dal writer della sua coda
+		user.setNotificationMailbox(new OutboundMailbox(openNotificationChannel(),wireFormat,mailboxWriters,Config.MAILBOX_CAPACITY,
+				Config.MAILBOX_BATCH_SIZE,OutboundMailbox.OverflowPolicy.valueOf(Config.MAILBOX_OVERFLOW_POLICY),Config.MAILBOX_READ_TIMEOUT));
+	}
+	
+	/**
+	 * Prepara la connessione con il client per essere usata come canale di notifica dei messaggi chat.
+	 * Da questo momento la connessione viene usata in modo bloccante dagli altri handler.
+	 * @return socket da usare come canale di notifica
+	 * @throws IOException se la connessione non puo' essere usata come canale di notifica
+	 */
+	protected Socket openNotificationChannel() throws IOException
+	{
+		return client;
 	}
 	
 	/**
@@ -560,7 +545,7 @@ public class UserRequestHandler implements Runnable
 	 * @param nicknameSender nickname dell'utente sender
 	 * @param out stream sulla quale rispondere al clients
 	 */
-	private void interactionRequestHandler(JSONObject message,String nicknameSender,DataOutputStream out)
+	private void interactionRequestHandler(ParsedRequest message,String nicknameSender,DataOutputStream out)
 	{	
 		try 
 		{
@@ -570,21 +555,21 @@ public class UserRequestHandler implements Runnable
 			//se il mittente non e' registrato,invio messaggio di errore
 			if(sender == null)
 			{
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND),out);
+				sendFailed(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND,out);
 				return;
 			}
 			
 			//se il mittente non e' online,invio messaggio di errore
 			if(!sender.isOnline()) {
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS),out);
+				sendFailed(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS,out);
 				return;
 			}
 			
-			String nicknameReceiver = MessageAnalyzer.getNicknameReceiver(message);
+			String nicknameReceiver = message.getNicknameReceiver();
 			
 			//se non ho trovato il nick del receiver nel messaggio
 			if(nicknameReceiver == null) {
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+				sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 				return;
 			}
 			
@@ -593,25 +578,25 @@ public class UserRequestHandler implements Runnable
 			
 			//se il receiver non e' registrato
 			if(receiver == null) {
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.RECEIVER_USER_NOT_FOUND),out);
+				sendFailed(ResponseFailedMessage.Errors.RECEIVER_USER_NOT_FOUND,out);
 				return;
 			}
 			
 			//se gli utenti sono gli stessi
 			if(sender.equals(receiver)) {
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SAME_USERS),out);
+				sendFailed(ResponseFailedMessage.Errors.SAME_USERS,out);
 				return;
 			}
 			
 			//controllo il tipo del messaggio di interazione
-			InteractionRequest.Type interactionType = MessageAnalyzer.getInteractionType(message);
+			InteractionRequest.Type interactionType = message.getInteractionType();
 			
 			switch (interactionType) 
 			{
 				//richiesta di ricerca utente destinatario
 				case FIND_USER_REQUEST:
 					//controllo gia' fatti rispondo con un messaggio di OK
-					sendMessage(new ResponseSuccessMessage(),out);
+					sendSuccess(out);
 					break;
 				
 				//richiesta amicizia con utente destinatario
@@ -629,7 +614,7 @@ public class UserRequestHandler implements Runnable
 					
 				//richiesta non valida
 				default:
-					sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+					sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 					break;
 			}
 			
@@ -647,51 +632,54 @@ public class UserRequestHandler implements Runnable
 	 * @param out
 	 * @throws IOException
 	 */
-	private void accessRequestHandler(AccessSystem accessSystem,JSONObject message,String nickname,DataOutputStream out) throws IOException
+	private void accessRequestHandler(AccessSystem accessSystem,ParsedRequest message,String nickname,DataOutputStream out) throws IOException
 	{	
 		//essendo una richiesta di accesso,prendo la password
-		String password = MessageAnalyzer.getPassword(message);
+		String password = message.getPassword();
 		
 		//leggo tipo richiesta di accesso
-		RequestAccessMessage.Type requestAccessType = MessageAnalyzer.getRequestAccessMessageType(message);
+		RequestAccessMessage.Type requestAccessType = message.getRequestAccessType();
 		
 		//caso password non trovata o tipo richiesta di accesso non trovato
 		if(password == null || requestAccessType == null)
 		{
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+			sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 			return;
 		}
 		
+		//dimensione delle pagine con cui inviare le liste,0 se il client le vuole nella risposta
+		int pageSize = Math.min(message.getPageSize(),Config.LOGIN_MAX_PAGE_SIZE);
+		
 		//controllo i possibili casi di richiesta di accesso
 		switch (requestAccessType) 
 		{
 			//caso richiesta di login
 			case LOGIN:								
 				
-				loginRequestHandler(accessSystem,nickname,password,out);
+				loginRequestHandler(accessSystem,nickname,password,pageSize,out);
 				break;
 			
 			//caso richiesta di registrazione
 			case REGISTER:
 				
 				//prendo il codice della lingua
-				String language = MessageAnalyzer.getLanguage(message);
+				String language = message.getLanguage();
 				
 				//caso lingua non trovata
 				if(language == null)
 				{
-					sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+					sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 					return;
 				}
 				
 				//procedura registrazione
-				registerRequestHandler(accessSystem,nickname,password,out,language);
+				registerRequestHandler(accessSystem,nickname,password,pageSize,out,language);
 				
 				break;
 				
 			//caso messaggio non valido
 			default:
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+				sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 				return;
 				
 		}
@@ -707,7 +695,7 @@ public class UserRequestHandler implements Runnable
 	 */
 	private void friendshipRequestHandler(User a, User b ,DataOutputStream out) throws IOException
 	{
-		RelationshipManager relationship = new RelationshipManager(reteSG);
+		RelationshipManager relationship = new RelationshipManager(reteSG,notifier);
 		
 		try 
 		{
@@ -722,7 +710,7 @@ public class UserRequestHandler implements Runnable
 			}
 			//se erano gia' amici
 			else {
-				sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.ALREADY_FRIEND), out);
+				sendFailed(ResponseFailedMessage.Errors.ALREADY_FRIEND,out);
 				return;
 			}
 		} 
@@ -742,14 +730,14 @@ public class UserRequestHandler implements Runnable
 	 * @param message
 	 * @throws IOException
 	 */
-	private void messageSendHandler(User a,User b,DataOutputStream out,JSONObject message) throws IOException
+	private void messageSendHandler(User a,User b,DataOutputStream out,ParsedRequest message) throws IOException
 	{	
 		//prendo messaggio da inviare
-		String text = MessageAnalyzer.getText(message);
+		String text = message.getText();
 		
 		//se non e' stato trovato il tipo del ricevente oppure il messaggio
 		if(text == null) {
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+			sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 			return;
 		}
 		
@@ -771,42 +759,89 @@ public class UserRequestHandler implements Runnable
 	 * @param message messaggio di richiesta
 	 * @throws IOException seci sono errori nell'analisi del messaggio di richiesta
 	 */
-	private void fileSendRequest(User sender,User receiver,DataOutputStream out,JSONObject message) throws IOException
+	@SuppressWarnings("unchecked")
+	private void fileSendRequest(User sender,User receiver,DataOutputStream out,ParsedRequest message) throws IOException
 	{
-		String filename = MessageAnalyzer.getSendFileFilename(message);
+		String filename = message.getSendFileFilename();
 		
 		//nome file non trovato
 		if(filename == null) {
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.INVALID_REQUEST),out);
+			sendFailed(ResponseFailedMessage.Errors.INVALID_REQUEST,out);
 			return;
 		}
 		
 		//se il receiver non e' online,oppure se non ha un canale settato per ricevere i messaggi, invio un messaggio di errore al sender
 		if(!receiver.isOnline()) {
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS),out);
+			sendFailed(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS,out);
 			return;
 		}
 		
-		Socket notifyChannelReceiver = receiver.getNotificationMessageChannel();
+		OutboundMailbox mailbox = receiver.getNotificationMailbox();
 
 		//se receiver non ha settato il canale per ricevere messaggi e file
-		if(notifyChannelReceiver == null) {
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS),out);
+		if(mailbox == null) {
+			sendFailed(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS,out);
 			return;
 		}
 		
-		//invio un messaggio di notifica al receiver,dell'arrivo del file
-		synchronized (notifyChannelReceiver) 
-		{
-			NewIncomingFile msg = new NewIncomingFile(sender.getNickname(),filename);
-			
-			//invio il messaggio di notifica al receiver
-			sendMessage(msg,new DataOutputStream(notifyChannelReceiver.getOutputStream()));
+		//la risposta arriva dopo che il thread e' passato alle richieste successive
+		long requestId = this.requestId;
+		
+		//notifico al receiver l'arrivo del file,dopo i messaggi gia' in coda,senza attendere la sua risposta
+		CompletableFuture<Void> response = mailbox.exchange(offerId -> new NewIncomingFile(sender.getNickname(),filename,offerId),Config.FILE_OFFER_TIMEOUT)
+			.handle((reply,e) -> {
+				try
+				{
+					//inoltro la risposta del destinatario al mittente
+					if(e == null)
+					{
+						if(requestId != ParsedRequest.NO_REQUEST_ID)
+							reply.put(RequestMessage.FIELD_REQUEST_ID,requestId);
 						
-			//inoltro la risposta del destinatario al mittente
-			out.writeUTF(new DataInputStream(new BufferedInputStream(notifyChannelReceiver.getInputStream())).readUTF());
-		}
+						sendDeferredResponse(reply,out);
+					}
+					//receiver troppo lento
+					else if(e instanceof RejectedExecutionException)
+						sendDeferredResponse(stamp(new ResponseFailedMessage(ResponseFailedMessage.Errors.RECEIVER_USER_BUSY),requestId).getJsonObject(),out);
+					//risposta non arrivata in tempo
+					else if(e instanceof TimeoutException)
+						sendDeferredResponse(stamp(new ResponseFailedMessage(ResponseFailedMessage.Errors.CANNOT_RECEIVE_FILE),requestId).getJsonObject(),out);
+					//canale del receiver chiuso prima della risposta
+					else
+						sendDeferredResponse(stamp(new ResponseFailedMessage(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS),requestId).getJsonObject(),out);
+				}
+				catch (IOException e1) {
+					System.out.println("Impossibile inoltrare la risposta all'offerta del file a "+sender.getNickname());
+				}
+				
+				return null;
+			});
 		
+		//senza id il client associa le risposte alle richieste in base all'ordine:le risposte successive attendono questa
+		if(requestId == ParsedRequest.NO_REQUEST_ID)
+			awaitDeferredResponse(response);
+	}
+	
+	/**
+	 * Attende l'invio di una risposta differita prima di gestire le richieste successive del client
+	 * @param response completato quando la risposta differita e' stata inviata
+	 */
+	protected void awaitDeferredResponse(CompletableFuture<Void> response) {
+		response.join();
+	}
+	
+	/**
+	 * Invia al client la risposta ad una richiesta gia' terminata,da un thread diverso da quello che gestisce le sue richieste
+	 * @param response risposta da inviare
+	 * @param out stream su cui e' stata ricevuta la richiesta
+	 * @throws IOException se ci sono errori nell'invio della risposta
+	 */
+	protected void sendDeferredResponse(JSONObject response,DataOutputStream out) throws IOException
+	{
+		//la risposta non deve mescolarsi a quelle scritte dal thread delle richieste
+		synchronized (out) {
+			wireFormat.write(response,out);
+		}
 	}
 	
 	/**
@@ -821,38 +856,41 @@ public class UserRequestHandler implements Runnable
 	{
 		//se il receiver non e' online,oppure se non ha un canale settato per ricevere i messaggi, invio un messaggio di errore al sender
 		if(!receiver.isOnline()) {
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS),out);
+			sendFailed(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS,out);
 			return;
 		}
 		
-		//prendo canale di notifica dei messaggi del receiver
-		Socket notifyChannelReceiver = receiver.getNotificationMessageChannel();
+		//prendo la coda dei messaggi verso il canale di notifica del receiver
+		OutboundMailbox mailbox = receiver.getNotificationMailbox();
 		
 		//receiver non ha settato il canale per ricevere messaggi e file
-		if(notifyChannelReceiver == null) {
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS),out);
+		if(mailbox == null) {
+			sendFailed(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS,out);
 			return;
 		}
 		
-		synchronized (notifyChannelReceiver) 
+		//traduzione del messaggio per il destinatario,in background
+		CompletableFuture<String> translation = translations.translate(text,sender.getLingua(),receiver.getLingua());
+		
+		//il messaggio viene inviato quando la traduzione e' pronta,rispettando l'ordine dei messaggi verso il receiver
+		String nicknameSender = sender.getNickname();
+		
+		switch (mailbox.offer(translation.thenApply(translatedText -> new NewChatMessage(nicknameSender,translatedText))))
 		{
-			String translatedText = text;
-			
-			//traduzione del messaggio per il destinatario
-			try {
-				 translatedText = Translator.translate(text,sender.getLingua(),receiver.getLingua());
-			} 
-			//errore nella traduzione,si invia il messaggio originale non tradotto
-			catch (Exception e) {}
-			
-			//creo il messaggio di notifica da inviare al receiver
-			NewChatMessage msg = new NewChatMessage(sender.getNickname(), translatedText);
+			//canale del receiver chiuso nel frattempo
+			case CLOSED:
+				sendFailed(ResponseFailedMessage.Errors.RECEIVER_USER_INVALID_STATUS,out);
+				break;
 			
-			//invio il messaggio di notifica al receiver
-			sendMessage(msg,new DataOutputStream(notifyChannelReceiver.getOutputStream()));
+			//receiver troppo lento
+			case REJECTED:
+				sendFailed(ResponseFailedMessage.Errors.RECEIVER_USER_BUSY,out);
+				break;
 			
-			//messaggio inviato,mando messaggio di ok al sender
-			sendMessage(new ResponseSuccessMessage(),out);
+			//messaggio accettato,mando messaggio di ok al sender senza attendere la traduzione
+			default:
+				sendSuccess(out);
+				break;
 		}
 	}
 	
@@ -861,10 +899,11 @@ public class UserRequestHandler implements Runnable
 	 * @param accessSystem sistema di gestione accessi al sistema
 	 * @param nickname nickname utente che si vuole loggare
 	 * @param password password utente
+	 * @param pageSize elementi massimi delle pagine con cui inviare le liste,0 per inviarle nella risposta
 	 * @param out stream output
 	 * @throws IOException errore invio riposta
 	 */
-	private void loginRequestHandler(AccessSystem accessSystem,String nickname,String password,DataOutputStream out) throws IOException
+	private void loginRequestHandler(AccessSystem accessSystem,String nickname,String password,int pageSize,DataOutputStream out) throws IOException
 	{
 		List<User> amici = null;		
 		
@@ -878,7 +917,7 @@ public class UserRequestHandler implements Runnable
 		catch (PasswordMismatchingException e) 
 		{
 			//invio messaggio di errore password errata
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.PASSWORD_MISMATCH),out);
+			sendFailed(ResponseFailedMessage.Errors.PASSWORD_MISMATCH,out);
 			//e.printStackTrace();
 			return;
 		} 
@@ -886,22 +925,24 @@ public class UserRequestHandler implements Runnable
 		catch (UserStatusException e) 
 		{
 			//invio messaggio di errore stato utente non valido
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS),out);
+			sendFailed(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS,out);
 			//e.printStackTrace();
 			return;
 		} 
 		catch (UserNotFindException e) 
 		{
 			//invio messaggio di errore, utente non trovato
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND),out);
+			sendFailed(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND,out);
 			//e.printStackTrace();
 			return;
 		}
 		
 		//operazione e' andata a buon fine mando un messaggio di OK,con la lista degli amici e delle chatroom
-		synchronized (chatrooms) {
-			sendMessage(new SuccessfulLogin(amici,chatrooms),out);
-		}
+		//le chatroom vengono inviate con le porte su cui arrivano i messaggi nella lingua dell'utente
+		if(pageSize > 0)
+			sendPages(new SuccessfulLogin(),new ListPager(amici,chatrooms,reteSG.cercaUtente(nickname),pageSize),out);
+		else
+			sendMessage(new SuccessfulLogin(amici,chatrooms.snapshot(reteSG.cercaUtente(nickname))),out);
 	}
 	
 	/**
@@ -916,12 +957,15 @@ public class UserRequestHandler implements Runnable
 		try
 		{
 			accessSystem.logOut(nickname);
+			
+			//l'utente non riceve piu' notifiche,scarto quelle in attesa
+			notifier.remove(reteSG.cercaUtente(nickname));
 		}
 		//utente non trovato
 		catch(UserNotFindException e) 
 		{
 			//invio messaggio di errore, utente non trovato
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND),out);
+			sendFailed(ResponseFailedMessage.Errors.SENDER_USER_NOT_FOUND,out);
 			//e.printStackTrace();
 			return;
 		} 
@@ -929,13 +973,13 @@ public class UserRequestHandler implements Runnable
 		catch (UserStatusException e) 
 		{
 			//invio messaggio di errore stato utente non valido
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS),out);
+			sendFailed(ResponseFailedMessage.Errors.SENDER_USER_INVALID_STATUS,out);
 			//e.printStackTrace();
 			return;
 		}
 		
 		//invio messaggio di ok
-		sendMessage(new ResponseSuccessMessage(),out);
+		sendSuccess(out);
 		
 	}
 	
@@ -944,11 +988,12 @@ public class UserRequestHandler implements Runnable
 	 * @param accessSystem sistema di gestione accessi al sistema
 	 * @param nickname nickname utente che si vuole registrare
 	 * @param password passwords scelta
-	 * @param language lingua scelta
+	 * @param pageSize elementi massimi delle pagine con cui inviare le chatroom,0 per inviarle nella risposta
 	 * @param out stream output
+	 * @param language lingua scelta
 	 * @throws IOException errore invio risposta
 	 */
-	private void registerRequestHandler(AccessSystem accessSystem,String nickname,String password,DataOutputStream out,String language) throws IOException
+	private void registerRequestHandler(AccessSystem accessSystem,String nickname,String password,int pageSize,DataOutputStream out,String language) throws IOException
 	{
 		//avvio procedura di registrazione
 		try 
@@ -958,15 +1003,16 @@ public class UserRequestHandler implements Runnable
 		//caso utente gia' registrato con quel nick
 		catch (UserAlreadyRegistered e) 
 		{	
-			sendMessage(new ResponseFailedMessage(ResponseFailedMessage.Errors.USER_ALREADY_REGISTERED),out);
+			sendFailed(ResponseFailedMessage.Errors.USER_ALREADY_REGISTERED,out);
 			//e.printStackTrace();
 			return;
 		}
 		
-		synchronized (chatrooms) {
-			//operazione e' andata a buon fine mando un messaggio di OK
-			sendMessage(new SuccessfulRegistration(chatrooms),out);
-		}
+		//operazione e' andata a buon fine mando un messaggio di OK
+		if(pageSize > 0)
+			sendPages(new SuccessfulRegistration(),new ListPager(null,chatrooms,reteSG.cercaUtente(nickname),pageSize),out);
+		else
+			sendMessage(new SuccessfulRegistration(chatrooms.snapshot(reteSG.cercaUtente(nickname))),out);
 	
 	}
 }
@@ -0,0 +1,95 @@
+package utils;
+
+/**
+ * Interruttore che protegge il server da un servizio esterno non funzionante.
+ * Dopo un numero fissato di fallimenti consecutivi l'interruttore si apre,e le richieste al servizio vengono rifiutate
+ * subito per un tempo fissato. Scaduto il tempo viene lasciata passare una sola richiesta di prova:
+ * se ha successo l'interruttore si chiude,altrimenti resta aperto per un altro periodo.
+ * La classe e' thread-safe.
+ * @author Gionatha Sturba
+ *
+ */
+public class CircuitBreaker
+{
+	/**
+	 * Stati dell'interruttore
+	 */
+	public enum State {CLOSED,OPEN,HALF_OPEN};
+
+	private int failureThreshold; //fallimenti consecutivi che aprono l'interruttore
+	private long openTime; //millisecondi in cui l'interruttore resta aperto
+	private State state;
+	private int failures; //fallimenti consecutivi
+	private long openedAt; //istante di apertura dell'interruttore
+
+	/**
+	 * Crea un interruttore chiuso
+	 * @param failureThreshold fallimenti consecutivi che aprono l'interruttore
+	 * @param openTime millisecondi in cui l'interruttore resta aperto
+	 */
+	public CircuitBreaker(int failureThreshold,long openTime)
+	{
+		if(failureThreshold <= 0 || openTime <= 0)
+			throw new IllegalArgumentException();
+
+		this.failureThreshold = failureThreshold;
+		this.openTime = openTime;
+		this.state = State.CLOSED;
+		this.failures = 0;
+	}
+
+	/**
+	 * @return true se la richiesta al servizio puo' essere effettuata
+	 */
+	public synchronized boolean allowRequest()
+	{
+		switch (state)
+		{
+			case OPEN:
+				//tempo scaduto,lascio passare una richiesta di prova
+				if(System.currentTimeMillis() - openedAt >= openTime) {
+					state = State.HALF_OPEN;
+					return true;
+				}
+
+				return false;
+
+			//richiesta di prova gia' in corso
+			case HALF_OPEN:
+				return false;
+
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Registra una richiesta al servizio andata a buon fine
+	 */
+	public synchronized void recordSuccess()
+	{
+		failures = 0;
+		state = State.CLOSED;
+	}
+
+	/**
+	 * Registra una richiesta al servizio fallita
+	 */
+	public synchronized void recordFailure()
+	{
+		failures++;
+
+		if(state == State.HALF_OPEN || failures >= failureThreshold)
+		{
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * @return stato dell'interruttore
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+}
@@ -11,13 +11,46 @@ public class Config
 	public static final String SERVER_HOST_NAME = "localhost";
 	public static final int	SERVER_TCP_PORT= 5000;
 	
+	//NIO
+	public static final int NIO_EVENT_LOOPS = 2; //thread che gestiscono le connessioni
+	public static final int NIO_WORKER_THREADS = 4 * Runtime.getRuntime().availableProcessors(); //thread che gestiscono le richieste
+	
 	//RMI
 	public static final String SERVER_RMI_SERVICE_NAME = "SocialGossipNotification";
 	public static final int SERVER_RMI_PORT = 6000;
+	public static final int RMI_CALLBACK_TIMEOUT = 5000; //millisecondi massimi di attesa di una notifica RMI verso un client
+	
+	//NOTIFICHE
+	public static final int NOTIFICATION_WORKERS = 4; //thread che consegnano le notifiche RMI
+	public static final int NOTIFICATION_QUEUE_CAPACITY = 256; //notifiche massime in attesa per ogni utente
+	public static final int NOTIFICATION_MAX_RETRIES = 3; //tentativi ulteriori di una notifica RMI fallita,prima di scartare il canale dell'utente
+	public static final long NOTIFICATION_RETRY_DELAY = 500; //millisecondi prima di ritentare una notifica RMI fallita,raddoppiati ad ogni tentativo
+	public static final long PRESENCE_COALESCING_WINDOW = 200; //millisecondi in cui i cambi di stato vengono raggruppati
+	public static final int MAILBOX_CAPACITY = 1024; //messaggi massimi in coda verso il canale di notifica di un utente
+	public static final int MAILBOX_BATCH_SIZE = 64; //messaggi massimi inviati sul canale di notifica con un flush
+	public static final String MAILBOX_OVERFLOW_POLICY = "REJECT"; //politica a coda piena (DROP,DISCONNECT oppure REJECT)
+	public static final int MAILBOX_THREADS = 64; //thread massimi che scrivono sui canali di notifica e ne leggono le risposte
+	public static final int MAILBOX_TASK_QUEUE_CAPACITY = 4096; //scritture e letture massime dei canali di notifica in attesa di un thread
+	public static final int MAILBOX_READ_TIMEOUT = 1000; //millisecondi dopo cui il reader di un canale di notifica controlla se ci sono ancora risposte attese
+	public static final long FILE_OFFER_TIMEOUT = 10000; //millisecondi massimi di attesa della risposta ad un'offerta di file
+	public static final int LOGIN_MAX_PAGE_SIZE = 1024; //elementi massimi di una pagina della lista di amici e chatroom inviata al login
 
 	//MULTICAST
-	public static final String FIRST_MULTICAST_ADDR = "224.0.0.1";
-	public static final String LAST_MULTICAST_ADDR = "224.0.0.255";
+	public static final int CHATROOM_DISPATCHER_THREADS = 1; //thread che inoltrano i messaggi di tutte le chatroom
+	public static final String MULTICAST_ADDRESS_RANGE = "239.0.0.0/16"; //indirizzi assegnabili alle chatroom,in notazione CIDR
+
+	//TRADUZIONI
+	public static final String TRANSLATION_ENGINE = "MYMEMORY"; //motore di traduzione (MYMEMORY oppure LOCAL)
+	public static final int TRANSLATION_CACHE_CAPACITY = 10000; //traduzioni massime in cache
+	public static final long TRANSLATION_CACHE_TTL = 24 * 60 * 60 * 1000; //millisecondi di validita' di una traduzione in cache
+	public static final String TRANSLATION_CACHE_FILE = null; //file su cui salvare la cache delle traduzioni,null per usare solo la memoria
+	public static final int TRANSLATION_THREADS = 4; //thread che effettuano le traduzioni
+	public static final int TRANSLATION_QUEUE_CAPACITY = 1024; //lotti di traduzioni massimi in attesa
+	public static final int TRANSLATION_BATCH_SIZE = 32; //testi massimi tradotti insieme tra la stessa coppia di lingue
+	public static final long TRANSLATION_BATCH_WINDOW = 5; //millisecondi massimi di attesa di altri testi da tradurre insieme
+	public static final int TRANSLATION_TIMEOUT = 2000; //millisecondi massimi di attesa di una traduzione,poi si consegna il testo originale
+	public static final int TRANSLATION_BREAKER_FAILURES = 5; //fallimenti consecutivi dopo cui il servizio di traduzione viene sospeso
+	public static final long TRANSLATION_BREAKER_OPEN_TIME = 30000; //millisecondi di sospensione del servizio di traduzione
 	
 	public static final String DOWNLOAD_DIRECTORY = "/resources/downloads/";
 }
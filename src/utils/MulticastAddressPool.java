@@ -0,0 +1,145 @@
+package utils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Insieme degli indirizzi multicast assegnabili alle chatroom,indicato in notazione CIDR (es. 239.0.0.0/16).
+ * Ogni indirizzo viene assegnato ad una sola chatroom alla volta,e torna disponibile quando viene rilasciato.
+ * Gli indirizzi rilasciati sono tenuti in una lista libera: assegnazione e rilascio costano O(1).
+ * La classe e' thread-safe.
+ * @author Gionatha Sturba
+ *
+ */
+public class MulticastAddressPool
+{
+	private int base; //primo indirizzo dell'intervallo
+	private int size; //numero di indirizzi dell'intervallo
+	private int next; //primo indirizzo mai assegnato,come offset da base
+	private int[] released; //pila degli offset rilasciati,riassegnati per primi
+	private int releasedCount; //numero di offset nella pila
+	private boolean[] leased; //true se l'offset e' assegnato
+
+	/**
+	 * Crea un insieme di indirizzi multicast
+	 * @param cidr intervallo di indirizzi in notazione CIDR,es. 239.0.0.0/16
+	 * @throws UnknownHostException se l'indirizzo non e' valido
+	 * @throws IllegalArgumentException se l'intervallo non e' composto da soli indirizzi multicast IPv4
+	 */
+	public MulticastAddressPool(String cidr) throws UnknownHostException
+	{
+		if(cidr == null)
+			throw new NullPointerException();
+
+		String[] parts = cidr.split("/");
+
+		if(parts.length != 2)
+			throw new IllegalArgumentException();
+
+		InetAddress address = InetAddress.getByName(parts[0]);
+		int prefix = Integer.parseInt(parts[1]);
+
+		//gli indirizzi multicast IPv4 sono 224.0.0.0/4
+		if(address.getAddress().length != 4 || !address.isMulticastAddress() || prefix < 4 || prefix > 32)
+			throw new IllegalArgumentException();
+
+		int mask = -1 << (32 - prefix);
+
+		this.base = toInt(address) & mask;
+		this.size = 1 << (32 - prefix);
+		this.next = 0;
+		this.released = new int[16];
+		this.releasedCount = 0;
+		this.leased = new boolean[16];
+	}
+
+	/**
+	 * Assegna un indirizzo libero
+	 * @return indirizzo assegnato,null se tutti gli indirizzi sono gia' assegnati
+	 */
+	public synchronized InetAddress lease()
+	{
+		int offset;
+
+		//riuso un indirizzo rilasciato,se c'e'
+		if(releasedCount > 0)
+			offset = released[--releasedCount];
+		else if(next < size)
+			offset = next++;
+		//indirizzi esauriti
+		else
+			return null;
+
+		if(offset >= leased.length)
+			leased = grow(leased,offset);
+
+		leased[offset] = true;
+
+		return toAddress(base + offset);
+	}
+
+	/**
+	 * Rilascia un indirizzo assegnato,che puo' essere assegnato ad una nuova chatroom
+	 * @param address indirizzo da rilasciare
+	 */
+	public synchronized void release(InetAddress address)
+	{
+		if(address == null)
+			throw new NullPointerException();
+
+		int offset = toInt(address) - base;
+
+		//indirizzo fuori dall'intervallo,o non assegnato
+		if(offset < 0 || offset >= next || !leased[offset])
+			return;
+
+		leased[offset] = false;
+
+		if(releasedCount == released.length) {
+			int[] bigger = new int[released.length * 2];
+			System.arraycopy(released,0,bigger,0,releasedCount);
+			released = bigger;
+		}
+
+		released[releasedCount++] = offset;
+	}
+
+	/**
+	 * @return numero di indirizzi attualmente assegnati
+	 */
+	public synchronized int leased() {
+		return next - releasedCount;
+	}
+
+	/*METODI PRIVATI*/
+
+	private static boolean[] grow(boolean[] array,int index)
+	{
+		boolean[] bigger = new boolean[Math.max(array.length * 2,index + 1)];
+		System.arraycopy(array,0,bigger,0,array.length);
+		return bigger;
+	}
+
+	private static int toInt(InetAddress address)
+	{
+		byte[] b = address.getAddress();
+
+		if(b.length != 4)
+			throw new IllegalArgumentException();
+
+		return (b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | (b[3] & 0xFF);
+	}
+
+	private static InetAddress toAddress(int value)
+	{
+		byte[] b = {(byte) (value >>> 24),(byte) (value >>> 16),(byte) (value >>> 8),(byte) value};
+
+		try {
+			return InetAddress.getByAddress(b);
+		}
+		//non possibile,l'indirizzo ha 4 byte
+		catch (UnknownHostException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package utils;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assegna le porte UDP alle chatroom del server,tenendo traccia delle porte in uso.
+ * Di default i socket vengono legati alla porta 0,e la porta viene scelta direttamente dal sistema operativo:
+ * non c'e' nessuna scansione delle porte.
+ * In alternativa si puo' indicare un intervallo di porte (es. per le regole di un firewall),
+ * gestito con una lista di porte libere: le porte vengono riciclate quando vengono rilasciate.
+ * La classe e' thread-safe.
+ * @author Gionatha Sturba
+ *
+ */
+public class PortAllocator
+{
+	private static final int EPHEMERAL_PORT = 0;
+
+	private Set<Integer> leased; //porte attualmente assegnate
+	private ArrayDeque<Integer> freePorts; //porte libere dell'intervallo,null se si usano le porte effimere
+	private int rangeSize; //numero di porte dell'intervallo
+
+	/**
+	 * Crea un allocatore che usa le porte effimere scelte dal sistema operativo
+	 */
+	public PortAllocator()
+	{
+		leased = ConcurrentHashMap.newKeySet();
+		freePorts = null;
+	}
+
+	/**
+	 * Crea un allocatore che assegna le porte di un intervallo
+	 * @param firstPort prima porta dell'intervallo
+	 * @param lastPort ultima porta dell'intervallo
+	 */
+	public PortAllocator(int firstPort,int lastPort)
+	{
+		if(firstPort < PortScanner.MIN_PORT_NUMBER || lastPort > PortScanner.MAX_PORT_NUMBER || firstPort > lastPort)
+			throw new IllegalArgumentException();
+
+		leased = ConcurrentHashMap.newKeySet();
+		rangeSize = lastPort - firstPort + 1;
+		freePorts = new ArrayDeque<Integer>(rangeSize);
+
+		for (int port = firstPort; port <= lastPort; port++) {
+			freePorts.add(port);
+		}
+	}
+
+	/**
+	 * Apre un DatagramChannel legato ad una nuova porta
+	 * @return canale aperto,la porta assegnata e' quella locale del canale
+	 * @throws IOException se non ci sono porte libere o c'e' un errore nell'apertura del canale
+	 */
+	public DatagramChannel openDatagramChannel() throws IOException
+	{
+		for (int attempts = 0; ; attempts++)
+		{
+			int port = nextPort(attempts);
+			DatagramChannel channel = DatagramChannel.open();
+
+			try {
+				channel.bind(new InetSocketAddress(port));
+				leased.add(((InetSocketAddress) channel.getLocalAddress()).getPort());
+				return channel;
+			}
+			//porta dell'intervallo occupata da un altro processo,provo la successiva
+			catch (BindException e) {
+				channel.close();
+				discard(port,e);
+			}
+			catch (IOException e) {
+				channel.close();
+				giveBack(port);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Apre un MulticastSocket legato ad una nuova porta
+	 * @return socket aperto,la porta assegnata e' quella locale del socket
+	 * @throws IOException se non ci sono porte libere o c'e' un errore nell'apertura del socket
+	 */
+	public MulticastSocket openMulticastSocket() throws IOException
+	{
+		//socket legati ad una porta gia' assegnata,tenuti aperti finche' non ne trovo una nuova
+		List<MulticastSocket> duplicates = new ArrayList<MulticastSocket>();
+
+		try
+		{
+			for (int attempts = 0; ; attempts++)
+			{
+				int port = nextPort(attempts);
+
+				try
+				{
+					MulticastSocket socket = new MulticastSocket(port);
+
+					//il MulticastSocket usa SO_REUSEADDR,quindi la porta 0 puo' essere legata ad una porta gia' assegnata
+					if(leased.add(socket.getLocalPort()))
+						return socket;
+
+					duplicates.add(socket);
+				}
+				//porta dell'intervallo occupata da un altro processo,provo la successiva
+				catch (BindException e) {
+					discard(port,e);
+				}
+				catch (IOException e) {
+					giveBack(port);
+					throw e;
+				}
+			}
+		}
+		finally
+		{
+			for (MulticastSocket duplicate : duplicates) {
+				duplicate.close();
+			}
+		}
+	}
+
+	/**
+	 * Rilascia una porta assegnata,dopo che il suo socket e' stato chiuso
+	 * @param port porta da rilasciare
+	 */
+	public void release(int port)
+	{
+		if(!leased.remove(port))
+			return;
+
+		giveBack(port);
+	}
+
+	/**
+	 * @return numero di porte attualmente assegnate
+	 */
+	public int leased() {
+		return leased.size();
+	}
+
+	/*METODI PRIVATI*/
+
+	/**
+	 * @return porta a cui legare il prossimo socket
+	 * @throws IOException se le porte dell'intervallo sono esaurite
+	 */
+	private int nextPort(int attempts) throws IOException
+	{
+		if(freePorts == null)
+			return EPHEMERAL_PORT;
+
+		synchronized (freePorts)
+		{
+			//ho gia' provato tutte le porte libere
+			if(freePorts.isEmpty() || attempts >= rangeSize)
+				throw new IOException("Nessuna porta libera");
+
+			return freePorts.poll();
+		}
+	}
+
+	/**
+	 * Rimette una porta dell'intervallo tra quelle libere
+	 */
+	private void giveBack(int port)
+	{
+		if(freePorts == null)
+			return;
+
+		synchronized (freePorts) {
+			freePorts.add(port);
+		}
+	}
+
+	/**
+	 * Gestisce una porta occupata: nel caso delle porte effimere e' un errore,
+	 * mentre una porta dell'intervallo viene rimessa in fondo alla lista,per riprovarla in seguito
+	 */
+	private void discard(int port,BindException e) throws BindException
+	{
+		if(freePorts == null)
+			throw e;
+
+		giveBack(port);
+	}
+}
@@ -3,12 +3,15 @@ package utils.graph;
 import utils.graph.exception.*;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Rappresenta la struttura dati di un grafo,composto da vertici ed archi.
+ * I vertici sono indicizzati tramite hash: hashCode() di E deve essere coerente con equals().
+ * L'insieme dei vertici puo' essere letto e modificato da piu' thread senza sincronizzazione esterna,
+ * mentre gli archi di un nodo vanno letti e modificati tenendo il lock (monitor) del nodo stesso.
  * @author Gionatha Sturba
  *
  * @param <E> parametro generico dei valori dei vertici
@@ -31,7 +34,7 @@ public final class Grafo<E>
      */
     public Grafo(boolean orient)
     {
-        this.adj = new HashMap<>();
+        this.adj = new ConcurrentHashMap<>();
         this.isOriented = orient;
     }
     
@@ -48,7 +51,7 @@ public final class Grafo<E>
             throw new NullPointerException();
         }
         
-        adj = new HashMap<>();
+        adj = new ConcurrentHashMap<>();
         isOriented = orient;
         
         for(E i : vertici)
@@ -66,12 +69,15 @@ public final class Grafo<E>
     {
         for(Nodo<E> i : adj.values())
         {
-            System.out.print(i.getKey().toString()+" ->[");
-            for(Arco<E> j : i.getArchi())
+            synchronized (i) 
             {
-                System.out.print(j.getDst().getKey().toString()+" ");
+                System.out.print(i.getKey().toString()+" ->[");
+                for(Arco<E> j : i.getArchi())
+                {
+                    System.out.print(j.getDst().getKey().toString()+" ");
+                }
+                System.out.println("]"+'\n');
             }
-            System.out.println("]"+'\n');
         }
     }
     
@@ -83,13 +89,12 @@ public final class Grafo<E>
      */
     public void addVertice(E vertice)throws VertexAlreadyExist
     {
-        //se il vertice e' gia presente
-        if(containsVertice(vertice))
-            throw new VertexAlreadyExist();
+        if(vertice == null)
+            throw new NullPointerException();
         
-        //altrimenti inserisco
-        Nodo<E> toAdd = new Nodo<E>(vertice);
-        adj.put(vertice, toAdd);
+        //inserisco il vertice,se non e' gia' presente
+        if(adj.putIfAbsent(vertice, new Nodo<E>(vertice)) != null)
+            throw new VertexAlreadyExist();
     }
     
     /**
@@ -209,12 +214,7 @@ public final class Grafo<E>
             throw new NullPointerException();
         }
         
-        for (E item : adj.keySet()) {
-			if(item.equals(vertice))
-				return true;
-		}
-        
-        return false;
+        return adj.containsKey(vertice);
     }
     
     /**
@@ -227,14 +227,21 @@ public final class Grafo<E>
     		throw new NullPointerException();
     	
     	//cerco vertice
-    	for (E key : adj.keySet()) 
-    	{
-    		//se ho trovato il vertice che cercavo
-			if(key.equals(src))
-				return key;
-		}
+    	Nodo<E> nodo = adj.get(src);
     	
-    	return null;
+    	return nodo == null ? null : nodo.getKey();
+    }
+    
+    /**
+     * @param vertice vertice di cui si vuole il nodo
+     * @return nodo che rappresenta il vertice nel grafo,null se il vertice non esiste
+     */
+    public Nodo<E> getNodo(E vertice)
+    {
+        if(vertice == null)
+            throw new NullPointerException();
+        
+        return adj.get(vertice);
     }
     
     /*METODI PRIVATI*/
@@ -291,7 +298,7 @@ public final class Grafo<E>
      */
     public int getVerticiSize()
     {
-        return adj.values().size();
+        return adj.size();
     }
     
     /**
@@ -0,0 +1,284 @@
+package utils.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import utils.graph.exception.NoVertexFound;
+import utils.graph.exception.VertexAlreadyExist;
+
+/**
+ * Grafo non orientato e non pesato,pensato per grafi sociali con molti archi.
+ * Ad ogni vertice viene assegnato un id intero denso, e gli archi sono memorizzati come insiemi di id
+ * (InsiemeInteri): non esiste un oggetto per ogni arco,e il controllo di un arco costa O(1) atteso.
+ * La classe e' thread-safe: le operazioni sui vertici non acquisiscono lock,
+ * mentre quelle sugli archi bloccano soltanto i vertici coinvolti.
+ * I vertici sono indicizzati tramite hash: hashCode() di E deve essere coerente con equals().
+ * @author Gionatha Sturba
+ *
+ * @param <E> parametro generico dei valori dei vertici
+ */
+public final class GrafoCompatto<E>
+{
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS; //vertici per blocco della tabella id -> vertice
+	private static final int MAX_CHUNKS = 1 << (31 - CHUNK_BITS);
+
+	private ConcurrentHashMap<E,Vertice<E>> vertici; //indice valore -> vertice
+	private AtomicReferenceArray<Vertice<E>[]> perId; //tabella id -> vertice,divisa in blocchi allocati al bisogno
+	private AtomicInteger nextId; //prossimo id da assegnare
+
+	/*COSTRUTTORI*/
+
+	/**
+	 * Crea e inizializza un nuovo grafo,senza vertici
+	 */
+	public GrafoCompatto()
+	{
+		vertici = new ConcurrentHashMap<>();
+		perId = new AtomicReferenceArray<>(MAX_CHUNKS);
+		nextId = new AtomicInteger(0);
+	}
+
+	/* METODI */
+
+	/**
+	 * Aggiunge un vertice al grafo
+	 * @param vertice vertice da aggiungere
+	 * @throws VertexAlreadyExist se un vertice uguale esiste gia'
+	 */
+	public void addVertice(E vertice) throws VertexAlreadyExist
+	{
+		if(vertice == null)
+			throw new NullPointerException();
+
+		boolean[] creato = {false};
+
+		//l'id viene assegnato una sola volta,solo se il vertice non esiste
+		vertici.computeIfAbsent(vertice, key -> {
+			creato[0] = true;
+			return nuovoVertice(key);
+		});
+
+		if(!creato[0])
+			throw new VertexAlreadyExist();
+	}
+
+	/**
+	 * Aggiunge un arco tra 2 vertici
+	 * @param src primo vertice
+	 * @param dest secondo vertice
+	 * @return true se l'arco e' stato aggiunto,false se era gia' presente
+	 * @throws NoVertexFound se almeno uno o entrambi i vertici non fanno parte del grafo
+	 */
+	public boolean addArco(E src,E dest)
+	{
+		Vertice<E> a = checkVertice(src);
+		Vertice<E> b = checkVertice(dest);
+
+		//blocco i 2 vertici sempre in ordine di id,per evitare deadlock tra archi incrociati
+		Vertice<E> first = a.id < b.id ? a : b;
+		Vertice<E> second = a.id < b.id ? b : a;
+
+		synchronized (first)
+		{
+			synchronized (second)
+			{
+				if(!a.adiacenti.add(b.id))
+					return false;
+
+				b.adiacenti.add(a.id);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Controlla se esiste l'arco (src,dest),nel grafo
+	 * @param src primo vertice
+	 * @param dest secondo vertice
+	 * @return true se l'arco esiste,false altrimenti
+	 * @throws NoVertexFound se almeno uno o entrambi i vertici non fanno parte del grafo
+	 */
+	public boolean hasArco(E src,E dest)
+	{
+		Vertice<E> a = checkVertice(src);
+		Vertice<E> b = checkVertice(dest);
+
+		synchronized (a) {
+			return a.adiacenti.contains(b.id);
+		}
+	}
+
+	/**
+	 * @param vertice vertice di cui si vogliono i vertici adiacenti
+	 * @return lista dei vertici collegati al vertice richiesto
+	 * @throws NoVertexFound se il vertice non fa parte del grafo
+	 */
+	public List<E> getAdiacenti(E vertice)
+	{
+		Vertice<E> v = checkVertice(vertice);
+		int[] ids;
+
+		synchronized (v) {
+			ids = v.adiacenti.toArray();
+		}
+
+		List<E> adiacenti = new ArrayList<>(ids.length);
+
+		for (int id : ids) {
+			adiacenti.add(getById(id).key);
+		}
+
+		return Collections.unmodifiableList(adiacenti);
+	}
+
+	/**
+	 * Controlla se esiste il vertice cercato,nel grafo.
+	 * @param vertice vertice da ricercare
+	 * @return true se il vertice esiste,false altrimenti
+	 * @throws NullPointerException se il vertice e' null
+	 */
+	public boolean containsVertice(E vertice)
+	{
+		if(vertice == null)
+			throw new NullPointerException();
+
+		return vertici.containsKey(vertice);
+	}
+
+	/**
+	 * @param src vertice da cercare e ritornare
+	 * @return vertice cercato se esiste,altrimenti null
+	 */
+	public E getVertice(E src)
+	{
+		if(src == null)
+			throw new NullPointerException();
+
+		Vertice<E> v = vertici.get(src);
+
+		return v == null ? null : v.key;
+	}
+
+	/**
+	 * Stampa sullo stdout una rappresentazione attuale del grafo.
+	 */
+	public void stampaGrafo()
+	{
+		for(Vertice<E> v : vertici.values())
+		{
+			StringBuilder riga = new StringBuilder(v.key.toString()).append(" ->[");
+
+			for(E adiacente : getAdiacenti(v.key))
+			{
+				riga.append(adiacente.toString()).append(" ");
+			}
+
+			System.out.println(riga.append("]").append('\n'));
+		}
+	}
+
+	/*GETTERS*/
+
+	/**
+	 * @return lista dei vertici del grafo
+	 */
+	public List<E> getVertici()
+	{
+		return Collections.unmodifiableList(new ArrayList<>(vertici.keySet()));
+	}
+
+	/**
+	 * @return numero dei vertici del grafo
+	 */
+	public int getVerticiSize()
+	{
+		return vertici.size();
+	}
+
+	/**
+	 * @return numero degli archi del grafo
+	 */
+	public long getArchiSize()
+	{
+		long count = 0;
+
+		for(Vertice<E> v : vertici.values())
+		{
+			synchronized (v) {
+				count += v.adiacenti.size();
+			}
+		}
+
+		//ogni arco e' memorizzato su entrambi i vertici
+		return count / 2;
+	}
+
+	/*METODI PRIVATI*/
+
+	/**
+	 * Crea un nuovo vertice con il prossimo id libero,e lo inserisce nella tabella id -> vertice
+	 */
+	@SuppressWarnings("unchecked")
+	private Vertice<E> nuovoVertice(E key)
+	{
+		int id = nextId.getAndIncrement();
+
+		if(id < 0)
+			throw new IllegalStateException("Numero massimo di vertici raggiunto");
+
+		int chunk = id >>> CHUNK_BITS;
+
+		//alloco il blocco della tabella,se non e' ancora stato allocato
+		if(perId.get(chunk) == null)
+			perId.compareAndSet(chunk,null,(Vertice<E>[]) new Vertice<?>[CHUNK_SIZE]);
+
+		Vertice<E> v = new Vertice<>(id,key);
+		perId.get(chunk)[id & (CHUNK_SIZE - 1)] = v;
+
+		return v;
+	}
+
+	/**
+	 * Un id letto da un insieme di adiacenza appartiene ad un vertice gia' pubblicato nell'indice,
+	 * quindi la sua cella della tabella e' visibile al thread che legge.
+	 */
+	private Vertice<E> getById(int id)
+	{
+		return perId.get(id >>> CHUNK_BITS)[id & (CHUNK_SIZE - 1)];
+	}
+
+	private Vertice<E> checkVertice(E vertice) throws NullPointerException,NoVertexFound
+	{
+		if(vertice == null)
+			throw new NullPointerException();
+
+		Vertice<E> v = vertici.get(vertice);
+
+		if(v == null)
+			throw new NoVertexFound();
+
+		return v;
+	}
+
+	/**
+	 * Vertice del grafo: il suo monitor protegge l'insieme degli adiacenti
+	 */
+	private static final class Vertice<E>
+	{
+		private final int id;
+		private final E key;
+		private final InsiemeInteri adiacenti;
+
+		private Vertice(int id,E key)
+		{
+			this.id = id;
+			this.key = key;
+			this.adiacenti = new InsiemeInteri();
+		}
+	}
+}
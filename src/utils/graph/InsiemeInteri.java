@@ -0,0 +1,130 @@
+package utils.graph;
+
+/**
+ * Insieme di interi non negativi,memorizzati in una tabella hash ad indirizzamento aperto su un array di int.
+ * Non crea un oggetto per ogni elemento: inserimento e ricerca costano O(1) atteso.
+ * La classe non e' thread-safe.
+ * @author Gionatha Sturba
+ *
+ */
+public class InsiemeInteri
+{
+	private static final int CAPACITA_MINIMA = 4;
+	private static final int EMPTY = 0; //cella libera: gli elementi sono memorizzati come valore+1
+
+	private int[] tabella; //capacita' sempre potenza di 2
+	private int size; //numero di elementi
+
+	/**
+	 * Crea un insieme vuoto
+	 */
+	public InsiemeInteri()
+	{
+		tabella = new int[CAPACITA_MINIMA];
+		size = 0;
+	}
+
+	/**
+	 * Aggiunge un elemento all'insieme
+	 * @param valore elemento da aggiungere
+	 * @return true se l'elemento e' stato aggiunto,false se era gia' presente
+	 * @throws IllegalArgumentException se l'elemento e' negativo
+	 */
+	public boolean add(int valore)
+	{
+		if(valore < 0)
+			throw new IllegalArgumentException();
+
+		int pos = posizione(tabella,valore + 1);
+
+		//elemento gia' presente
+		if(tabella[pos] != EMPTY)
+			return false;
+
+		tabella[pos] = valore + 1;
+		size++;
+
+		//fattore di carico massimo 3/4
+		if(4 * size > 3 * tabella.length)
+			ingrandisci();
+
+		return true;
+	}
+
+	/**
+	 * @param valore elemento da cercare
+	 * @return true se l'elemento e' presente,false altrimenti
+	 */
+	public boolean contains(int valore)
+	{
+		if(valore < 0)
+			return false;
+
+		return tabella[posizione(tabella,valore + 1)] != EMPTY;
+	}
+
+	/**
+	 * @return numero di elementi dell'insieme
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return array con gli elementi dell'insieme,in ordine non specificato
+	 */
+	public int[] toArray()
+	{
+		int[] elementi = new int[size];
+		int i = 0;
+
+		for (int cella : tabella) {
+			if(cella != EMPTY)
+				elementi[i++] = cella - 1;
+		}
+
+		return elementi;
+	}
+
+	/*METODI PRIVATI*/
+
+	/**
+	 * Cerca la cella che contiene la chiave, o la cella libera in cui andrebbe inserita (scansione lineare)
+	 */
+	private static int posizione(int[] tabella,int chiave)
+	{
+		int mask = tabella.length - 1;
+		int pos = hash(chiave) & mask;
+
+		while(tabella[pos] != EMPTY && tabella[pos] != chiave)
+		{
+			pos = (pos + 1) & mask;
+		}
+
+		return pos;
+	}
+
+	/**
+	 * Sparpaglia le chiavi consecutive (gli id sono densi) su tutta la tabella
+	 */
+	private static int hash(int chiave)
+	{
+		int h = chiave * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Raddoppia la capacita' della tabella
+	 */
+	private void ingrandisci()
+	{
+		int[] nuova = new int[tabella.length * 2];
+
+		for (int cella : tabella) {
+			if(cella != EMPTY)
+				nuova[posizione(nuova,cella)] = cella;
+		}
+
+		tabella = nuova;
+	}
+}